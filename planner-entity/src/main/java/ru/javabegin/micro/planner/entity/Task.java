@@ -7,7 +7,6 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
-import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.io.Serializable;
 import java.util.Date;
@@ -25,13 +24,15 @@ import java.util.Objects;
 @AllArgsConstructor
 @Setter
 @Getter
-@Cacheable
-@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// без кеша 2 уровня: задачи часто изменяются и массово записываются в обход hibernate (импорт, заполнение тестовыми данными),
+// а списки задач читаются запросами, а не по id - кеш только тратил бы память и мог отдавать устаревшие данные
 public class Task implements Serializable {
 
-    // указываем, что поле заполняется в БД
-    // нужно, когда добавляем новый объект и он возвращается уже с новым id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // id берется из последовательности БД сразу пачкой (allocationSize) - тогда hibernate знает id до insert
+    // и может отправлять insert пачками (hibernate.jdbc.batch_size), чего нельзя сделать с IDENTITY
+    // шаг последовательности в БД должен совпадать с allocationSize (см. db/task_batch.sql в planner-todo)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "task_seq")
+    @SequenceGenerator(name = "task_seq", sequenceName = "task_id_seq", schema = "todo", catalog = "planner_todo", allocationSize = 50)
     @Id
     private Long id;
 
@@ -2,8 +2,12 @@ package ru.javabegin.micro.planner.plannergateway;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import ru.javabegin.micro.planner.utils.loadbalancer.LatencyAwareLoadBalancerConfiguration;
 
 @SpringBootApplication
+// выбор экземпляра сервиса по задержке и количеству запросов в работе (вместо round robin)
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfiguration.class)
 public class PlannerGatewayApplication {
 
     public static void main(String[] args) {
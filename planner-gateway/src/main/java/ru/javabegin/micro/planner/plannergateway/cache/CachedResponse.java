@@ -0,0 +1,16 @@
+package ru.javabegin.micro.planner.plannergateway.cache;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+import java.time.Duration;
+
+// ответ backend в кеше: ttl - из правила, backendNanos - сколько backend обрабатывал запрос (для оценки снятой нагрузки)
+record CachedResponse(HttpStatusCode status, HttpHeaders headers, byte[] body, Duration ttl, long backendNanos) {
+
+    // примерный размер в памяти (для ограничения кеша по памяти)
+    int weight() {
+        return body.length + headers.size() * 64 + 128;
+    }
+
+}
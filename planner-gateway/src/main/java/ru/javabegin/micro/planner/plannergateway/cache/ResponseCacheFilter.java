@@ -0,0 +1,304 @@
+package ru.javabegin.micro.planner.plannergateway.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+import ru.javabegin.micro.planner.plannergateway.jwt.JwtSubjects;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/*
+
+кеш ответов backend для повторяющихся запросов на чтение (например, /planner-todo/category/all, /planner-todo/stat)
+
+- чтение здесь - POST запросы (userId в теле), поэтому ключ кеша: маршрут + путь + версия данных пользователя
+  + отпечаток (SHA-256) access token + отпечаток тела запроса
+- токен в gateway не проверяется (это делает backend), поэтому в ключ входит отпечаток всего токена, а не только пользователь:
+  ответ из кеша получит только тот, чей токен уже был принят backend
+- какие пути кешируются и на сколько - правила planner.gateway.cache.rules, общий объем кеша ограничен по памяти
+- кеш пользователя сбрасывается (меняется версия его данных, как в UserCacheVersions у planner-todo):
+  после успешного изменения данных через этот gateway (planner.gateway.cache.evict-paths),
+  по заголовку X-Cache-Evict в ответе backend и по событию planner-todo о сбросе кеша (ResponseCacheInvalidation)
+- заголовок запроса Cache-Control: no-cache - ответ не берется из кеша (но новый ответ сохраняется)
+
+метрики: cache.gets (result=hit/miss, cache=gateway.response) - доля попаданий,
+planner.gateway.cache.requests (route, result), planner.gateway.cache.saved.bytes, planner.gateway.cache.saved.time -
+сколько данных и времени backend не потребовалось благодаря кешу
+
+ */
+
+@Component
+public class ResponseCacheFilter implements GlobalFilter, Ordered {
+
+    private static final Logger log = Logger.getLogger(ResponseCacheFilter.class.getName());
+
+    public static final String CACHE_HEADER = "X-Cache"; // HIT / MISS - для отладки
+    public static final String EVICT_HEADER = "X-Cache-Evict"; // backend может попросить сбросить кеш пользователя
+
+    private record CompiledRule(PathPattern pattern, Duration ttl) {
+    }
+
+    private final ResponseCacheProperties properties;
+    private final JwtSubjects jwtSubjects;
+    private final MeterRegistry meterRegistry;
+
+    private final List<CompiledRule> rules;
+    private final List<PathPattern> evictPatterns;
+
+    private final Cache<String, CachedResponse> cache;
+
+    // версия данных пользователя: входит в ключ, поэтому после изменения старые ответы больше не находятся
+    private final Cache<String, Long> versions;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Counter savedBytes;
+    private final Timer savedTime;
+
+    public ResponseCacheFilter(ResponseCacheProperties properties, JwtSubjects jwtSubjects, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.jwtSubjects = jwtSubjects;
+        this.meterRegistry = meterRegistry;
+
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+
+        this.rules = properties.getRules().stream()
+                .map(rule -> new CompiledRule(parser.parse(rule.getPath()), rule.getTtl()))
+                .toList();
+
+        this.evictPatterns = properties.getEvictPaths().stream().map(parser::parse).toList();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaxSize().toBytes())
+                .weigher((String key, CachedResponse response) -> key.length() + response.weight())
+                .expireAfter(new Expiry<String, CachedResponse>() { // у каждого правила свое время жизни
+                    @Override
+                    public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+                        return response.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return response.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // версию достаточно помнить дольше, чем живет любой ответ в кеше
+        Duration maxTtl = rules.stream().map(CompiledRule::ttl).max(Duration::compareTo).orElse(Duration.ofMinutes(1));
+        this.versions = Caffeine.newBuilder().expireAfterAccess(maxTtl.multipliedBy(2)).build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "gateway.response");
+
+        this.savedBytes = Counter.builder("planner.gateway.cache.saved.bytes").baseUnit("bytes").register(meterRegistry);
+        this.savedTime = Timer.builder("planner.gateway.cache.saved.time").register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        // раньше записи ответа клиенту - чтобы перехватить тело ответа backend
+        return NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+
+        if (!properties.isEnabled() || authorization == null) {
+            return chain.filter(exchange);
+        }
+
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        String userId = jwtSubjects.subject(authorization);
+
+        CompiledRule rule = exchange.getRequest().getMethod() == HttpMethod.POST ? rule(exchange) : null;
+
+        if (rule == null) {
+            return evictAfter(exchange, chain, path, userId);
+        }
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "-";
+
+        return ServerWebExchangeUtils.cacheRequestBody(exchange, request -> {
+
+            DataBuffer body = exchange.getAttribute(ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR);
+
+            String key = routeId + "|" + path + "|" + version(userId) + "|" + sha256(authorization.getBytes(StandardCharsets.UTF_8)) + "|" + sha256(bytes(body));
+
+            boolean noCache = "no-cache".equalsIgnoreCase(request.getHeaders().getCacheControl());
+
+            CachedResponse cached = noCache ? null : cache.getIfPresent(key);
+
+            if (cached != null) {
+                count(routeId, "hit");
+                savedBytes.increment(cached.body().length);
+                savedTime.record(Duration.ofNanos(cached.backendNanos()));
+                return write(exchange.getResponse(), cached);
+            }
+
+            count(routeId, noCache ? "bypass" : "miss");
+
+            long started = System.nanoTime();
+
+            ServerHttpResponseDecorator response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> content) {
+
+                    if (getStatusCode() == null || getStatusCode().value() != HttpStatus.OK.value()) {
+                        return super.writeWith(content);
+                    }
+
+                    getHeaders().set(CACHE_HEADER, "MISS");
+
+                    return DataBufferUtils.join(content).flatMap(joined -> {
+
+                        byte[] bytes = bytes(joined);
+                        DataBufferUtils.release(joined);
+
+                        if (bytes.length <= properties.getMaxEntrySize().toBytes()) {
+                            cache.put(key, new CachedResponse(getStatusCode(), cacheableHeaders(getHeaders()), bytes, rule.ttl(),
+                                    System.nanoTime() - started));
+                        }
+
+                        return super.writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                    });
+                }
+            };
+
+            return chain.filter(exchange.mutate().request(request).response(response).build());
+        });
+    }
+
+    // сбросить кеш пользователя (данные изменились)
+    public void evictUser(String userId) {
+        if (userId != null) {
+            versions.put(userId, sequence.incrementAndGet());
+        }
+    }
+
+    // запрос не кешируется: если это изменение данных - после успешного выполнения сбрасываем кеш пользователя
+    private Mono<Void> evictAfter(ServerWebExchange exchange, GatewayFilterChain chain, String path, String userId) {
+
+        boolean mutation = evictPatterns.stream().anyMatch(pattern -> pattern.matches(exchange.getRequest().getPath().pathWithinApplication()));
+
+        ServerHttpResponse response = exchange.getResponse();
+
+        // заголовок от backend проверяем до отправки ответа клиенту (и не передаем его клиенту)
+        response.beforeCommit(() -> {
+            if (response.getHeaders().containsKey(EVICT_HEADER)) {
+                response.getHeaders().remove(EVICT_HEADER);
+                evictUser(userId);
+            }
+            return Mono.empty();
+        });
+
+        if (!mutation) {
+            return chain.filter(exchange);
+        }
+
+        return chain.filter(exchange).doOnSuccess(done -> {
+            if (response.getStatusCode() != null && response.getStatusCode().is2xxSuccessful()) {
+                evictUser(userId);
+                log.fine("user " + userId + " cache evicted after " + path);
+            }
+        });
+    }
+
+    private CompiledRule rule(ServerWebExchange exchange) {
+        for (CompiledRule rule : rules) {
+            if (rule.pattern().matches(exchange.getRequest().getPath().pathWithinApplication())) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private long version(String userId) {
+        return userId != null ? versions.get(userId, id -> sequence.incrementAndGet()) : 0;
+    }
+
+    private Mono<Void> write(ServerHttpResponse response, CachedResponse cached) {
+        response.setStatusCode(cached.status());
+        response.getHeaders().putAll(cached.headers());
+        response.getHeaders().set(CACHE_HEADER, "HIT");
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(cached.body())));
+    }
+
+    private void count(String routeId, String result) {
+        meterRegistry.counter("planner.gateway.cache.requests", "route", routeId, "result", result).increment();
+    }
+
+    // заголовки, которые можно повторить в ответе из кеша
+    private static HttpHeaders cacheableHeaders(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        copy.remove(HttpHeaders.TRANSFER_ENCODING);
+        copy.remove(HttpHeaders.CONTENT_LENGTH);
+        copy.remove(HttpHeaders.SET_COOKIE);
+        copy.remove(HttpHeaders.DATE);
+        copy.remove(HttpHeaders.CONNECTION);
+        copy.remove(CACHE_HEADER);
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    // содержимое буфера без изменения позиции чтения (буфер еще будет отправлен backend)
+    private static byte[] bytes(DataBuffer buffer) {
+
+        if (buffer == null) {
+            return new byte[0];
+        }
+
+        int position = buffer.readPosition();
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        buffer.readPosition(position);
+
+        return bytes;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package ru.javabegin.micro.planner.plannergateway.cache;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// сброс кеша ответов по событиям planner-todo (те же сообщения, по которым экземпляры planner-todo сбрасывают свои кеши)
+@Configuration
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCacheInvalidation {
+
+    // из сообщения нужны только пользователи, у которых изменились данные (остальные поля игнорируются)
+    public static class BackendCacheEvent {
+
+        private Set<String> users = new HashSet<>();
+
+        public Set<String> getUsers() {
+            return users;
+        }
+
+        public void setUsers(Set<String> users) {
+            this.users = users;
+        }
+    }
+
+    @Bean
+    public Consumer<BackendCacheEvent> cacheInvalidationConsume(ResponseCacheFilter responseCacheFilter) {
+        return event -> event.getUsers().forEach(responseCacheFilter::evictUser);
+    }
+
+}
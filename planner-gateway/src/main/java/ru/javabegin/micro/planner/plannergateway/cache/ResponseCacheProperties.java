@@ -0,0 +1,87 @@
+package ru.javabegin.micro.planner.plannergateway.cache;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// настройки кеша ответов gateway (planner.gateway.cache.*)
+@ConfigurationProperties("planner.gateway.cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = true;
+
+    private DataSize maxSize = DataSize.ofMegabytes(64); // сколько памяти могут занимать все ответы в кеше
+    private DataSize maxEntrySize = DataSize.ofKilobytes(512); // ответы больше этого размера не кешируются
+
+    private List<Rule> rules = new ArrayList<>(); // какие запросы кешируются и сколько
+
+    // запросы, после успешного выполнения которых кеш пользователя сбрасывается (изменение данных)
+    private List<String> evictPaths = new ArrayList<>();
+
+    // запрос кешируется, если путь подходит под шаблон path (например, /planner-todo/category/all)
+    public static class Rule {
+
+        private String path;
+        private Duration ttl = Duration.ofSeconds(30);
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public DataSize getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(DataSize maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    public List<String> getEvictPaths() {
+        return evictPaths;
+    }
+
+    public void setEvictPaths(List<String> evictPaths) {
+        this.evictPaths = evictPaths;
+    }
+
+}
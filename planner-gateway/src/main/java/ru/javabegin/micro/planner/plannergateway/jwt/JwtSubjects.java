@@ -0,0 +1,71 @@
+package ru.javabegin.micro.planner.plannergateway.jwt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Base64;
+
+/*
+
+пользователь (sub) из access token в заголовке Authorization - БЕЗ проверки подписи (токен проверяет backend)
+
+поэтому результат можно использовать только там, где подделка sub ничего не дает чужому пользователю:
+версия кеша, ключ лимита запросов и т.п. - но не для доступа к данным
+
+один и тот же токен приходит во многих запросах подряд - разобранный sub запоминается (по строке заголовка)
+
+ */
+
+@Component
+public class JwtSubjects {
+
+    private static final String NONE = ""; // токен без sub (null в кеше хранить нельзя)
+
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, String> subjects = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+
+    public JwtSubjects(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    // sub из заголовка "Bearer <token>" (null - заголовка нет или это не JWT)
+    public String subject(String authorization) {
+
+        if (authorization == null) {
+            return null;
+        }
+
+        String subject = subjects.get(authorization, this::parse);
+
+        return subject.isEmpty() ? null : subject;
+    }
+
+    private String parse(String authorization) {
+
+        if (!authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return NONE;
+        }
+
+        String[] parts = authorization.substring(7).split("\\.");
+
+        if (parts.length < 2) {
+            return NONE;
+        }
+
+        try {
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            return claims.hasNonNull("sub") ? claims.get("sub").asText() : NONE;
+        } catch (Exception e) {
+            return NONE;
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package ru.javabegin.micro.planner.plannergateway.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/*
+
+пользователь (sub) из access token ПОСЛЕ проверки подписи и срока действия (ключи KC - spring.security.oauth2.resourceserver.jwt.jwk-set-uri или issuer-uri, как в JwtVerificationCache)
+
+нужен там, где подделка sub может навредить другому пользователю - например, ключ лимита запросов (LimitFilter)
+если адрес ключей не задан или токен не прошел проверку - пользователь неизвестен (Mono.empty)
+
+результат проверки кешируется по хешу токена: проверенный токен - до окончания его срока, непроверенный - на короткое время
+
+ */
+
+@Component
+public class JwtVerifiedSubjects {
+
+    private static final Duration INVALID_TTL = Duration.ofMinutes(1);
+
+    // результат проверки токена (subject == null - токен не прошел проверку)
+    private record Verified(String subject, Instant expiresAt) {
+    }
+
+    private final ReactiveJwtDecoder decoder;
+
+    private final Cache<String, Verified> verified = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfter(new Expiry<String, Verified>() {
+                @Override
+                public long expireAfterCreate(String key, Verified value, long currentTime) {
+                    return Math.max(0, Duration.between(Instant.now(), value.expiresAt()).toNanos());
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public JwtVerifiedSubjects(@Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+                               @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}") String issuerUri) {
+
+        String keysUri = !jwkSetUri.isBlank() ? jwkSetUri : !issuerUri.isBlank() ? issuerUri + "/protocol/openid-connect/certs" : null;
+
+        this.decoder = keysUri != null ? NimbusReactiveJwtDecoder.withJwkSetUri(keysUri).build() : null;
+    }
+
+    // sub проверенного токена из заголовка "Bearer <token>" (пусто - заголовка нет, проверка выключена или токен не прошел проверку)
+    public Mono<String> subject(String authorization) {
+
+        if (decoder == null || authorization == null || !authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return Mono.empty();
+        }
+
+        String token = authorization.substring(7);
+        String key = sha256(token);
+
+        Verified cached = verified.getIfPresent(key);
+
+        if (cached != null) {
+            return Mono.justOrEmpty(cached.subject());
+        }
+
+        return decoder.decode(token)
+                .map(jwt -> {
+                    verified.put(key, new Verified(jwt.getSubject(), jwt.getExpiresAt() != null ? jwt.getExpiresAt() : Instant.now().plus(INVALID_TTL)));
+                    return jwt.getSubject() != null ? jwt.getSubject() : "";
+                })
+                .filter(subject -> !subject.isEmpty())
+                .onErrorResume(JwtException.class, e -> {
+                    verified.put(key, new Verified(null, Instant.now().plus(INVALID_TTL)));
+                    return Mono.empty();
+                });
+    }
+
+    private static String sha256(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
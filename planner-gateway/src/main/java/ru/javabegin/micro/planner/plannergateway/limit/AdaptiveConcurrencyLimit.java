@@ -0,0 +1,88 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+
+адаптивный лимит одновременных запросов к одному backend (по аналогии с алгоритмом Gradient)
+
+- "нормальное" время ответа (longRtt) - скользящее среднее за последние rttWindow запросов
+- если текущее время ответа больше нормального в tolerance раз - backend перегружен (растет очередь), лимит уменьшается
+  пропорционально (gradient = tolerance * longRtt / rtt), иначе лимит понемногу растет (+ sqrt(limit))
+- если backend ответил 503/504 или запрос завершился ошибкой - лимит сразу уменьшается в backoffRatio раз (AIMD)
+- если backend загружен меньше чем наполовину лимита - лимит не увеличивается (нет данных, что он выдержит больше)
+
+ */
+
+public class AdaptiveConcurrencyLimit {
+
+    private final LimitProperties.Concurrency settings;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+    private double longRtt; // изменяется только в onSample (synchronized)
+
+    public AdaptiveConcurrencyLimit(LimitProperties.Concurrency settings) {
+        this.settings = settings;
+        this.limit = settings.getInitialLimit();
+    }
+
+    // занять место для запроса (false - лимит исчерпан, запрос нужно отклонить)
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // запрос завершен: rttNanos - время ответа, dropped - backend перегружен или недоступен
+    public void release(long rttNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        onSample(rttNanos, dropped, inFlightBefore);
+    }
+
+    // запрос отменен клиентом - время ответа неизвестно
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    private synchronized void onSample(long rttNanos, boolean dropped, int inFlightBefore) {
+
+        if (dropped) {
+            limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+            return;
+        }
+
+        if (rttNanos <= 0) {
+            return;
+        }
+
+        longRtt = longRtt == 0 ? rttNanos : longRtt + (rttNanos - longRtt) / settings.getRttWindow();
+
+        double gradient = Math.max(0.5, Math.min(1.0, settings.getTolerance() * longRtt / rttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+
+        if (newLimit > limit && inFlightBefore < limit / 2) {
+            return; // backend загружен слабо - увеличивать лимит нет оснований
+        }
+
+        newLimit = limit * (1 - settings.getSmoothing()) + newLimit * settings.getSmoothing();
+
+        limit = Math.max(settings.getMinLimit(), Math.min(settings.getMaxLimit(), newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+}
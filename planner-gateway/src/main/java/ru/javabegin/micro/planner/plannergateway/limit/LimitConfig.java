@@ -0,0 +1,20 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(LimitProperties.class)
+public class LimitConfig {
+
+    // лимит запросов пользователей хранится в памяти, если не выбрано общее хранилище (planner.gateway.limit.rate.store)
+    // явная настройка, а не @ConditionalOnMissingBean - в обычной @Configuration порядок создания bean не гарантирован
+    @Bean
+    @ConditionalOnProperty(name = "planner.gateway.limit.rate.store", havingValue = "local", matchIfMissing = true)
+    public RateLimitStore rateLimitStore() {
+        return new LocalRateLimitStore();
+    }
+
+}
@@ -0,0 +1,162 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import ru.javabegin.micro.planner.plannergateway.jwt.JwtVerifiedSubjects;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+
+защита backend от слишком частых запросов:
+
+- лимит запросов каждого пользователя (token bucket) - 429
+  пользователь - sub из access token только после проверки подписи (JwtVerifiedSubjects), иначе - адрес клиента:
+  sub из непроверенного токена можно подставить любой (обход лимита или расход лимита другого пользователя)
+- адаптивный лимит одновременных запросов к каждому маршруту (AdaptiveConcurrencyLimit) - 503,
+  чтобы один активный пользователь не занял все соединения и потоки backend
+
+фильтр выполняется после кеша ответов (ResponseCacheFilter) - ответы из кеша backend не нагружают и не ограничиваются
+отказ выполняется сразу: без тела ответа и без записи в лог (только счетчики)
+
+метрики: planner.gateway.limit.rejected (reason = rate/concurrency, route),
+planner.gateway.limit.concurrency.limit и .in-flight (route) - текущий лимит и количество запросов к маршруту
+
+ */
+
+@Component
+public class LimitFilter implements GlobalFilter, Ordered {
+
+    private static final String RETRY_AFTER = "1"; // через сколько секунд повторить запрос
+
+    // состояние лимита одного маршрута (счетчик отказов создается один раз, а не для каждого запроса)
+    private record RouteLimit(AdaptiveConcurrencyLimit limit, Counter rejected) {
+    }
+
+    private final LimitProperties properties;
+    private final RateLimitStore rateLimitStore;
+    private final JwtVerifiedSubjects jwtSubjects;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, RouteLimit> routes = new ConcurrentHashMap<>();
+
+    private final Counter rateRejected;
+
+    public LimitFilter(LimitProperties properties, RateLimitStore rateLimitStore, JwtVerifiedSubjects jwtSubjects, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.rateLimitStore = rateLimitStore;
+        this.jwtSubjects = jwtSubjects;
+        this.meterRegistry = meterRegistry;
+        this.rateRejected = Counter.builder("planner.gateway.limit.rejected").tag("reason", "rate").tag("route", "all").register(meterRegistry);
+    }
+
+    @Override
+    public int getOrder() {
+        return 0; // после ResponseCacheFilter, до выбора экземпляра backend и отправки запроса
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        if (!properties.getRate().isEnabled()) {
+            return limitConcurrency(exchange, chain);
+        }
+
+        LimitProperties.Rate rate = properties.getRate();
+
+        return clientKey(exchange)
+                .flatMap(key -> rateLimitStore.tryAcquire(key, rate.getCapacity(), rate.getRefillPerSecond()))
+                .flatMap(allowed -> {
+                    if (!allowed) {
+                        rateRejected.increment();
+                        return reject(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS);
+                    }
+                    return limitConcurrency(exchange, chain);
+                });
+    }
+
+    private Mono<Void> limitConcurrency(ServerWebExchange exchange, GatewayFilterChain chain) {
+
+        if (!properties.getConcurrency().isEnabled()) {
+            return chain.filter(exchange);
+        }
+
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        RouteLimit routeLimit = routeLimit(route.getId());
+        AdaptiveConcurrencyLimit limit = routeLimit.limit();
+
+        if (!limit.tryAcquire()) {
+            routeLimit.rejected().increment();
+            return reject(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        long started = System.nanoTime();
+
+        return chain.filter(exchange)
+                .doOnSuccess(done -> limit.release(System.nanoTime() - started, overloaded(exchange.getResponse().getStatusCode())))
+                .doOnError(e -> limit.release(System.nanoTime() - started, true))
+                .doOnCancel(limit::cancel);
+    }
+
+    private RouteLimit routeLimit(String routeId) {
+
+        RouteLimit routeLimit = routes.get(routeId);
+
+        if (routeLimit != null) {
+            return routeLimit;
+        }
+
+        return routes.computeIfAbsent(routeId, id -> {
+
+            AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(properties.getConcurrency());
+
+            Gauge.builder("planner.gateway.limit.concurrency.limit", limit, AdaptiveConcurrencyLimit::getLimit).tag("route", id).register(meterRegistry);
+            Gauge.builder("planner.gateway.limit.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::getInFlight).tag("route", id).register(meterRegistry);
+
+            return new RouteLimit(limit,
+                    Counter.builder("planner.gateway.limit.rejected").tag("reason", "concurrency").tag("route", id).register(meterRegistry));
+        });
+    }
+
+    // ключ лимита: пользователь из проверенного токена или адрес клиента (префиксы - чтобы sub не совпал с адресом)
+    private Mono<String> clientKey(ServerWebExchange exchange) {
+
+        InetSocketAddress address = exchange.getRequest().getRemoteAddress();
+
+        return jwtSubjects.subject(exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .map(subject -> "user:" + subject)
+                .defaultIfEmpty("ip:" + (address != null ? address.getHostString() : "unknown"));
+    }
+
+    // backend не справляется с нагрузкой
+    private static boolean overloaded(HttpStatusCode status) {
+        return status != null && (status.value() == HttpStatus.SERVICE_UNAVAILABLE.value() || status.value() == HttpStatus.GATEWAY_TIMEOUT.value());
+    }
+
+    private static Mono<Void> reject(ServerHttpResponse response, HttpStatus status) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, RETRY_AFTER);
+        return response.setComplete();
+    }
+
+}
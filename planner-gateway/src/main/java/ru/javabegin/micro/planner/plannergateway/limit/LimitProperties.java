@@ -0,0 +1,147 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// настройки ограничения запросов (planner.gateway.limit.*)
+@ConfigurationProperties("planner.gateway.limit")
+public class LimitProperties {
+
+    private Rate rate = new Rate();
+    private Concurrency concurrency = new Concurrency();
+
+    // token bucket для каждого пользователя: capacity - сколько запросов можно сделать подряд,
+    // refillPerSecond - сколько запросов в секунду добавляется (средняя скорость)
+    public static class Rate {
+
+        private boolean enabled = true;
+        private int capacity = 100;
+        private double refillPerSecond = 20;
+        private String store = "local"; // где хранятся корзины: local - в памяти экземпляра (другое значение - свой bean RateLimitStore)
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public String getStore() {
+            return store;
+        }
+
+        public void setStore(String store) {
+            this.store = store;
+        }
+    }
+
+    // адаптивный лимит одновременных запросов к каждому маршруту (AdaptiveConcurrencyLimit)
+    public static class Concurrency {
+
+        private boolean enabled = true;
+        private int initialLimit = 20;
+        private int minLimit = 5;
+        private int maxLimit = 500;
+        private double tolerance = 2.0; // во сколько раз может вырасти время ответа, прежде чем лимит начнет уменьшаться
+        private double smoothing = 0.2; // насколько быстро лимит движется к новому значению (0..1)
+        private double backoffRatio = 0.9; // во сколько раз уменьшается лимит при перегрузке backend (503, 504, ошибка)
+        private int rttWindow = 500; // за сколько запросов усредняется "нормальное" время ответа
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public int getRttWindow() {
+            return rttWindow;
+        }
+
+        public void setRttWindow(int rttWindow) {
+            this.rttWindow = rttWindow;
+        }
+    }
+
+    public Rate getRate() {
+        return rate;
+    }
+
+    public void setRate(Rate rate) {
+        this.rate = rate;
+    }
+
+    public Concurrency getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Concurrency concurrency) {
+        this.concurrency = concurrency;
+    }
+
+}
@@ -0,0 +1,57 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+// token bucket каждого пользователя - в памяти (корзины неактивных пользователей удаляются)
+// проверка не создает новых объектов, кроме корзины для нового пользователя
+public class LocalRateLimitStore implements RateLimitStore {
+
+    private static final Mono<Boolean> ALLOWED = Mono.just(true);
+    private static final Mono<Boolean> DENIED = Mono.just(false);
+
+    private final Cache<String, TokenBucket> buckets = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofMinutes(10)) // за это время корзина в любом случае заполнится полностью
+            .build();
+
+    @Override
+    public Mono<Boolean> tryAcquire(String key, int capacity, double refillPerSecond) {
+
+        TokenBucket bucket = buckets.getIfPresent(key);
+
+        if (bucket == null) {
+            bucket = buckets.get(key, k -> new TokenBucket(capacity));
+        }
+
+        return bucket.tryAcquire(capacity, refillPerSecond, System.nanoTime()) ? ALLOWED : DENIED;
+    }
+
+    static final class TokenBucket {
+
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(int capacity) {
+            this.tokens = capacity;
+        }
+
+        synchronized boolean tryAcquire(int capacity, double refillPerSecond, long now) {
+
+            // добавляем токены, накопившиеся с прошлого запроса
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * refillPerSecond / 1_000_000_000d);
+            refilledAt = now;
+
+            if (tokens < 1) {
+                return false;
+            }
+
+            tokens -= 1;
+            return true;
+        }
+    }
+
+}
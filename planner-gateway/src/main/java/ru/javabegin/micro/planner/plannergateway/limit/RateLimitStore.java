@@ -0,0 +1,13 @@
+package ru.javabegin.micro.planner.plannergateway.limit;
+
+import reactor.core.publisher.Mono;
+
+// хранилище token bucket: по умолчанию - в памяти экземпляра gateway (LocalRateLimitStore)
+// для общего лимита на несколько экземпляров gateway: planner.gateway.limit.rate.store=<имя> (например, redis)
+// и свой bean с @ConditionalOnProperty на это значение - локальный тогда не создается
+public interface RateLimitStore {
+
+    // взять один токен из корзины key (true - запрос разрешен)
+    Mono<Boolean> tryAcquire(String key, int capacity, double refillPerSecond);
+
+}
@@ -7,13 +7,19 @@ import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import ru.javabegin.micro.planner.utils.loadbalancer.LatencyAwareLoadBalancerConfiguration;
 
 @SpringBootApplication
 @EnableDiscoveryClient
 @ComponentScan(basePackages = {"ru.javabegin.micro.planner"})
 @EnableJpaRepositories(basePackages = {"ru.javabegin.micro.planner.todo"})
 @EnableFeignClients
+// выбор экземпляра сервиса по задержке и количеству запросов в работе (вместо round robin)
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfiguration.class)
 @RefreshScope
+@EnableScheduling // периодическая запись счетчиков статистики в БД (StatCounters)
 public class PlannerTodoApplication {
 
     public static void main(String[] args) {
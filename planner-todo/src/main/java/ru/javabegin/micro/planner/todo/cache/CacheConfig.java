@@ -0,0 +1,47 @@
+package ru.javabegin.micro.planner.todo.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/*
+
+кеш результатов запросов (Spring Cache) - хранится в памяти приложения (Caffeine)
+
+кеш ограничен по количеству записей и по времени жизни записи, чтобы не расти бесконечно,
+а при любом изменении данных пользователя его записи сбрасываются (см. UserCacheVersions)
+
+статистика (hit/miss/eviction) доступна через actuator: /actuator/metrics/cache.gets, /actuator/metrics/cache.evictions
+
+ */
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // названия кешей
+    public static final String TASKS = "tasks"; // все задачи пользователя (ключ - userId)
+    public static final String TASK_SEARCH = "taskSearch"; // результаты поиска задач (ключ - TaskSearchKey)
+    public static final String CATEGORIES = "categories"; // все категории пользователя (ключ - userId)
+    public static final String TASKS_COMPACT = "tasksCompact"; // все задачи пользователя в компактном формате (ключ - userId)
+    public static final String TASK_SEARCH_COMPACT = "taskSearchCompact"; // результаты поиска в компактном формате (ключ - TaskSearchKey)
+
+    // recordStats - нужен для сбора статистики попаданий в кеш
+    @Value("${planner.cache.spec:maximumSize=10000,expireAfterWrite=5m,recordStats}")
+    private String cacheSpec;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCacheSpecification(cacheSpec);
+        // кеши создаются сразу при старте (а не динамически), чтобы actuator зарегистрировал их метрики
+        cacheManager.setCacheNames(List.of(TASKS, TASK_SEARCH, CATEGORIES, TASKS_COMPACT, TASK_SEARCH_COMPACT));
+        return cacheManager;
+    }
+
+}
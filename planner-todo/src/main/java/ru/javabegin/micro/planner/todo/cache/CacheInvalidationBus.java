@@ -0,0 +1,66 @@
+package ru.javabegin.micro.planner.todo.cache;
+
+import lombok.Getter;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/*
+
+шина для сброса кеша на всех экземплярах planner-todo (через message broker)
+
+каждое изменение данных сначала попадает во внутреннюю шину, откуда изменения отправляются в канал пачками:
+за время window (или пока не наберется batchSize изменений) все они объединяются в одно сообщение
+
+ */
+
+@Component
+@Log
+public class CacheInvalidationBus {
+
+    @Getter
+    private final String origin = UUID.randomUUID().toString(); // id текущего экземпляра приложения
+
+    // внутренняя шина, из которой изменения отправляются в канал SCS (по аналогии с MessageFunc в planner-users)
+    private final Sinks.Many<CacheInvalidationEvent> innerBus = Sinks.many().multicast().onBackpressureBuffer();
+
+    @Value("${planner.cache.invalidation.batch-size:500}")
+    private int batchSize;
+
+    @Value("${planner.cache.invalidation.window:200ms}")
+    private Duration window;
+
+    // добавить изменение (отправится вместе с остальными изменениями пачки)
+    public void publish(String userId, String entity, Long id) {
+
+        CacheInvalidationEvent event = CacheInvalidationEvent.of(origin, userId, entity, id);
+
+        Sinks.EmitResult result;
+
+        // метод вызывается из разных потоков - при одновременной записи повторяем попытку
+        do {
+            result = innerBus.tryEmitNext(event);
+        } while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+        // если шина переполнена - сообщение теряется, но на других экземплярах запись все равно удалится по времени жизни
+        if (result.isFailure()) {
+            log.warning("cache invalidation event dropped: " + result + ", user " + userId);
+        }
+    }
+
+    // поток сообщений для отправки в канал: изменения объединяются по времени и количеству
+    public Flux<Message<CacheInvalidationEvent>> batches() {
+        return innerBus.asFlux()
+                .bufferTimeout(batchSize, window)
+                .filter(events -> !events.isEmpty())
+                .map(events -> MessageBuilder.withPayload(CacheInvalidationEvent.merge(origin, events)).build());
+    }
+
+}
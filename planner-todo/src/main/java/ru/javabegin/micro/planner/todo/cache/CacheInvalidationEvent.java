@@ -0,0 +1,48 @@
+package ru.javabegin.micro.planner.todo.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// сообщение для других экземпляров planner-todo: какие данные изменились и какие записи кеша нужно сбросить
+// одно сообщение объединяет все изменения за небольшой промежуток времени
+public class CacheInvalidationEvent {
+
+    private String origin; // какой экземпляр приложения отправил (свои сообщения не обрабатываем)
+    private Set<String> users = new HashSet<>(); // пользователи, у которых изменились данные
+    private Map<String, Set<Long>> entities = new HashMap<>(); // измененные объекты для кеша 2 уровня hibernate: название сущности -> id
+
+    // изменение одного объекта
+    public static CacheInvalidationEvent of(String origin, String userId, String entity, Long id) {
+        CacheInvalidationEvent event = new CacheInvalidationEvent();
+        event.setOrigin(origin);
+        event.getUsers().add(userId);
+        if (entity != null && id != null) {
+            event.getEntities().computeIfAbsent(entity, e -> new HashSet<>()).add(id);
+        }
+        return event;
+    }
+
+    // объединить несколько изменений в одно сообщение (повторы убираются)
+    public static CacheInvalidationEvent merge(String origin, List<CacheInvalidationEvent> events) {
+        CacheInvalidationEvent result = new CacheInvalidationEvent();
+        result.setOrigin(origin);
+        for (CacheInvalidationEvent event : events) {
+            result.getUsers().addAll(event.getUsers());
+            event.getEntities().forEach((entity, ids) -> result.getEntities().computeIfAbsent(entity, e -> new HashSet<>()).addAll(ids));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,29 @@
+package ru.javabegin.micro.planner.todo.cache;
+
+import org.springframework.data.domain.Pageable;
+
+import java.util.Date;
+
+// ключ кеша для результатов поиска задач - компактный "отпечаток" всех параметров запроса
+// version - версия данных пользователя: после изменения данных версия меняется и старые записи больше не находятся
+public record TaskSearchKey(String userId,
+                            long version,
+                            String title,
+                            Boolean completed,
+                            Long priorityId,
+                            Long categoryId,
+                            Long dateFrom,
+                            Long dateTo,
+                            int pageNumber,
+                            int pageSize,
+                            String sort) {
+
+    public static TaskSearchKey of(String userId, long version, String title, Boolean completed, Long priorityId, Long categoryId,
+                                   Date dateFrom, Date dateTo, Pageable paging) {
+        return new TaskSearchKey(userId, version, title, completed, priorityId, categoryId,
+                dateFrom != null ? dateFrom.getTime() : null,
+                dateTo != null ? dateTo.getTime() : null,
+                paging.getPageNumber(), paging.getPageSize(), paging.getSort().toString());
+    }
+
+}
@@ -0,0 +1,127 @@
+package ru.javabegin.micro.planner.todo.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Priority;
+import ru.javabegin.micro.planner.entity.Task;
+
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+
+сброс кеша для конкретного пользователя
+
+кеши "все задачи" и "все категории" хранятся по ключу userId - их записи удаляются напрямую,
+а результатов поиска у пользователя может быть много (разные фильтры и страницы) - поэтому в их ключ входит версия данных пользователя:
+после изменения данных версия меняется и старые результаты больше не находятся (и удаляются из кеша по времени жизни или размеру)
+
+каждый экземпляр planner-todo хранит свой кеш, поэтому об изменениях сообщается остальным экземплярам (CacheInvalidationBus),
+а они сбрасывают у себя кеш пользователя и измененные объекты в кеше 2 уровня hibernate
+
+ */
+
+@Component("userCacheVersions")
+public class UserCacheVersions implements KeyGenerator {
+
+    // номера версий берутся из общего счетчика, поэтому не повторяются:
+    // если версия пользователя была вытеснена из памяти - новая версия все равно будет отличаться от старых
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Cache<String, Long> versions = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    // сущности, которые можно сбросить из кеша 2 уровня по сообщению от других экземпляров
+    private static final Map<String, Class<?>> ENTITIES = Map.of(
+            Task.class.getSimpleName(), Task.class,
+            Category.class.getSimpleName(), Category.class,
+            Priority.class.getSimpleName(), Priority.class);
+
+    private final CacheManager cacheManager;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public UserCacheVersions(CacheManager cacheManager, CacheInvalidationBus cacheInvalidationBus, EntityManagerFactory entityManagerFactory) {
+        this.cacheManager = cacheManager;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // текущая версия данных пользователя
+    public long version(String userId) {
+        return versions.get(userId, id -> sequence.incrementAndGet());
+    }
+
+    // сбросить кеш пользователя - вызывается при любом изменении его задач, категорий, приоритетов
+    // если идет транзакция - сброс выполняется после commit, иначе параллельный запрос мог бы снова положить в кеш старые данные
+    public void evictUser(String userId) {
+        evictUser(userId, null, null);
+    }
+
+    // то же самое + на других экземплярах объект сбрасывается из кеша 2 уровня (entityClass и id могут быть null, например для нового объекта)
+    public void evictUser(String userId, Class<?> entityClass, Long id) {
+
+        if (userId == null) {
+            return;
+        }
+
+        String entity = entityClass != null ? entityClass.getSimpleName() : null;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(userId);
+                    cacheInvalidationBus.publish(userId, entity, id);
+                }
+            });
+        } else {
+            evictNow(userId);
+            cacheInvalidationBus.publish(userId, entity, id);
+        }
+    }
+
+    // применить изменения, о которых сообщил другой экземпляр приложения
+    public void applyRemote(CacheInvalidationEvent event) {
+
+        if (cacheInvalidationBus.getOrigin().equals(event.getOrigin())) {
+            return; // свои изменения уже применены
+        }
+
+        event.getUsers().forEach(this::evictNow);
+
+        event.getEntities().forEach((entity, ids) -> {
+            Class<?> entityClass = ENTITIES.get(entity);
+            if (entityClass != null) {
+                ids.forEach(id -> entityManagerFactory.getCache().evict(entityClass, id));
+            }
+        });
+    }
+
+    private void evictNow(String userId) {
+        versions.put(userId, sequence.incrementAndGet());
+        cacheManager.getCache(CacheConfig.TASKS).evict(userId);
+        cacheManager.getCache(CacheConfig.CATEGORIES).evict(userId);
+        cacheManager.getCache(CacheConfig.TASKS_COMPACT).evict(userId);
+    }
+
+    // ключ для TaskService.findByParams и findByParamsCompact(text, completed, priorityId, categoryId, userId, dateFrom, dateTo, paging)
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        String userId = (String) params[4];
+        return TaskSearchKey.of(userId, version(userId), (String) params[0], (Boolean) params[1], (Long) params[2], (Long) params[3],
+                (Date) params[5], (Date) params[6], (Pageable) params[7]);
+    }
+
+}
@@ -11,6 +11,8 @@ import ru.javabegin.micro.planner.entity.Category;
 import ru.javabegin.micro.planner.todo.feign.UserFeignClient;
 import ru.javabegin.micro.planner.todo.search.CategorySearchValues;
 import ru.javabegin.micro.planner.todo.service.CategoryService;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceException;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceResolver;
 import ru.javabegin.micro.planner.utils.rest.resttemplate.UserRestBuilder;
 import ru.javabegin.micro.planner.utils.rest.webclient.UserWebClientBuilder;
 
@@ -31,6 +33,8 @@ import java.util.NoSuchElementException;
 @RequestMapping("/category") // базовый URI
 public class CategoryController {
 
+    private static final int TITLE_SEARCH_LIMIT = 20; // сколько результатов возвращать при поиске по названию
+
     // доступ к данным из БД
     private CategoryService categoryService;
 
@@ -44,13 +48,17 @@ public class CategoryController {
     // клиент для вызова мс
     private UserFeignClient userFeignClient;
 
+    // проверка существования пользователя (с кешем и объединением запросов)
+    private UserExistenceResolver userExistenceResolver;
+
     // используем автоматическое внедрение экземпляра класса через конструктор
     // не используем @Autowired ля переменной класса, т.к. "Field injection is not recommended "
-    public CategoryController(CategoryService categoryService, @Qualifier("ru.javabegin.micro.planner.todo.feign.UserFeignClient") UserFeignClient userFeignClient, UserRestBuilder userRestBuilder, UserWebClientBuilder userWebClientBuilder) {
+    public CategoryController(CategoryService categoryService, @Qualifier("ru.javabegin.micro.planner.todo.feign.UserFeignClient") UserFeignClient userFeignClient, UserRestBuilder userRestBuilder, UserWebClientBuilder userWebClientBuilder, UserExistenceResolver userExistenceResolver) {
         this.categoryService = categoryService;
         this.userRestBuilder = userRestBuilder;
         this.userWebClientBuilder = userWebClientBuilder;
         this.userFeignClient = userFeignClient;
+        this.userExistenceResolver = userExistenceResolver;
     }
 
 
@@ -102,13 +110,18 @@ public class CategoryController {
 //            return ResponseEntity.ok(categoryService.add(category));
 //        }
 
-        // пользователь (или его данные) уже передаются в access token, поэтому ничего получать дополнительно не нужно
-        if (!category.getUserId().isBlank()) { // если идентификатор пользователя не пустой
-            return ResponseEntity.ok(categoryService.add(category));
+        // проверка через UserExistenceResolver: результат кешируется, одновременные проверки объединяются в один запрос
+        try {
+            if (!userExistenceResolver.exists(category.getUserId())) {
+                // если пользователя НЕ существует
+                return new ResponseEntity("user id=" + category.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+            }
+        } catch (UserExistenceException e) {
+            e.printStackTrace();
+            return new ResponseEntity("система пользователей недоступна, попробуйте позже", HttpStatus.SERVICE_UNAVAILABLE);
         }
 
-        // если передали UUID пользователя
-        return new ResponseEntity("user id=" + category.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+        return ResponseEntity.ok(categoryService.add(category)); // возвращаем добавленный объект с заполненным ID
     }
 
 
@@ -166,6 +179,23 @@ public class CategoryController {
     }
 
 
+    // поиск по названию с ранжированием: сначала совпадения с начала названия, затем похожие (с опечатками)
+    @PostMapping("/title")
+    public ResponseEntity<List<Category>> searchByTitle(@RequestBody CategorySearchValues categorySearchValues) {
+
+        // проверка на обязательные параметры
+        if (categorySearchValues.getUserId() == null || categorySearchValues.getUserId().isBlank()) {
+            return new ResponseEntity("missed param: userId", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (categorySearchValues.getTitle() == null || categorySearchValues.getTitle().isBlank()) {
+            return new ResponseEntity("missed param: title", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return ResponseEntity.ok(categoryService.findByTitleRanked(categorySearchValues.getTitle().trim(), categorySearchValues.getUserId(), TITLE_SEARCH_LIMIT));
+    }
+
+
     // параметр id передаются не в BODY запроса, а в самом URL
     @PostMapping("/id")
     public ResponseEntity<Category> findById(@RequestBody Long id) {
@@ -9,6 +9,8 @@ import org.springframework.web.bind.annotation.*;
 import ru.javabegin.micro.planner.entity.Priority;
 import ru.javabegin.micro.planner.todo.search.PrioritySearchValues;
 import ru.javabegin.micro.planner.todo.service.PriorityService;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceException;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceResolver;
 import ru.javabegin.micro.planner.utils.rest.resttemplate.UserRestBuilder;
 
 
@@ -35,17 +37,23 @@ import java.util.NoSuchElementException;
 @RequestMapping("/priority") // базовый URI
 public class PriorityController {
 
+    private static final int TITLE_SEARCH_LIMIT = 20; // сколько результатов возвращать при поиске по названию
+
     // доступ к данным из БД
     private PriorityService priorityService;
 
     // микросервисы для работы с пользователями
     private UserRestBuilder userRestBuilder;
 
+    // проверка существования пользователя (с кешем и объединением запросов)
+    private UserExistenceResolver userExistenceResolver;
+
     // используем автоматическое внедрение экземпляра класса через конструктор
     // не используем @Autowired ля переменной класса, т.к. "Field injection is not recommended "
-    public PriorityController(PriorityService priorityService, UserRestBuilder userRestBuilder) {
+    public PriorityController(PriorityService priorityService, UserRestBuilder userRestBuilder, UserExistenceResolver userExistenceResolver) {
         this.priorityService = priorityService;
         this.userRestBuilder = userRestBuilder;
+        this.userExistenceResolver = userExistenceResolver;
     }
 
     @PostMapping("/all")
@@ -79,13 +87,19 @@ public class PriorityController {
 //        if (userRestBuilder.userExists(priority.getUserId())) { // вызываем микросервис из другого модуля
 //            return ResponseEntity.ok(priorityService.add(priority)); // возвращаем добавленный объект с заполненным ID
 //        }
-        // если такой пользователь существует
-        if (!priority.getUserId().isBlank()) { // вызываем микросервис из другого модуля
-            return ResponseEntity.ok(priorityService.add(priority)); // возвращаем добавленный объект с заполненным ID
+
+        // проверка через UserExistenceResolver: результат кешируется, одновременные проверки объединяются в один запрос
+        try {
+            if (!userExistenceResolver.exists(priority.getUserId())) {
+                // если пользователя НЕ существует
+                return new ResponseEntity("user id=" + priority.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+            }
+        } catch (UserExistenceException e) {
+            e.printStackTrace();
+            return new ResponseEntity("система пользователей недоступна, попробуйте позже", HttpStatus.SERVICE_UNAVAILABLE);
         }
 
-        // если пользователя НЕ существует
-        return new ResponseEntity("user id=" + priority.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+        return ResponseEntity.ok(priorityService.add(priority)); // возвращаем добавленный объект с заполненным ID
     }
 
 
@@ -166,4 +180,21 @@ public class PriorityController {
     }
 
 
+    // поиск по названию с ранжированием: сначала совпадения с начала названия, затем похожие (с опечатками)
+    @PostMapping("/title")
+    public ResponseEntity<List<Priority>> searchByTitle(@RequestBody PrioritySearchValues prioritySearchValues) {
+
+        // проверка на обязательные параметры
+        if (prioritySearchValues.getUserId() == null || prioritySearchValues.getUserId().isBlank()) {
+            return new ResponseEntity("missed param: userId", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (prioritySearchValues.getTitle() == null || prioritySearchValues.getTitle().isBlank()) {
+            return new ResponseEntity("missed param: title", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return ResponseEntity.ok(priorityService.findByTitleRanked(prioritySearchValues.getTitle().trim(), prioritySearchValues.getUserId(), TITLE_SEARCH_LIMIT));
+    }
+
+
 }
@@ -1,24 +1,41 @@
 package ru.javabegin.micro.planner.todo.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.dto.TaskBatchRequest;
+import ru.javabegin.micro.planner.todo.dto.TaskBatchResult;
+import ru.javabegin.micro.planner.todo.dto.TaskSlice;
 import ru.javabegin.micro.planner.todo.search.TaskSearchValues;
+import ru.javabegin.micro.planner.todo.dto.TaskImportResult;
+import ru.javabegin.micro.planner.todo.service.TaskExportService;
+import ru.javabegin.micro.planner.todo.service.TaskImportService;
 import ru.javabegin.micro.planner.todo.service.TaskService;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceException;
+import ru.javabegin.micro.planner.utils.rest.resolver.UserExistenceResolver;
 import ru.javabegin.micro.planner.utils.rest.resttemplate.UserRestBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 /*
@@ -40,22 +57,108 @@ import java.util.NoSuchElementException;
 public class TaskController {
 
     public static final String ID_COLUMN = "id"; // имя столбца id
+    private static final int TITLE_SEARCH_LIMIT = 20; // сколько результатов возвращать при поиске по названию (если не передан pageSize)
+    private static final int TITLE_SEARCH_MAX_LIMIT = 100; // максимальный pageSize при поиске по названию
+    private static final int KEYSET_MAX_PAGE_SIZE = 1000; // максимальный pageSize при постраничности по курсору
     private final TaskService taskService; // сервис для доступа к данным (напрямую к репозиториям не обращаемся)
+    private final TaskExportService taskExportService; // выгрузка всех задач пользователя
+    private final TaskImportService taskImportService; // импорт задач пользователя
+    private final TaskResponseWriter taskResponseWriter; // JSON списков задач (полный и компактный формат)
 
     // микросервисы для работы с пользователями
     private UserRestBuilder userRestBuilder;
 
+    // проверка существования пользователя (с кешем и объединением запросов)
+    private final UserExistenceResolver userExistenceResolver;
+
     // используем автоматическое внедрение экземпляра класса через конструктор
     // не используем @Autowired ля переменной класса, т.к. "Field injection is not recommended "
-    public TaskController(TaskService taskService, UserRestBuilder userRestBuilder) {
+    public TaskController(TaskService taskService, TaskExportService taskExportService, TaskImportService taskImportService,
+                          TaskResponseWriter taskResponseWriter, UserRestBuilder userRestBuilder,
+                          UserExistenceResolver userExistenceResolver) {
         this.taskService = taskService;
+        this.taskExportService = taskExportService;
+        this.taskImportService = taskImportService;
+        this.taskResponseWriter = taskResponseWriter;
         this.userRestBuilder = userRestBuilder;
+        this.userExistenceResolver = userExistenceResolver;
     }
 
     // получение всех данных
+    // compact=true - компактный формат (TaskListCompact): приоритеты и категории передаются один раз, а не в каждой задаче
     @PostMapping("/all")
-    public ResponseEntity<List<Task>> findAll(@RequestBody String userId) {
-        return ResponseEntity.ok(taskService.findAll(userId)); // поиск всех задач конкретного пользователя
+    public ResponseEntity<byte[]> findAll(@RequestBody String userId,
+                                          @RequestParam(name = "compact", defaultValue = "false") boolean compact) {
+
+        if (compact) {
+            return taskResponseWriter.compact("all", taskService.findAllCompact(userId));
+        }
+
+        return taskResponseWriter.full("all", taskService.findAll(userId)); // поиск всех задач конкретного пользователя
+    }
+
+    // выгрузка всех задач пользователя из access token: format=ndjson (по одному JSON объекту в строке) или format=csv
+    // задачи пишутся в ответ по мере чтения из БД (без загрузки всего списка в память),
+    // если клиент поддерживает gzip (заголовок Accept-Encoding, gzip или * без q=0) - ответ сжимается
+    @PostMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(name = "format", defaultValue = TaskExportService.NDJSON) String format,
+                                                        @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                        @AuthenticationPrincipal Jwt jwt) {
+
+        String userId = jwt.getSubject(); // только свои задачи (как у /task/import)
+
+        if (!TaskExportService.NDJSON.equals(format) && !TaskExportService.CSV.equals(format)) {
+            return new ResponseEntity("wrong param: format (ndjson, csv)", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+                taskExportService.export(userId, format, gzipOut);
+                gzipOut.finish(); // поток ответа закрывает сервер
+            } else {
+                taskExportService.export(userId, format, out);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(TaskExportService.CSV.equals(format) ? new MediaType("text", "csv") : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tasks." + format + "\"");
+
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return response.body(body);
+    }
+
+    // импорт задач пользователя из тела запроса: format=ndjson или format=csv (как у /task/export)
+    // данные читаются по мере поступления, строки с ошибками пропускаются и возвращаются в TaskImportResult.errors
+    // сжатые данные передаются с заголовком Content-Encoding: gzip
+    @PostMapping("/import")
+    public ResponseEntity<TaskImportResult> importTasks(HttpServletRequest request,
+                                                        @RequestParam(name = "format", defaultValue = TaskExportService.NDJSON) String format,
+                                                        @AuthenticationPrincipal Jwt jwt) throws IOException {
+
+        if (!TaskExportService.NDJSON.equals(format) && !TaskExportService.CSV.equals(format)) {
+            return new ResponseEntity("wrong param: format (ndjson, csv)", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        String contentEncoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+
+        try (InputStream in = "gzip".equalsIgnoreCase(contentEncoding)
+                ? new GZIPInputStream(request.getInputStream(), 8192)
+                : request.getInputStream()) {
+
+            // все задачи импортируются для пользователя из access token
+            return ResponseEntity.ok(taskImportService.importTasks(jwt.getSubject(), format, in));
+
+        } catch (IllegalArgumentException e) { // например, в csv нет заголовка
+            e.printStackTrace();
+            return new ResponseEntity(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        }
     }
 
     // добавление
@@ -80,13 +183,18 @@ public class TaskController {
 //            return ResponseEntity.ok(taskService.add(task)); // возвращаем добавленный объект с заполненным ID
 //        }
 
-        // если передали UUID пользователя
-        if (!task.getUserId().isBlank()) { // вызываем микросервис из другого модуля
-            return ResponseEntity.ok(taskService.add(task)); // возвращаем добавленный объект с заполненным ID
+        // проверка через UserExistenceResolver: результат кешируется, одновременные проверки объединяются в один запрос
+        try {
+            if (!userExistenceResolver.exists(task.getUserId())) {
+                // если пользователя НЕ существует
+                return new ResponseEntity("user id=" + task.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+            }
+        } catch (UserExistenceException e) {
+            e.printStackTrace();
+            return new ResponseEntity("система пользователей недоступна, попробуйте позже", HttpStatus.SERVICE_UNAVAILABLE);
         }
 
-        // если пользователя НЕ существует
-        return new ResponseEntity("user id=" + task.getUserId() + " not found", HttpStatus.NOT_ACCEPTABLE);
+        return ResponseEntity.ok(taskService.add(task)); // возвращаем добавленный объект с заполненным ID
     }
 
 
@@ -129,6 +237,39 @@ public class TaskController {
     }
 
 
+    // пакетное изменение: добавление, обновление и удаление списка задач в одной транзакции
+    // (например, для синхронизации изменений, которые мобильный клиент накопил offline)
+    @PostMapping("/batch")
+    public ResponseEntity<TaskBatchResult> batch(@RequestBody TaskBatchRequest batch, @AuthenticationPrincipal Jwt jwt) {
+
+        List<Task> creates = batch.getCreates() != null ? batch.getCreates() : new ArrayList<>();
+        List<Task> updates = batch.getUpdates() != null ? batch.getUpdates() : new ArrayList<>();
+        List<Long> deletes = batch.getDeletes() != null ? batch.getDeletes() : new ArrayList<>();
+
+        // проверка на обязательные параметры - если хотя бы одна задача неверная, пакет не выполняется
+        for (Task task : creates) {
+            if (task.getId() != null && task.getId() != 0) {
+                return new ResponseEntity("redundant param: id MUST be null", HttpStatus.NOT_ACCEPTABLE);
+            }
+            if (task.getTitle() == null || task.getTitle().trim().length() == 0) {
+                return new ResponseEntity("missed param: title", HttpStatus.NOT_ACCEPTABLE);
+            }
+        }
+
+        for (Task task : updates) {
+            if (task.getId() == null || task.getId() == 0) {
+                return new ResponseEntity("missed param: id", HttpStatus.NOT_ACCEPTABLE);
+            }
+            if (task.getTitle() == null || task.getTitle().trim().length() == 0) {
+                return new ResponseEntity("missed param: title", HttpStatus.NOT_ACCEPTABLE);
+            }
+        }
+
+        // все задачи пакета относятся к пользователю из access token
+        return ResponseEntity.ok(taskService.applyBatch(jwt.getSubject(), creates, updates, deletes));
+    }
+
+
     // получение объекта по id
     @PostMapping("/id")
     public ResponseEntity<Task> findById(@RequestBody Long id) {
@@ -148,9 +289,33 @@ public class TaskController {
     }
 
 
+    // поиск по названию с ранжированием: сначала совпадения с начала названия, затем похожие (с опечатками)
+    @PostMapping("/title")
+    public ResponseEntity<List<Task>> searchByTitle(@RequestBody TaskSearchValues taskSearchValues) {
+
+        // проверка на обязательные параметры
+        if (taskSearchValues.getUserId() == null || taskSearchValues.getUserId().isBlank()) {
+            return new ResponseEntity("missed param: userId", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (taskSearchValues.getTitle() == null || taskSearchValues.getTitle().isBlank()) {
+            return new ResponseEntity("missed param: title", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        int limit = taskSearchValues.getPageSize() != null ? taskSearchValues.getPageSize() : TITLE_SEARCH_LIMIT;
+
+        // отрицательное значение в LIMIT - ошибка БД, слишком большое - ранжирование всех похожих задач пользователя
+        if (limit < 1 || limit > TITLE_SEARCH_MAX_LIMIT) {
+            return new ResponseEntity("wrong param: pageSize (1-" + TITLE_SEARCH_MAX_LIMIT + ")", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return ResponseEntity.ok(taskService.findByTitleRanked(taskSearchValues.getTitle().trim(), taskSearchValues.getUserId(), limit));
+    }
+
+
     // поиск по любым параметрам TaskSearchValues
     @PostMapping("/search")
-    public ResponseEntity<Page<Task>> search(@RequestBody TaskSearchValues taskSearchValues) throws ParseException {
+    public ResponseEntity<byte[]> search(@RequestBody TaskSearchValues taskSearchValues) throws ParseException {
 
         // исключить NullPointerException
         String title = taskSearchValues.getTitle() != null ? taskSearchValues.getTitle() : null;
@@ -219,18 +384,90 @@ public class TaskController {
             Поэтому и используем ID - тогда все записи с одинаковым значением приоритета будут следовать в одном порядке по ID.
          */
 
+        // постраничность по курсору - следующая страница выбирается по последней паре (sortColumn, id), а не через OFFSET
+        if (Boolean.TRUE.equals(taskSearchValues.getKeyset()) || taskSearchValues.getPageToken() != null) {
+
+            // null - NullPointerException, 0 - пустая страница без курсора, слишком большое - выборка всех задач пользователя
+            if (pageSize == null || pageSize < 1 || pageSize > KEYSET_MAX_PAGE_SIZE) {
+                return new ResponseEntity("wrong param: pageSize (1-" + KEYSET_MAX_PAGE_SIZE + ")", HttpStatus.NOT_ACCEPTABLE);
+            }
+
+            boolean withTotal = Boolean.TRUE.equals(taskSearchValues.getWithTotal());
+
+            try {
+                // компактный формат - так же, как при постраничности через OFFSET
+                if (Boolean.TRUE.equals(taskSearchValues.getCompact())) {
+                    return taskResponseWriter.compact("search", taskService.findByParamsAfterCompact(title, completed, priorityId, categoryId, userId,
+                            dateFrom, dateTo, sortColumn, direction, pageSize, taskSearchValues.getPageToken(), withTotal));
+                }
+
+                TaskSlice slice = taskService.findByParamsAfter(title, completed, priorityId, categoryId, userId, dateFrom, dateTo,
+                        sortColumn, direction, pageSize, taskSearchValues.getPageToken(), withTotal);
+
+                return taskResponseWriter.full("search", slice);
+
+            } catch (IllegalArgumentException e) { // если передали неверный token
+                e.printStackTrace();
+                return new ResponseEntity(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+            }
+        }
+
         // объект сортировки, который содержит стобец и направление
         Sort sort = Sort.by(direction, sortColumn, ID_COLUMN);
 
         // объект постраничности
         PageRequest pageRequest = PageRequest.of(pageNumber, pageSize, sort);
 
+        // компактный формат: задачи без вложенных объектов + приоритеты и категории отдельными списками
+        if (Boolean.TRUE.equals(taskSearchValues.getCompact())) {
+            return taskResponseWriter.compact("search",
+                    taskService.findByParamsCompact(title, completed, priorityId, categoryId, userId, dateFrom, dateTo, pageRequest));
+        }
+
         // результат запроса с постраничным выводом
         Page<Task> result = taskService.findByParams(title, completed, priorityId, categoryId, userId, dateFrom, dateTo, pageRequest);
 
         // результат запроса
-        return ResponseEntity.ok(result);
+        return taskResponseWriter.full("search", result);
+
+    }
+
+    // есть ли gzip среди допустимых кодировок Accept-Encoding: "gzip, deflate", "gzip;q=0.5", "*" (q=0 - кодировка запрещена)
+    private static boolean acceptsGzip(String acceptEncoding) {
+
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Boolean any = null; // значение для "*", если gzip не указан явно
+
+        for (String value : acceptEncoding.split(",")) {
+
+            String[] parts = value.split(";");
+            String coding = parts[0].trim();
+
+            boolean allowed = true;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        allowed = Double.parseDouble(param.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        allowed = false;
+                    }
+                }
+            }
+
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                return allowed;
+            }
+
+            if (coding.equals("*")) {
+                any = allowed;
+            }
+        }
 
+        return Boolean.TRUE.equals(any);
     }
 
 
@@ -0,0 +1,75 @@
+package ru.javabegin.micro.planner.todo.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import ru.javabegin.micro.planner.todo.dto.TaskListCompact;
+
+import java.io.UncheckedIOException;
+
+/*
+
+JSON ответы списков задач (/task/all, /task/search) - сериализуются здесь, а не конвертером Spring MVC,
+чтобы измерить размер ответа и время сериализации для полного и компактного формата:
+
+planner.task.response.bytes - размер ответа в байтах
+planner.task.response.serialization - время сериализации
+(теги: endpoint = all/search, format = full/compact)
+
+ */
+
+@Component
+public class TaskResponseWriter {
+
+    private final ObjectWriter writer;
+    private final ObjectWriter compactWriter; // сериализатор для TaskListCompact подготовлен заранее (а не ищется для каждого ответа)
+    private final MeterRegistry meterRegistry;
+
+    public TaskResponseWriter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.writer = objectMapper.writer();
+        this.compactWriter = objectMapper.writerFor(TaskListCompact.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ResponseEntity<byte[]> full(String endpoint, Object body) {
+        return write(endpoint, "full", writer, body);
+    }
+
+    public ResponseEntity<byte[]> compact(String endpoint, TaskListCompact body) {
+        return write(endpoint, "compact", compactWriter, body);
+    }
+
+    private ResponseEntity<byte[]> write(String endpoint, String format, ObjectWriter objectWriter, Object body) {
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        byte[] json;
+
+        try {
+            json = objectWriter.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        sample.stop(Timer.builder("planner.task.response.serialization")
+                .tag("endpoint", endpoint)
+                .tag("format", format)
+                .register(meterRegistry));
+
+        DistributionSummary.builder("planner.task.response.bytes")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .tag("format", format)
+                .register(meterRegistry)
+                .record(json.length);
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(json);
+    }
+
+}
@@ -1,10 +1,14 @@
 package ru.javabegin.micro.planner.todo.controller;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import ru.javabegin.micro.planner.todo.dto.SeedRequest;
+import ru.javabegin.micro.planner.todo.seed.SeedProgress;
 import ru.javabegin.micro.planner.todo.service.TestDataService;
 
 // для заполнения тестовыми данными
@@ -14,6 +18,12 @@ import ru.javabegin.micro.planner.todo.service.TestDataService;
 
 public class TestDataController {
 
+    private static final int MAX_USERS = 100_000; // ограничение на количество пользователей в одном заполнении
+
+    // заполнение тестовыми данными (/seed) выключено по умолчанию - включать только на тестовых стендах
+    @Value("${planner.seed.enabled:false}")
+    private boolean seedEnabled;
+
     private final TestDataService testDataService;
 
 
@@ -35,4 +45,64 @@ public class TestDataController {
     }
 
 
+    // заполнение тестовыми данными по шаблону (выполняется в фоне, ход выполнения - /data/progress)
+    // доступно только с ролью admin (см. SpringSecurityConfig) и при planner.seed.enabled=true
+    @PostMapping("/seed")
+    public ResponseEntity<SeedProgress> seed(@RequestBody SeedRequest request) {
+
+        if (!seedEnabled) {
+            return new ResponseEntity("seed disabled", HttpStatus.NOT_FOUND);
+        }
+
+        int users = (request.getUserIds() != null ? request.getUserIds().size() : 0) +
+                (request.getUserCount() != null ? request.getUserCount() : 0);
+
+        if (request.getUserIds() == null || request.getUserCount() != null && request.getUserCount() < 0) {
+            return new ResponseEntity("wrong param: userIds, userCount", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (users == 0) {
+            return new ResponseEntity("missed param: userIds or userCount", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (users > MAX_USERS) {
+            return new ResponseEntity("too many users: max " + MAX_USERS, HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (request.getUserCount() != null && (request.getUserPrefix() == null || request.getUserPrefix().isBlank())) {
+            return new ResponseEntity("missed param: userPrefix", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        SeedProgress progress;
+
+        try {
+            progress = testDataService.startSeed(request);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity(e.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (progress == null) {
+            return new ResponseEntity("seed already running", HttpStatus.CONFLICT);
+        }
+
+        return ResponseEntity.accepted().body(progress);
+
+    }
+
+
+    // ход последнего заполнения
+    @PostMapping("/progress")
+    public ResponseEntity<SeedProgress> progress() {
+
+        SeedProgress progress = testDataService.getProgress();
+
+        if (progress == null) {
+            return new ResponseEntity("seed not started", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return ResponseEntity.ok(progress);
+
+    }
+
+
 }
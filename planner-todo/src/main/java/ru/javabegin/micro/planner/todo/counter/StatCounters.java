@@ -0,0 +1,559 @@
+package ru.javabegin.micro.planner.todo.counter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Stat;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/*
+
+счетчики выполненных/невыполненных задач (общая статистика пользователя и статистика по категориям)
+
+раньше счетчики изменялись триггерами БД при каждом изменении задачи - это блокировало одну и ту же строку stat (и category)
+для всех задач пользователя. Теперь изменения накапливаются в памяти (LongAdder) и периодически записываются в БД пачкой.
+
+- изменения транзакции пишутся в журнал на диске (StatJournal, с fsync) перед ее commit, поэтому после падения приложения
+  они не потеряются: при старте все незаписанные журналы загружаются обратно и записываются в БД
+  (если commit не удался - в журнал дописываются обратные изменения)
+- вместе с изменениями в той же транзакции в БД записываются id журналов (stat_flush_log),
+  поэтому журнал, который уже был записан, повторно не применяется
+- у каждого экземпляра приложения свой каталог журнала (planner.stat.journal-dir/planner.stat.instance-id) -
+  id экземпляра должен сохраняться между перезапусками, иначе журнал после падения не будет загружен
+- при чтении статистики к значениям из БД добавляются еще не записанные изменения (только этого экземпляра приложения),
+  в т.ч. те, что сейчас записываются в БД: чтение (read) не выполняется одновременно с обменом значений в памяти
+  и commit записи (flush), поэтому изменения не учитываются дважды и не теряются
+
+триггеры счетчиков в БД должны быть отключены (см. db/stat_counters.sql)
+
+ */
+
+@Component
+@Log
+public class StatCounters {
+
+    // накопленные изменения одного счетчика
+    private static class Counter {
+        final String userId; // владелец (для категорий - чтобы сбросить кеш пользователя после записи в БД)
+        final LongAdder completed = new LongAdder();
+        final LongAdder uncompleted = new LongAdder();
+
+        Counter(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    // изменения счетчиков: накопленные для записи в БД или изменения одной транзакции
+    private record Snapshot(Map<String, long[]> users, Map<Long, long[]> categories, Map<Long, String> categoryOwners) {
+
+        Snapshot() {
+            this(new HashMap<>(), new HashMap<>(), new HashMap<>());
+        }
+
+        boolean isEmpty() {
+            return users.isEmpty() && categories.isEmpty();
+        }
+
+        // строки журнала (sign = -1 - обратные изменения)
+        String journalLines(int sign) {
+            StringBuilder lines = new StringBuilder();
+            users.forEach((userId, d) -> lines.append(StatJournal.userLine(userId, sign * d[0], sign * d[1])));
+            categories.forEach((id, d) -> lines.append(StatJournal.categoryLine(id, categoryOwners.get(id), sign * d[0], sign * d[1])));
+            return lines.toString();
+        }
+    }
+
+    private final Map<String, Counter> users = new ConcurrentHashMap<>();
+    private final Map<Long, Counter> categories = new ConcurrentHashMap<>();
+
+    // изменения и чтение - общая блокировка (выполняются параллельно), обмен значений и commit записи в БД - эксклюзивная:
+    // так содержимое журналов всегда совпадает с накопленными значениями, а чтение видит значения в БД и накопленные
+    // изменения либо до записи в БД, либо после
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Path> pendingFiles = new ArrayList<>(); // журналы, изменения из которых еще не записаны в БД (кроме текущего)
+
+    private volatile Snapshot flushing = new Snapshot(); // изменения, которые сейчас записываются в БД (до commit)
+
+    private StatJournal journal;
+
+    @Value("${planner.stat.journal-dir:stat-journal}")
+    private String journalDir;
+
+    @Value("${planner.stat.instance-id:${PLANNER_INSTANCE_ID:${HOSTNAME:local}}}")
+    private String instanceId; // подкаталог журнала этого экземпляра приложения
+
+    @Value("${planner.stat.journal-fsync:true}")
+    private boolean journalFsync; // сбрасывать журнал на диск перед commit каждой транзакции
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserCacheVersions userCacheVersions;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public StatCounters(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, UserCacheVersions userCacheVersions, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.userCacheVersions = userCacheVersions;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // загрузить журналы, которые не успели записаться в БД до остановки (падения) приложения
+    @PostConstruct
+    public void replay() throws IOException {
+
+        journal = new StatJournal(Path.of(journalDir, instanceId), journalFsync);
+        journal.lock();
+
+        for (Path file : journal.existingFiles()) {
+
+            Integer flushed = jdbcTemplate.queryForObject("select count(*) from todo.stat_flush_log where journal_id = ?", Integer.class, StatJournal.idOf(file));
+
+            if (flushed != null && flushed > 0) { // изменения уже в БД - файл не успели удалить
+                Files.deleteIfExists(file);
+                continue;
+            }
+
+            StatJournal.read(file, line -> {
+                if ("U".equals(line[0])) {
+                    add(userCounter(line[1]), Long.parseLong(line[2]), Long.parseLong(line[3]));
+                } else {
+                    add(categoryCounter(Long.valueOf(line[1]), line[2]), Long.parseLong(line[3]), Long.parseLong(line[4]));
+                }
+            });
+
+            pendingFiles.add(file);
+        }
+
+        if (!pendingFiles.isEmpty()) {
+            log.info("stat journal replay: " + pendingFiles.size() + " file(s)");
+        }
+
+        journal.open();
+    }
+
+    // изменение задачи: before - состояние до изменения (null для новой задачи), after - после (null для удаленной)
+    // изменения учитываются только после успешного commit транзакции
+    public void taskChanged(TaskState before, TaskState after) {
+
+        Snapshot changes = changes();
+
+        collect(before, -1, changes);
+        collect(after, 1, changes);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyNow(changes);
+        }
+    }
+
+    // массовое добавление задач - изменения суммируются, поэтому в журнал пишется одна строка на счетчик, а не на каждую задачу
+    public void tasksAdded(Collection<TaskState> added) {
+
+        Snapshot changes = changes();
+
+        for (TaskState state : added) {
+            collect(state, 1, changes);
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            applyNow(changes);
+        }
+    }
+
+    // изменения текущей транзакции (все изменения транзакции записываются в журнал вместе - одна запись и один fsync)
+    private Snapshot changes() {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Snapshot();
+        }
+
+        Snapshot changes = (Snapshot) TransactionSynchronizationManager.getResource(this);
+
+        if (changes == null) {
+            changes = new Snapshot();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new JournalSynchronization(changes));
+        }
+
+        return changes;
+    }
+
+    // без транзакции - изменение записывается в журнал и учитывается сразу
+    private void applyNow(Snapshot changes) {
+
+        removeEmpty(changes);
+
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        lock.readLock().lock();
+        try {
+            writeJournal(changes, 1);
+            add(changes);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // запись в журнал перед commit и учет изменений после commit - под одной общей блокировкой,
+    // чтобы запись в БД (flush) не прошла между ними (иначе изменения из закрытого журнала еще не будут учтены в значениях)
+    private class JournalSynchronization implements TransactionSynchronization {
+
+        private final Snapshot changes;
+        private boolean journaled;
+
+        JournalSynchronization(Snapshot changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+
+            removeEmpty(changes);
+
+            if (changes.isEmpty()) {
+                return;
+            }
+
+            lock.readLock().lock();
+            journaled = true;
+            writeJournal(changes, 1);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+
+            TransactionSynchronizationManager.unbindResourceIfPossible(StatCounters.this);
+
+            if (!journaled) {
+                return;
+            }
+
+            try {
+                if (status == STATUS_COMMITTED) {
+                    add(changes);
+                } else {
+                    writeJournal(changes, -1); // изменения не сохранились в БД - отменяем их и в журнале
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    // если запись в журнал не удалась - изменения все равно будут записаны в БД, но не переживут падение приложения
+    private void writeJournal(Snapshot changes, int sign) {
+        try {
+            journal.append(changes.journalLines(sign));
+        } catch (IOException e) {
+            log.severe("stat journal write failed: " + e.getMessage());
+        }
+    }
+
+    private void add(Snapshot changes) {
+        changes.users().forEach((userId, d) -> add(userCounter(userId), d[0], d[1]));
+        changes.categories().forEach((id, d) -> add(categoryCounter(id, changes.categoryOwners().get(id)), d[0], d[1]));
+    }
+
+    private static void removeEmpty(Snapshot changes) {
+        changes.users().values().removeIf(d -> d[0] == 0 && d[1] == 0);
+        changes.categories().values().removeIf(d -> d[0] == 0 && d[1] == 0);
+    }
+
+    private static void collect(TaskState state, int sign, Snapshot changes) {
+
+        if (state == null || state.userId() == null) {
+            return;
+        }
+
+        int index = state.completed() ? 0 : 1; // 0 - completed, 1 - uncompleted
+
+        changes.users().computeIfAbsent(state.userId(), k -> new long[2])[index] += sign;
+
+        if (state.categoryId() != null) {
+            changes.categories().computeIfAbsent(state.categoryId(), k -> new long[2])[index] += sign;
+            changes.categoryOwners().put(state.categoryId(), state.userId());
+        }
+    }
+
+    private Counter userCounter(String userId) {
+        return users.computeIfAbsent(userId, Counter::new);
+    }
+
+    private Counter categoryCounter(Long categoryId, String userId) {
+        return categories.computeIfAbsent(categoryId, id -> new Counter(userId));
+    }
+
+    private static void add(Counter counter, long completed, long uncompleted) {
+        counter.completed.add(completed);
+        counter.uncompleted.add(uncompleted);
+    }
+
+    // загрузить данные из БД и добавить к ним еще не записанные изменения (withPending) -
+    // пока выполняется loader, запись в БД (flush) не начнется
+    public <T> T read(Supplier<T> loader) {
+        lock.readLock().lock();
+        try {
+            return loader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // статистика пользователя с учетом еще не записанных изменений (исходный объект не изменяется), вызывается внутри read
+    public Stat withPending(Stat stat) {
+
+        if (stat == null) {
+            return null;
+        }
+
+        long[] pending = pending(users.get(stat.getUserId()), flushing.users().get(stat.getUserId()));
+
+        return new Stat(stat.getId(), value(stat.getCompletedTotal()) + pending[0], value(stat.getUncompletedTotal()) + pending[1], stat.getUserId());
+    }
+
+    // категория с учетом еще не записанных изменений (исходный объект не изменяется), вызывается внутри read
+    public Category withPending(Category category) {
+
+        long[] pending = pending(categories.get(category.getId()), flushing.categories().get(category.getId()));
+
+        if (pending[0] == 0 && pending[1] == 0) {
+            return category;
+        }
+
+        return new Category(category.getId(), category.getTitle(),
+                value(category.getCompletedCount()) + pending[0], value(category.getUncompletedCount()) + pending[1], category.getUserId());
+    }
+
+    // накопленные изменения + изменения, которые записываются в БД, но еще не сохранены (commit)
+    private static long[] pending(Counter counter, long[] flushing) {
+        long[] result = new long[2];
+        if (counter != null) {
+            result[0] = counter.completed.sum();
+            result[1] = counter.uncompleted.sum();
+        }
+        if (flushing != null) {
+            result[0] += flushing[0];
+            result[1] += flushing[1];
+        }
+        return result;
+    }
+
+    private static long value(Long value) {
+        return value != null ? value : 0;
+    }
+
+    // записать накопленные изменения в БД (пачкой)
+    // транзакция (и соединение из пула) открывается до эксклюзивной блокировки, а сама блокировка нужна только на время
+    // обмена значений в памяти: забрать накопленные изменения (drain) и после commit убрать их из flushing -
+    // пока выполняются запросы к БД, чтение и учет изменений не ждут (записываемые изменения видны чтению через flushing)
+    @Scheduled(fixedDelayString = "${planner.stat.flush-interval:1000}")
+    public void flush() {
+
+        lock.readLock().lock();
+        try {
+            if (users.isEmpty() && categories.isEmpty() && pendingFiles.isEmpty()) {
+                return; // с прошлой записи ничего не изменилось - транзакцию не открываем
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        FlushSynchronization flushed;
+
+        try {
+            flushed = transactionTemplate.execute(status -> {
+
+                FlushSynchronization sync = new FlushSynchronization();
+
+                lock.writeLock().lock();
+                try {
+                    try {
+                        sync.files.addAll(pendingFiles);
+                        sync.files.add(journal.rotate());
+                        pendingFiles.clear();
+                    } catch (IOException e) {
+                        log.severe("stat journal rotate failed: " + e.getMessage());
+                        return null;
+                    }
+
+                    sync.snapshot = drain();
+                    flushing = sync.snapshot;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                TransactionSynchronizationManager.registerSynchronization(sync);
+
+                if (!sync.snapshot.isEmpty()) {
+                    write(sync.snapshot, sync.files);
+                }
+
+                return sync;
+            });
+        } catch (RuntimeException e) {
+            // изменения уже возвращены обратно (FlushSynchronization.afterCompletion) - они будут записаны при следующей попытке
+            log.severe("stat flush failed, will retry: " + e.getMessage());
+            return;
+        }
+
+        if (flushed == null) {
+            return;
+        }
+
+        for (Path file : flushed.files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warning("can't delete stat journal " + file + ": " + e.getMessage()); // при старте будет пропущен по stat_flush_log
+            }
+        }
+
+        // сбрасываем кеши пользователей
+        Snapshot snapshot = flushed.snapshot;
+        snapshot.users().keySet().forEach(userCacheVersions::evictUser);
+        snapshot.categories().keySet().forEach(id -> userCacheVersions.evictUser(snapshot.categoryOwners().get(id), Category.class, id));
+    }
+
+    // commit записи в БД и удаление записанных изменений из flushing - под эксклюзивной блокировкой,
+    // чтобы чтение видело значения в БД и изменения либо до commit, либо после (а не дважды)
+    private class FlushSynchronization implements TransactionSynchronization {
+
+        private final List<Path> files = new ArrayList<>();
+        private Snapshot snapshot;
+        private boolean locked;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            lock.writeLock().lock();
+            locked = true;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+
+            if (!locked) {
+                lock.writeLock().lock(); // откат до commit
+            }
+
+            try {
+                if (status == STATUS_COMMITTED) {
+                    // значения в БД изменились - кеш 2 уровня hibernate для категорий сбрасывается до того, как чтение продолжится
+                    snapshot.categories().keySet().forEach(id -> entityManagerFactory.getCache().evict(Category.class, id));
+                } else {
+                    // возвращаем изменения обратно - они будут записаны при следующей попытке вместе с этими журналами
+                    add(snapshot);
+                    pendingFiles.addAll(files);
+                }
+                flushing = new Snapshot();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // забрать накопленные значения (вызывается под эксклюзивной блокировкой)
+    private Snapshot drain() {
+
+        Map<String, long[]> userValues = new HashMap<>();
+        Map<Long, long[]> categoryValues = new HashMap<>();
+        Map<Long, String> categoryOwners = new HashMap<>();
+
+        users.forEach((userId, counter) -> {
+            long[] d = {counter.completed.sumThenReset(), counter.uncompleted.sumThenReset()};
+            if (d[0] != 0 || d[1] != 0) {
+                userValues.put(userId, d);
+            }
+        });
+        users.clear();
+
+        categories.forEach((id, counter) -> {
+            long[] d = {counter.completed.sumThenReset(), counter.uncompleted.sumThenReset()};
+            if (d[0] != 0 || d[1] != 0) {
+                categoryValues.put(id, d);
+                categoryOwners.put(id, counter.userId);
+            }
+        });
+        categories.clear();
+
+        return new Snapshot(userValues, categoryValues, categoryOwners);
+    }
+
+    // запись в БД одной транзакцией: пачка update (и insert для новых пользователей) + id журналов
+    private void write(Snapshot snapshot, List<Path> files) {
+
+        List<Object[]> userArgs = new ArrayList<>();
+        snapshot.users().forEach((userId, d) -> userArgs.add(new Object[]{d[0], d[1], userId}));
+
+        int[][] updated = jdbcTemplate.batchUpdate(
+                "update todo.stat set completed_total = coalesce(completed_total, 0) + ?, uncompleted_total = coalesce(uncompleted_total, 0) + ? where user_id = ?",
+                userArgs, userArgs.size(), (ps, args) -> {
+                    ps.setLong(1, (Long) args[0]);
+                    ps.setLong(2, (Long) args[1]);
+                    ps.setString(3, (String) args[2]);
+                });
+
+        // у пользователя еще нет строки статистики - создаем
+        List<Object[]> inserts = new ArrayList<>();
+        int i = 0;
+        for (int[] batch : updated) {
+            for (int count : batch) {
+                if (count == 0) {
+                    inserts.add(userArgs.get(i));
+                }
+                i++;
+            }
+        }
+
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into todo.stat (completed_total, uncompleted_total, user_id) values (?, ?, ?)", inserts);
+        }
+
+        List<Object[]> categoryArgs = new ArrayList<>();
+        snapshot.categories().forEach((id, d) -> categoryArgs.add(new Object[]{d[0], d[1], id}));
+
+        if (!categoryArgs.isEmpty()) {
+            // если категория уже удалена - update просто ничего не изменит
+            jdbcTemplate.batchUpdate(
+                    "update todo.category set completed_count = coalesce(completed_count, 0) + ?, uncompleted_count = coalesce(uncompleted_count, 0) + ? where id = ?",
+                    categoryArgs);
+        }
+
+        List<Object[]> journalIds = files.stream().map(file -> new Object[]{StatJournal.idOf(file)}).toList();
+        jdbcTemplate.batchUpdate("insert into todo.stat_flush_log (journal_id) values (?)", journalIds);
+
+        // старые id больше не нужны: журналы удаляются сразу после записи в БД
+        jdbcTemplate.update("delete from todo.stat_flush_log where flushed_at < now() - interval '7 days'");
+    }
+
+    // при остановке приложения записываем все накопленные изменения
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+}
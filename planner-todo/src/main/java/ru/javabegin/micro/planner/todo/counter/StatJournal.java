@@ -0,0 +1,131 @@
+package ru.javabegin.micro.planner.todo.counter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/*
+
+журнал изменений счетчиков на диске - чтобы после падения приложения не потерять изменения, которые еще не записаны в БД
+
+изменения одной транзакции дописываются в конец текущего файла одним вызовом write (каждое изменение - отдельной строкой),
+после записи - fsync (если включен), поэтому изменение уже на диске к моменту commit транзакции
+при записи в БД текущий файл закрывается и начинается новый, а записанный в БД файл удаляется
+
+каталог журнала принадлежит одному экземпляру приложения: пока приложение работает, каталог заблокирован (файл .lock),
+второй экземпляр с тем же каталогом не запустится
+
+формат строки: U|userId|completed|uncompleted или C|categoryId|userId|completed|uncompleted
+
+ */
+
+public class StatJournal {
+
+    private static final String EXTENSION = ".journal";
+
+    private final Path dir;
+    private final boolean fsync;
+
+    private FileChannel lockChannel;
+    private FileLock dirLock;
+
+    private Path currentFile;
+    private FileChannel channel;
+
+    public StatJournal(Path dir, boolean fsync) {
+        this.dir = dir;
+        this.fsync = fsync;
+    }
+
+    // id журнала - это имя файла без расширения (записывается в БД вместе с изменениями из файла)
+    public static String idOf(Path file) {
+        String name = file.getFileName().toString();
+        return name.substring(0, name.length() - EXTENSION.length());
+    }
+
+    // заблокировать каталог журнала (до close) - вызывается до чтения оставшихся файлов
+    public void lock() throws IOException {
+        Files.createDirectories(dir);
+        lockChannel = FileChannel.open(dir.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        dirLock = lockChannel.tryLock();
+        if (dirLock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("stat journal dir " + dir.toAbsolutePath() + " is used by another instance (planner.stat.instance-id)");
+        }
+    }
+
+    // файлы, оставшиеся от предыдущего запуска (например, после падения приложения)
+    public List<Path> existingFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + EXTENSION)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    // прочитать все изменения из файла
+    public static void read(Path file, Consumer<String[]> lineConsumer) throws IOException {
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                lineConsumer.accept(line.split("\\|"));
+            }
+        }
+    }
+
+    // начать новый файл
+    public void open() throws IOException {
+        currentFile = dir.resolve(UUID.randomUUID() + EXTENSION);
+        channel = FileChannel.open(currentFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // закрыть текущий файл и начать новый - возвращает закрытый файл
+    public Path rotate() throws IOException {
+        Path closed = currentFile;
+        channel.close();
+        open();
+        return closed;
+    }
+
+    public static String userLine(String userId, long completed, long uncompleted) {
+        return "U|" + userId + "|" + completed + "|" + uncompleted + "\n";
+    }
+
+    public static String categoryLine(Long categoryId, String userId, long completed, long uncompleted) {
+        return "C|" + categoryId + "|" + userId + "|" + completed + "|" + uncompleted + "\n";
+    }
+
+    // строки пишутся целиком одним вызовом без буфера и (если включено) сразу сбрасываются на диск
+    public void append(String lines) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        if (dirLock != null) {
+            dirLock.release();
+            lockChannel.close();
+        }
+    }
+
+}
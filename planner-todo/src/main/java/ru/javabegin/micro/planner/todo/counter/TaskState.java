@@ -0,0 +1,17 @@
+package ru.javabegin.micro.planner.todo.counter;
+
+import ru.javabegin.micro.planner.entity.Task;
+
+// то, что влияет на статистику: владелец, категория и признак завершения задачи
+// копия значений (а не ссылка на Task), т.к. hibernate изменяет объект при save
+public record TaskState(String userId, Long categoryId, boolean completed) {
+
+    public static TaskState of(Task task) {
+        if (task == null) {
+            return null;
+        }
+        Long categoryId = task.getCategory() != null ? task.getCategory().getId() : null;
+        return new TaskState(task.getUserId(), categoryId, Boolean.TRUE.equals(task.getCompleted()));
+    }
+
+}
@@ -0,0 +1,24 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// заполнение тестовыми данными по шаблону (resources/seed/<template>.json)
+// пользователи - списком userIds или количеством userCount (тогда id создаются как userPrefix + номер)
+public class SeedRequest {
+
+    private String template;
+    private List<String> userIds = new ArrayList<>();
+    private Integer userCount;
+    private String userPrefix = "load-user-";
+
+}
@@ -0,0 +1,23 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.javabegin.micro.planner.entity.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// пакет изменений задач (например, накопленные offline изменения мобильного клиента) - выполняется в одной транзакции
+public class TaskBatchRequest {
+
+    private List<Task> creates = new ArrayList<>(); // новые задачи (id не заполняется)
+    private List<Task> updates = new ArrayList<>(); // измененные задачи (id обязателен)
+    private List<Long> deletes = new ArrayList<>(); // id удаляемых задач
+
+}
@@ -0,0 +1,22 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.javabegin.micro.planner.entity.Task;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// результат пакетного изменения задач
+public class TaskBatchResult {
+
+    private List<Task> created; // добавленные задачи с заполненными id (в том же порядке, что и в запросе)
+    private int updated; // сколько задач обновлено (задачи других пользователей не обновляются)
+    private int deleted; // сколько задач удалено
+
+}
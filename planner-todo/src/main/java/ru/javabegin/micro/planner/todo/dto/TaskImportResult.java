@@ -0,0 +1,31 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// результат импорта задач
+public class TaskImportResult {
+
+    private long imported; // сколько задач добавлено
+    private long failed; // сколько строк пропущено из-за ошибок
+    private int categoriesCreated; // сколько новых категорий создано (по названиям из данных)
+    private int prioritiesCreated; // сколько новых приоритетов создано
+    private List<RowError> errors = new ArrayList<>(); // ошибки по строкам (не больше planner.import.max-errors)
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private long row; // номер строки в данных (с 1, для csv - с учетом заголовка)
+        private String error;
+    }
+
+}
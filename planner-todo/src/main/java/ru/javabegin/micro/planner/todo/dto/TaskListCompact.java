@@ -0,0 +1,51 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+// компактный список задач (/task/all и /task/search с compact=true, в том числе при постраничности по курсору):
+// задачи содержат только id приоритета и категории, а сами приоритеты и категории передаются один раз - в priorities и categories
+public class TaskListCompact {
+
+    private List<TaskSlim> tasks;
+    private List<PriorityRef> priorities; // все приоритеты, которые используются в tasks (без повторов)
+    private List<CategoryRef> categories; // все категории, которые используются в tasks (без повторов)
+
+    // только для постраничного поиска (для /task/all - null)
+    private Long totalElements;
+    private Integer totalPages;
+    private Integer pageNumber;
+    private Integer pageSize;
+
+    // только для постраничности по курсору (keyset=true или pageToken) - как в TaskSlice
+    private Boolean hasNext;
+    private String nextPageToken;
+
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class PriorityRef {
+        private Long id;
+        private String title;
+        private String color;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CategoryRef {
+        private Long id;
+        private String title;
+    }
+
+}
@@ -0,0 +1,23 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.javabegin.micro.planner.entity.Task;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// страница задач при постраничности по курсору - без подсчета общего количества (в отличие от Page)
+public class TaskSlice {
+
+    private List<Task> content; // задачи текущей страницы
+    private boolean hasNext; // есть ли следующая страница
+    private String nextPageToken; // передать в pageToken для получения следующей страницы (null - если страниц больше нет)
+    private Long totalElements; // общее количество задач - заполняется только по запросу (withTotal), иначе null
+
+}
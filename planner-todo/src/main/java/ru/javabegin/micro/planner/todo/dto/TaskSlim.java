@@ -0,0 +1,28 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Date;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+// задача без вложенных объектов: вместо приоритета и категории - только их id
+// читается из БД одним запросом без join (см. TaskRepository.findSlimByUserId, findSlimByParams),
+// сами приоритеты и категории при необходимости берутся из кеша 2 уровня (TaskReferences)
+@JsonSerialize(using = TaskSlimSerializer.class)
+public class TaskSlim {
+
+    private Long id;
+    private String title;
+    private Boolean completed;
+    private Date taskDate;
+    private Long priorityId;
+    private Long categoryId;
+
+}
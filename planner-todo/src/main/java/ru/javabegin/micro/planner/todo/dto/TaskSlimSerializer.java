@@ -0,0 +1,63 @@
+package ru.javabegin.micro.planner.todo.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+// сериализация TaskSlim без reflection: поля записываются напрямую, имена полей подготовлены заранее (SerializedString),
+// пустые значения не записываются - в компактном списке таких объектов сотни
+public class TaskSlimSerializer extends StdSerializer<TaskSlim> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString TITLE = new SerializedString("title");
+    private static final SerializedString COMPLETED = new SerializedString("completed");
+    private static final SerializedString TASK_DATE = new SerializedString("taskDate");
+    private static final SerializedString PRIORITY_ID = new SerializedString("priorityId");
+    private static final SerializedString CATEGORY_ID = new SerializedString("categoryId");
+
+    public TaskSlimSerializer() {
+        super(TaskSlim.class);
+    }
+
+    @Override
+    public void serialize(TaskSlim task, JsonGenerator gen, SerializerProvider provider) throws IOException {
+
+        gen.writeStartObject(task);
+
+        if (task.getId() != null) {
+            gen.writeFieldName(ID);
+            gen.writeNumber(task.getId());
+        }
+
+        if (task.getTitle() != null) {
+            gen.writeFieldName(TITLE);
+            gen.writeString(task.getTitle());
+        }
+
+        if (task.getCompleted() != null) {
+            gen.writeFieldName(COMPLETED);
+            gen.writeBoolean(task.getCompleted());
+        }
+
+        if (task.getTaskDate() != null) {
+            gen.writeFieldName(TASK_DATE);
+            provider.defaultSerializeDateValue(task.getTaskDate(), gen); // формат даты - как у остальных ответов
+        }
+
+        if (task.getPriorityId() != null) {
+            gen.writeFieldName(PRIORITY_ID);
+            gen.writeNumber(task.getPriorityId());
+        }
+
+        if (task.getCategoryId() != null) {
+            gen.writeFieldName(CATEGORY_ID);
+            gen.writeNumber(task.getCategoryId());
+        }
+
+        gen.writeEndObject();
+    }
+
+}
@@ -1,56 +1,100 @@
 package ru.javabegin.micro.planner.todo.feign;
 
-import com.google.common.io.CharStreams;
 import feign.Response;
 import feign.codec.ErrorDecoder;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
-import org.springframework.web.server.ResponseStatusException;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.charset.Charset;
+import java.io.InputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.Set;
+
+/*
+
+ошибки вызовов через Feign
+
+- из тела ответа читается не больше planner.feign.error.max-body-size байт (в кодировке из Content-Type) -
+  при массовых ошибках большие html страницы (например, от gateway) не загружаются в память целиком
+- 429, 502, 503, 504 - временные ошибки: RetryableRemoteServiceException, безопасный вызов повторяется (Retryer, см. FeignRetryConfig)
+- остальные 4xx/5xx - RemoteServiceException с тем же статусом (без повтора)
+
+ */
 
 @Component
 public class FeignExceptionHandler implements ErrorDecoder {
 
+    private static final Set<Integer> RETRYABLE = Set.of(429, 502, 503, 504);
+
+    @Value("${planner.feign.error.max-body-size:4KB}")
+    private DataSize maxBodySize;
+
     // вызывается каждый раз при ошибке вызова через Feign
     @Override
     public Exception decode(String methodKey, Response response) {
 
-        switch (response.status()) {
-            case 406: {
-                return new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, readMessage(response));
-            }
+        String message = readMessage(response);
+
+        if (message == null || message.isBlank()) {
+            message = response.status() + (response.reason() != null ? " " + response.reason() : "") + " from " + methodKey;
+        }
+
+        if (RETRYABLE.contains(response.status())) {
+            return new RetryableRemoteServiceException(methodKey, response.status(), message, retryAfter(response), response.request());
         }
 
-        return null;
+        return new RemoteServiceException(methodKey, response.status(), message);
     }
 
-    // получить текст ошибки в формате String из потока
+    // получить текст ошибки (не больше maxBodySize байт, остальное не читается)
     private String readMessage(Response response) {
 
-        String message = null;
-        Reader reader = null;
+        if (response.body() == null) {
+            return null;
+        }
 
-        try {
+        int limit = (int) maxBodySize.toBytes();
+
+        try (InputStream in = response.body().asInputStream()) {
 
-            reader = response.body().asReader(Charset.defaultCharset());
-            message = CharStreams.toString(reader);
+            byte[] bytes = in.readNBytes(limit + 1); // +1 - чтобы понять, что текст обрезан
+
+            if (bytes.length > limit) {
+                return new String(bytes, 0, limit, response.charset()) + "...";
+            }
+
+            return new String(bytes, response.charset());
 
         } catch (IOException e) {
             e.printStackTrace();
-        } finally {
-            try {
-                if (reader != null)
-                    reader.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            return null;
         }
+    }
+
+    // Retry-After: количество секунд или дата - возвращается время в мс (null - заголовка нет)
+    private static Long retryAfter(Response response) {
+
+        Collection<String> values = response.headers().get(HttpHeaders.RETRY_AFTER);
 
-        return message;
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+
+        String value = values.iterator().next().trim();
+
+        try {
+            if (value.matches("\\d+")) {
+                return System.currentTimeMillis() + Long.parseLong(value) * 1000;
+            }
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return null;
+        }
     }
 
-}
\ No newline at end of file
+}
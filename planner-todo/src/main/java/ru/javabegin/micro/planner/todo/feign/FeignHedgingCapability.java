@@ -0,0 +1,39 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import feign.Capability;
+import feign.Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// подключает HedgingFeignClient ко всем Feign клиентам (Spring Cloud OpenFeign применяет все бины Capability)
+@Component
+@EnableConfigurationProperties(FeignHedgingProperties.class)
+public class FeignHedgingCapability implements Capability {
+
+    // попытки только ждут ответа - виртуальные потоки (их количество ограничивает bulkhead метода)
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final FeignHedgingProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public FeignHedgingCapability(FeignHedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Client enrich(Client client) {
+        return new HedgingFeignClient(client, properties, executor, meterRegistry);
+    }
+
+}
@@ -0,0 +1,30 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// настройки повторных (hedged) запросов Feign (planner.feign.hedging.*)
+@ConfigurationProperties("planner.feign.hedging")
+@Getter
+@Setter
+public class FeignHedgingProperties {
+
+    // методы, для которых отправляется повторный запрос - ключ: id метода, как у circuit breaker (например, UserFeignClientfindUserByIdLong)
+    // указывать только методы, которые не изменяют данные (запрос может выполниться дважды)
+    private Map<String, Method> methods = new HashMap<>();
+
+    @Getter
+    @Setter
+    public static class Method {
+
+        private double percentile = 0.95; // повторный запрос - если ответа нет дольше, чем этот процентиль задержки метода
+        private Duration minDelay = Duration.ofMillis(20); // но не раньше, чем через minDelay
+        private long minSamples = 100; // пока замеров меньше - задержка неизвестна и повторный запрос не отправляется
+    }
+
+}
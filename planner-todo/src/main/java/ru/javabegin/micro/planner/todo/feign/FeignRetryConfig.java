@@ -0,0 +1,41 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import feign.Retryer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Set;
+
+/*
+
+повтор вызовов Feign при временных ошибках (RetryableRemoteServiceException из FeignExceptionHandler и ошибки соединения)
+
+повторяются только GET, HEAD, OPTIONS, PUT, DELETE и методы из planner.feign.retry.safe-methods (см. SafeMethodRetryer)
+пауза между попытками растет от period до maxPeriod (в 1.5 раза), если сервис вернул Retry-After - ждем столько, но не больше maxPeriod
+все попытки выполняются внутри time limiter метода (resilience4j.timelimiter) - паузы должны быть намного меньше его времени
+
+ */
+
+@Configuration
+public class FeignRetryConfig {
+
+    @Value("${planner.feign.retry.period:100ms}")
+    private Duration period;
+
+    @Value("${planner.feign.retry.max-period:500ms}")
+    private Duration maxPeriod;
+
+    @Value("${planner.feign.retry.max-attempts:3}")
+    private int maxAttempts; // вместе с первой попыткой
+
+    @Value("${planner.feign.retry.safe-methods:}")
+    private Set<String> safeMethods; // POST методы, которые только читают данные (id метода, как у circuit breaker)
+
+    @Bean
+    public Retryer feignRetryer() {
+        return new SafeMethodRetryer(new Retryer.Default(period.toMillis(), maxPeriod.toMillis(), maxAttempts), safeMethods);
+    }
+
+}
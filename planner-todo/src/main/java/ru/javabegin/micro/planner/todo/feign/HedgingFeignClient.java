@@ -0,0 +1,226 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+
+повторный (hedged) запрос: если ответа нет дольше, чем обычно (процентиль задержки метода, например p95),
+отправляется второй такой же запрос - используется тот ответ, который придет первым, второй закрывается
+
+LoadBalancer выбирает экземпляр для каждой попытки отдельно (с учетом запросов в работе) - второй запрос обычно уходит на другой экземпляр,
+поэтому один медленный экземпляр не задерживает ответ
+
+повторно отправляются только методы из planner.feign.hedging.methods, остальные - как обычно, в текущем потоке
+(методы из списка - тоже в текущем потоке, пока замеров задержки меньше minSamples)
+
+ */
+
+public class HedgingFeignClient implements Client {
+
+    private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1); // как часто пересчитывать задержку по замерам
+
+    private final Client delegate;
+    private final FeignHedgingProperties properties;
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, MethodLatency> latencies = new ConcurrentHashMap<>();
+
+    public HedgingFeignClient(Client delegate, FeignHedgingProperties properties, ExecutorService executor, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.properties = properties;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+
+        String method = methodId(request);
+        FeignHedgingProperties.Method policy = method != null ? properties.getMethods().get(method) : null;
+
+        if (policy == null) {
+            return delegate.execute(request, options);
+        }
+
+        MethodLatency latency = latencies.computeIfAbsent(method, key -> new MethodLatency(key, policy));
+
+        long delay = latency.hedgeDelay();
+
+        if (delay < 0) { // замеров еще мало - без повторного запроса, как обычно в текущем потоке (только замер задержки)
+            long start = System.nanoTime();
+            Response response = delegate.execute(request, options);
+            latency.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return response;
+        }
+
+        CompletableFuture<Response> primary = attempt(request, options, latency);
+
+        CompletableFuture<Response> waiting = primary; // какой ответ ждет текущий поток
+
+        try {
+            try {
+                return primary.get(delay, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                latency.hedged.increment();
+            }
+
+            CompletableFuture<Response> hedge = attempt(request, options, latency);
+            waiting = firstResponse(primary, hedge);
+
+            Response response = waiting.get();
+
+            if (hedge.isDone() && !hedge.isCompletedExceptionally() && hedge.join() == response) {
+                latency.hedgeWon.increment();
+            }
+
+            return response;
+
+        } catch (InterruptedException e) {
+            // вызов отменен (например, TimeLimiter) - ответы, которые еще придут, закрываются
+            Thread.currentThread().interrupt();
+            if (waiting != primary) {
+                waiting.cancel(false); // ответы обеих попыток закроет firstResponse
+            }
+            waiting.thenAccept(HedgingFeignClient::close);
+            throw new InterruptedIOException("hedged request interrupted: " + method);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private CompletableFuture<Response> attempt(Request request, Request.Options options, MethodLatency latency) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                Response response = delegate.execute(request, options);
+                latency.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return response;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    // первый полученный ответ (ошибка - только если не удались обе попытки), ответ, пришедший вторым, закрывается
+    private static CompletableFuture<Response> firstResponse(CompletableFuture<Response> primary, CompletableFuture<Response> hedge) {
+
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+
+        for (CompletableFuture<Response> attempt : List.of(primary, hedge)) {
+            attempt.whenComplete((response, e) -> {
+                if (e == null) {
+                    if (!result.complete(response)) {
+                        close(response);
+                    }
+                } else if (failed.incrementAndGet() == 2) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+
+        return result;
+    }
+
+    private static void close(Response response) {
+        if (response != null) {
+            response.close();
+        }
+    }
+
+    private static IOException unwrap(Throwable e) {
+
+        while (e instanceof CompletionException && e.getCause() != null) {
+            e = e.getCause();
+        }
+
+        if (e instanceof IOException io) {
+            return io;
+        }
+
+        if (e instanceof RuntimeException runtime) {
+            throw runtime;
+        }
+
+        return new IOException(e);
+    }
+
+    // id метода в том же виде, что и у circuit breaker (только буквы и цифры), null - метод неизвестен (также для SafeMethodRetryer)
+    static String methodId(Request request) {
+
+        if (request.requestTemplate() == null || request.requestTemplate().methodMetadata() == null) {
+            return null;
+        }
+
+        return request.requestTemplate().methodMetadata().configKey().replaceAll("[^a-zA-Z0-9]", "");
+    }
+
+    // замеры задержки метода (также публикуются как метрика planner.feign.latency)
+    private class MethodLatency {
+
+        private final FeignHedgingProperties.Method policy;
+        private final Timer timer;
+        private final Counter hedged;
+        private final Counter hedgeWon;
+
+        private volatile long delay = -1;
+        private volatile long delayUpdatedAt;
+
+        MethodLatency(String method, FeignHedgingProperties.Method policy) {
+            this.policy = policy;
+            this.delayUpdatedAt = System.nanoTime() - DELAY_REFRESH_NANOS; // первый вызов сразу пересчитывает задержку
+            this.timer = Timer.builder("planner.feign.latency")
+                    .tag("method", method)
+                    .publishPercentiles(policy.getPercentile())
+                    .distributionStatisticExpiry(Duration.ofMinutes(1))
+                    .register(meterRegistry);
+            this.hedged = Counter.builder("planner.feign.hedged").tag("method", method).tag("result", "sent").register(meterRegistry);
+            this.hedgeWon = Counter.builder("planner.feign.hedged").tag("method", method).tag("result", "won").register(meterRegistry);
+        }
+
+        // через сколько отправить повторный запрос (нс), -1 - не отправлять
+        long hedgeDelay() {
+
+            long now = System.nanoTime();
+
+            if (now - delayUpdatedAt < DELAY_REFRESH_NANOS) {
+                return delay;
+            }
+
+            long value = -1;
+
+            if (timer.count() >= policy.getMinSamples()) {
+                for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                    value = Math.max((long) percentile.value(TimeUnit.NANOSECONDS), policy.getMinDelay().toNanos());
+                }
+            }
+
+            delay = value;
+            delayUpdatedAt = now;
+
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.server.ResponseStatusException;
+
+// ошибка вызова другого микросервиса, которую нет смысла повторять (4xx, 500 и т.д.)
+// статус сохраняется - если исключение не обработано, клиент получит тот же статус и текст ошибки
+@Getter
+public class RemoteServiceException extends ResponseStatusException {
+
+    private final String methodKey; // какой метод Feign вызывался
+
+    public RemoteServiceException(String methodKey, int status, String message) {
+        super(HttpStatusCode.valueOf(status), message);
+        this.methodKey = methodKey;
+    }
+
+    public boolean isClientError() {
+        return getStatusCode().is4xxClientError();
+    }
+
+}
@@ -0,0 +1,19 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import feign.Request;
+import feign.RetryableException;
+import lombok.Getter;
+
+// временная ошибка вызова другого микросервиса (429, 502, 503, 504) - Feign повторит вызов (см. FeignRetryConfig)
+// retryAfter - время (мс с 1970 года), раньше которого не нужно повторять (из заголовка Retry-After), null - по умолчанию
+@Getter
+public class RetryableRemoteServiceException extends RetryableException {
+
+    private final String methodKey;
+
+    public RetryableRemoteServiceException(String methodKey, int status, String message, Long retryAfter, Request request) {
+        super(status, message, request.httpMethod(), retryAfter, request);
+        this.methodKey = methodKey;
+    }
+
+}
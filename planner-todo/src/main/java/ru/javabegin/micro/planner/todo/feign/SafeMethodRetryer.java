@@ -0,0 +1,62 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import feign.Request;
+import feign.RetryableException;
+import feign.Retryer;
+
+import java.util.Set;
+
+/*
+
+повторяет только те вызовы, которые можно безопасно выполнить еще раз (паузы между попытками - как у delegate)
+
+- GET, HEAD, OPTIONS, PUT, DELETE - по HTTP методу
+- POST и PATCH - только методы из safeMethods (id метода, как у circuit breaker), которые не изменяют данные,
+  например UserFeignClientfindUserByIdLong
+
+остальные вызовы (например, POST /data/init) не повторяются - ошибка сразу передается дальше:
+запрос мог выполниться, а ответ потеряться, и повтор создаст данные второй раз
+
+ */
+
+public class SafeMethodRetryer implements Retryer {
+
+    private static final Set<Request.HttpMethod> IDEMPOTENT = Set.of(
+            Request.HttpMethod.GET, Request.HttpMethod.HEAD, Request.HttpMethod.OPTIONS, Request.HttpMethod.PUT, Request.HttpMethod.DELETE);
+
+    private final Retryer delegate;
+    private final Set<String> safeMethods;
+
+    public SafeMethodRetryer(Retryer delegate, Set<String> safeMethods) {
+        this.delegate = delegate;
+        this.safeMethods = safeMethods;
+    }
+
+    @Override
+    public void continueOrPropagate(RetryableException e) {
+
+        if (!canRetry(e)) {
+            throw e;
+        }
+
+        delegate.continueOrPropagate(e);
+    }
+
+    private boolean canRetry(RetryableException e) {
+
+        if (e.method() != null && IDEMPOTENT.contains(e.method())) {
+            return true;
+        }
+
+        String method = e.request() != null ? HedgingFeignClient.methodId(e.request()) : null;
+
+        return method != null && safeMethods.contains(method);
+    }
+
+    // Feign создает копию для каждого вызова (у Retryer.Default - счетчик попыток)
+    @Override
+    public Retryer clone() {
+        return new SafeMethodRetryer(delegate.clone(), safeMethods);
+    }
+
+}
@@ -18,6 +18,7 @@ public interface UserFeignClient {
 class UserFeignClientFallback implements UserFeignClient {
 
     // этот метод будет вызываться, если сервис /user/id не будет доступен
+    // (ошибка, превышено время ожидания, circuit breaker открыт или bulkhead заполнен - см. resilience4j.* в настройках)
     @Override
     public ResponseEntity<User> findUserById(Long id) {
         return null;
@@ -0,0 +1,165 @@
+package ru.javabegin.micro.planner.todo.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+
+CSV с заголовком (порядок столбцов любой, лишние столбцы игнорируются - например, id из /task/export):
+title,completed,taskDate,priority,category
+
+значения с запятыми, кавычками и переводами строк - в двойных кавычках (кавычки внутри удваиваются)
+
+ */
+
+public class CsvRowReader implements TaskRowReader {
+
+    private static final int MAX_ROW_LENGTH = 64 * 1024; // слишком длинная строка считается ошибкой (чтобы не занять всю память)
+
+    private final BufferedReader reader; // читается по одному символу
+
+    private Map<String, Integer> columns; // номер столбца по названию (из заголовка)
+
+    private long rowNumber;
+    private boolean eof;
+
+    public CsvRowReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+
+        if (columns == null) {
+            readHeader();
+        }
+
+        List<String> values;
+
+        do { // пустые строки пропускаются
+            values = readRecord();
+            if (values == null) {
+                return null;
+            }
+        } while (values.size() == 1 && values.get(0).isBlank());
+
+        return new ImportRow(rowNumber,
+                ImportRow.trimToNull(value(values, "title")),
+                ImportRow.parseCompleted(value(values, "completed")),
+                ImportRow.parseDate(value(values, "taskDate")),
+                ImportRow.trimToNull(value(values, "priority")),
+                ImportRow.trimToNull(value(values, "category")));
+    }
+
+    @Override
+    public long rowNumber() {
+        return rowNumber;
+    }
+
+    private void readHeader() throws IOException {
+
+        List<String> header = readRecord();
+
+        columns = new HashMap<>();
+
+        if (header == null) {
+            return;
+        }
+
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim(), i);
+        }
+
+        if (!columns.containsKey("title")) {
+            throw new IllegalArgumentException("csv header must contain column: title");
+        }
+    }
+
+    private String value(List<String> values, String column) {
+        Integer index = columns.get(column);
+        return index != null && index < values.size() ? values.get(index) : null;
+    }
+
+    // одна запись csv (null - данные закончились)
+    private List<String> readRecord() throws IOException {
+
+        if (eof) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+
+        boolean quoted = false;
+        int length = 0;
+        int c;
+
+        rowNumber++;
+
+        while (true) {
+
+            c = reader.read();
+
+            if (c == -1) {
+                eof = true;
+                if (values.isEmpty() && value.isEmpty()) {
+                    return null;
+                }
+                break;
+            }
+
+            if (++length > MAX_ROW_LENGTH) {
+                skipLine(quoted);
+                throw new ImportRowException("row is too long: max " + MAX_ROW_LENGTH + " characters");
+            }
+
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') { // удвоенная кавычка внутри значения
+                        value.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    value.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+        }
+
+        values.add(value.toString());
+
+        return values;
+    }
+
+    // пропустить остаток слишком длинной записи (до перевода строки вне кавычек)
+    private void skipLine(boolean quoted) throws IOException {
+
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n' && !quoted) {
+                return;
+            }
+        }
+
+        eof = true;
+    }
+
+}
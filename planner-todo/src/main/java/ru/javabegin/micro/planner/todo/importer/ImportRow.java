@@ -0,0 +1,52 @@
+package ru.javabegin.micro.planner.todo.importer;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+// одна задача из импортируемых данных: категория и приоритет указываются по названию (создаются, если у пользователя их еще нет)
+public record ImportRow(long number, String title, boolean completed, Timestamp taskDate, String priority, String category) {
+
+    // completed: 1/0, true/false (пустое значение - false)
+    static boolean parseCompleted(String value) {
+
+        if (value == null || value.isBlank()) {
+            return false;
+        }
+
+        return switch (value.trim().toLowerCase()) {
+            case "1", "true" -> true;
+            case "0", "false" -> false;
+            default -> throw new ImportRowException("wrong completed: " + value);
+        };
+    }
+
+    // дата: 2024-01-31T10:00:00Z, 2024-01-31 или число миллисекунд (так дата выгружается в JSON)
+    static Timestamp parseDate(String value) {
+
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+
+        String date = value.trim();
+
+        try {
+            if (date.chars().allMatch(Character::isDigit)) {
+                return new Timestamp(Long.parseLong(date));
+            }
+            if (date.length() == 10) {
+                return Timestamp.from(LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant());
+            }
+            return Timestamp.from(Instant.parse(date));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ImportRowException("wrong taskDate: " + value);
+        }
+    }
+
+    static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+}
@@ -0,0 +1,10 @@
+package ru.javabegin.micro.planner.todo.importer;
+
+// ошибка в одной строке импортируемых данных - строка пропускается, импорт продолжается
+public class ImportRowException extends RuntimeException {
+
+    public ImportRowException(String message) {
+        super(message);
+    }
+
+}
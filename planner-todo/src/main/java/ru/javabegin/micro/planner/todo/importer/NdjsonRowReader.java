@@ -0,0 +1,118 @@
+package ru.javabegin.micro.planner.todo.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/*
+
+NDJSON - по одному JSON объекту задачи в строке:
+{"title": "...", "completed": true, "taskDate": "2024-01-31", "priority": "Важный", "category": "Работа"}
+
+priority и category - название или объект с полем title (так задачи выгружаются через /task/export)
+
+ */
+
+public class NdjsonRowReader implements TaskRowReader {
+
+    private static final int MAX_ROW_LENGTH = 64 * 1024; // слишком длинная строка считается ошибкой (чтобы не занять всю память)
+
+    private final BufferedReader reader;
+    private final ObjectMapper objectMapper;
+
+    private long rowNumber;
+
+    public NdjsonRowReader(BufferedReader reader, ObjectMapper objectMapper) {
+        this.reader = reader;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+
+        String line;
+
+        do { // пустые строки пропускаются
+            line = readLine();
+            if (line == null) {
+                return null;
+            }
+        } while (line.isBlank());
+
+        JsonNode node;
+
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException e) {
+            throw new ImportRowException("wrong json: " + e.getOriginalMessage());
+        }
+
+        if (!node.isObject()) {
+            throw new ImportRowException("wrong json: object expected");
+        }
+
+        return new ImportRow(rowNumber,
+                ImportRow.trimToNull(text(node.get("title"))),
+                ImportRow.parseCompleted(text(node.get("completed"))),
+                ImportRow.parseDate(text(node.get("taskDate"))),
+                ImportRow.trimToNull(title(node.get("priority"))),
+                ImportRow.trimToNull(title(node.get("category"))));
+    }
+
+    @Override
+    public long rowNumber() {
+        return rowNumber;
+    }
+
+    // следующая строка без перевода строки (null - конец данных), длина строки - не больше MAX_ROW_LENGTH символов
+    private String readLine() throws IOException {
+
+        StringBuilder line = new StringBuilder();
+        int c;
+
+        while ((c = reader.read()) != -1 && c != '\n') {
+
+            if (line.length() == MAX_ROW_LENGTH) {
+                rowNumber++;
+                skipLine();
+                throw new ImportRowException("row is too long: max " + MAX_ROW_LENGTH + " characters");
+            }
+
+            line.append((char) c);
+        }
+
+        if (c == -1 && line.isEmpty()) {
+            return null;
+        }
+
+        rowNumber++;
+
+        if (!line.isEmpty() && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+
+        return line.toString();
+    }
+
+    // пропустить остаток слишком длинной строки
+    private void skipLine() throws IOException {
+
+        int c;
+
+        do {
+            c = reader.read();
+        } while (c != -1 && c != '\n');
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.asText();
+    }
+
+    private static String title(JsonNode node) {
+        return node != null && node.isObject() ? text(node.get("title")) : text(node);
+    }
+
+}
@@ -0,0 +1,15 @@
+package ru.javabegin.micro.planner.todo.importer;
+
+import java.io.IOException;
+
+// последовательное чтение задач из потока (в памяти - только текущая строка)
+public interface TaskRowReader {
+
+    // следующая задача (null - данные закончились)
+    // ошибка в строке - ImportRowException (следующий вызов читает уже следующую строку)
+    ImportRow next() throws IOException;
+
+    // номер последней прочитанной строки (с 1)
+    long rowNumber();
+
+}
@@ -3,9 +3,15 @@ package ru.javabegin.micro.planner.todo.mq.func;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import ru.javabegin.micro.planner.todo.cache.CacheInvalidationBus;
+import ru.javabegin.micro.planner.todo.cache.CacheInvalidationEvent;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
 import ru.javabegin.micro.planner.todo.service.TestDataService;
 
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 
 @Configuration // spring считывает бины и создает соотв. каналы
@@ -16,8 +22,14 @@ public class MessageFunc {
     // для заполнения тестовых данных
     private TestDataService testDataService;
 
-    public MessageFunc(TestDataService testDataService) {
+    // для сброса кеша на всех экземплярах приложения
+    private CacheInvalidationBus cacheInvalidationBus;
+    private UserCacheVersions userCacheVersions;
+
+    public MessageFunc(TestDataService testDataService, CacheInvalidationBus cacheInvalidationBus, UserCacheVersions userCacheVersions) {
         this.testDataService = testDataService;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.userCacheVersions = userCacheVersions;
     }
 
     // получает id пользователя и запускает создание тестовых данных
@@ -27,6 +39,27 @@ public class MessageFunc {
         return message -> testDataService.initTestData(message.getPayload());
     }
 
+    // то же самое, но сообщения получаются пачками (batch-mode) - данные для всей пачки пользователей создаются в одной транзакции
+    // (при ошибке - по одному пользователю, см. TestDataService.initTestDataBatch)
+    // включается вместо newUserActionConsume в spring.cloud.function.definition, использует его binding (newUserActionConsume-in-0)
+    @Bean
+    public Consumer<Message<List<String>>> newUserActionBatchConsume() {
+        return message -> testDataService.initTestDataBatch(message.getPayload());
+    }
+
+    // отправляет в канал пачки изменений данных, чтобы остальные экземпляры planner-todo сбросили свой кеш
+    @Bean
+    public Supplier<Flux<Message<CacheInvalidationEvent>>> cacheInvalidationProduce() {
+        return () -> cacheInvalidationBus.batches();
+    }
+
+    // получает изменения от всех экземпляров (свои сообщения пропускаются) и сбрасывает локальный кеш
+    // у каждого экземпляра должна быть своя (анонимная) очередь - поэтому для этого канала не указывается group
+    @Bean
+    public Consumer<Message<CacheInvalidationEvent>> cacheInvalidationConsume() {
+        return message -> userCacheVersions.applyRemote(message.getPayload());
+    }
+
 
 }
 
@@ -24,4 +24,15 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
             " and c.userId=:id " + // фильтрация для конкретного пользователя
             " order by c.title asc") // сортировка по названию
     List<Category> findByTitle(@Param("title") String title, @Param("id") String userId);
+
+    // поиск по названию с ранжированием (нативный запрос, pg_trgm) - так же, как TaskRepository.findByTitleRanked
+    @Query(value = "SELECT c.* FROM todo.category c where " +
+            "c.user_id=:userId and " + // фильтрация для конкретного пользователя
+            "(lower(c.title) like concat(lower(:pattern), '%') escape '\\' " + // совпадение с начала названия
+            " or lower(c.title) like concat('%', lower(:pattern), '%') escape '\\' " + // вхождение текста
+            " or lower(c.title) % lower(:title)) " + // похожее название (опечатки)
+            "order by (lower(c.title) like concat(lower(:pattern), '%') escape '\\') desc, " +
+            " similarity(lower(c.title), lower(:title)) desc, c.id asc " +
+            "limit :limit", nativeQuery = true)
+    List<Category> findByTitleRanked(@Param("title") String title, @Param("pattern") String pattern, @Param("userId") String userId, @Param("limit") int limit);
 }
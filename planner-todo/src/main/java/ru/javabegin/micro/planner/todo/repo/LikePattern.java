@@ -0,0 +1,25 @@
+package ru.javabegin.micro.planner.todo.repo;
+
+// текст пользователя для условия like: символы % и _ в тексте ищутся как обычные символы, а не как шаблон
+// экранирование обратной косой чертой - в запросе должно быть указано escape '\'
+public final class LikePattern {
+
+    private LikePattern() {
+    }
+
+    public static String escape(String text) {
+
+        StringBuilder pattern = new StringBuilder(text.length() + 8);
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+
+        return pattern.toString();
+    }
+
+}
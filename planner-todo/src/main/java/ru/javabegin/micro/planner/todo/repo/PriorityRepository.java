@@ -24,4 +24,15 @@ public interface PriorityRepository extends JpaRepository<Priority, Long> {
             "order by p.title asc") // сортировка по названию
     List<Priority> findByTitle(@Param("title") String title, @Param("userId") String userId);
 
+    // поиск по названию с ранжированием (нативный запрос, pg_trgm) - так же, как TaskRepository.findByTitleRanked
+    @Query(value = "SELECT p.* FROM todo.priority p where " +
+            "p.user_id=:userId and " + // фильтрация для конкретного пользователя
+            "(lower(p.title) like concat(lower(:pattern), '%') escape '\\' " + // совпадение с начала названия
+            " or lower(p.title) like concat('%', lower(:pattern), '%') escape '\\' " + // вхождение текста
+            " or lower(p.title) % lower(:title)) " + // похожее название (опечатки)
+            "order by (lower(p.title) like concat(lower(:pattern), '%') escape '\\') desc, " +
+            " similarity(lower(p.title), lower(:title)) desc, p.id asc " +
+            "limit :limit", nativeQuery = true)
+    List<Priority> findByTitleRanked(@Param("title") String title, @Param("pattern") String pattern, @Param("userId") String userId, @Param("limit") int limit);
+
 }
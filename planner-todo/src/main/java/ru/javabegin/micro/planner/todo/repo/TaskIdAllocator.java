@@ -0,0 +1,43 @@
+package ru.javabegin.micro.planner.todo.repo;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// id для задач, которые добавляются через JDBC (а не через hibernate) - из той же последовательности, что использует hibernate:
+// каждое значение последовательности V резервирует блок V-49..V (allocationSize у Task), поэтому id не пересекаются
+@Component
+public class TaskIdAllocator {
+
+    private static final int TASK_ID_ALLOCATION = 50; // шаг todo.task_id_seq (см. db/task_batch.sql)
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TaskIdAllocator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<Long> allocate(int count) {
+
+        List<Long> ids = new ArrayList<>(count);
+
+        while (ids.size() < count) { // в начале последовательности блок может быть неполным (id меньше 1 не используются)
+
+            int blocks = (count - ids.size() + TASK_ID_ALLOCATION - 1) / TASK_ID_ALLOCATION;
+
+            List<Long> hiValues = jdbcTemplate.queryForList(
+                    "select nextval('todo.task_id_seq') from generate_series(1, ?)", Long.class, blocks);
+
+            for (Long hi : hiValues) {
+                for (long id = Math.max(1, hi - TASK_ID_ALLOCATION + 1); id <= hi && ids.size() < count; id++) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        return ids;
+    }
+
+}
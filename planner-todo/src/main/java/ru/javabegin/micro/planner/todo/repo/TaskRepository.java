@@ -1,19 +1,31 @@
 package ru.javabegin.micro.planner.todo.repo;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.dto.TaskSlim;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 // принцип ООП: абстракция-реализация - здесь описываем все доступные способы доступа к данным
+// JpaSpecificationExecutor - для динамических запросов (TaskSpecification), например постраничности по курсору
 @Repository
-public interface TaskRepository extends JpaRepository<Task, Long> {
+public interface TaskRepository extends JpaRepository<Task, Long>, JpaSpecificationExecutor<Task> {
 
     @Query("SELECT t FROM Task t where " +
             "(:title is null or :title='' or lower(t.title) like lower(concat('%', :title,'%'))) and" +
@@ -42,5 +54,75 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     // поиск всех задач конкретного пользователя
     List<Task> findByUserIdOrderByTitleAsc(String userId);
 
+    /* Облегченные варианты списков (TaskSlim): вместо вложенных Priority и Category - только их id.
+        Запрос читает только столбцы task (id связей берутся из внешних ключей без join),
+        поэтому не выполняются дополнительные запросы для загрузки приоритетов и категорий каждой задачи.
+     */
+    String TASK_SLIM = "select new ru.javabegin.micro.planner.todo.dto.TaskSlim(t.id, t.title, t.completed, t.taskDate, t.priority.id, t.category.id) ";
+
+    @Query(TASK_SLIM + "from Task t where t.userId=:userId order by t.title asc, t.id asc")
+    List<TaskSlim> findSlimByUserId(@Param("userId") String userId);
+
+    String TASK_PARAMS = "from Task t where " +
+            "(:title is null or :title='' or lower(t.title) like lower(concat('%', :title,'%'))) and " +
+            "(:completed is null or t.completed=:completed) and " +
+            "(:priorityId is null or t.priority.id=:priorityId) and " +
+            "(:categoryId is null or t.category.id=:categoryId) and " +
+            "(" +
+            "(cast(:dateFrom as timestamp) is null or t.taskDate>=:dateFrom) and " +
+            "(cast(:dateTo as timestamp) is null or t.taskDate<=:dateTo)" +
+            ") and " +
+            "(t.userId=:userId)";
+
+    // то же, что findByParams, но результат - TaskSlim
+    @Query(value = TASK_SLIM + TASK_PARAMS, countQuery = "select count(t) " + TASK_PARAMS)
+    Page<TaskSlim> findSlimByParams(@Param("title") String title,
+                                    @Param("completed") Boolean completed,
+                                    @Param("priorityId") Long priorityId,
+                                    @Param("categoryId") Long categoryId,
+                                    @Param("userId") String userId,
+                                    @Param("dateFrom") Date dateFrom,
+                                    @Param("dateTo") Date dateTo,
+                                    Pageable pageable
+    );
+
+    int EXPORT_FETCH_SIZE = 500; // сколько строк драйвер получает из БД за один раз при выгрузке
+
+    /* Все задачи пользователя для выгрузки - читаются курсором частями по EXPORT_FETCH_SIZE, а не загружаются списком.
+        Приоритет и категория загружаются в том же запросе, задачи не попадают в кеш 2-го уровня (cacheMode IGNORE).
+        Stream нужно читать внутри транзакции и закрыть после использования.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("select t from Task t left join fetch t.priority left join fetch t.category " +
+            "where t.userId=:userId order by t.title asc, t.id asc")
+    Stream<Task> streamByUserId(@Param("userId") String userId);
+
+    /* Поиск по названию с ранжированием: сначала совпадения с начала названия, затем по похожести (нечеткий поиск).
+        Использует расширение pg_trgm и индексы из db/title_search.sql, поэтому запрос нативный (только PostgreSQL).
+        Оператор % - похожесть выше порога pg_trgm.similarity_threshold (по умолчанию 0.3)
+        pattern - тот же текст, экранированный для like (LikePattern.escape), title - для похожести
+     */
+    @Query(value = "SELECT t.* FROM todo.task t where " +
+            "t.user_id=:userId and " + // фильтрация для конкретного пользователя
+            "(lower(t.title) like concat(lower(:pattern), '%') escape '\\' " + // совпадение с начала названия
+            " or lower(t.title) like concat('%', lower(:pattern), '%') escape '\\' " + // вхождение текста
+            " or lower(t.title) % lower(:title)) " + // похожее название (опечатки)
+            "order by (lower(t.title) like concat(lower(:pattern), '%') escape '\\') desc, " +
+            " similarity(lower(t.title), lower(:title)) desc, t.id asc " +
+            "limit :limit", nativeQuery = true)
+    List<Task> findByTitleRanked(@Param("title") String title, @Param("pattern") String pattern, @Param("userId") String userId, @Param("limit") int limit);
+
+    // задачи пользователя по списку id (одним запросом)
+    List<Task> findByUserIdAndIdIn(String userId, Collection<Long> ids);
+
+    // удаление задач пользователя по списку id (одним запросом)
+    @Modifying
+    @Query("delete from Task t where t.userId=:userId and t.id in :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") String userId, @Param("ids") Collection<Long> ids);
+
 
 }
@@ -0,0 +1,101 @@
+package ru.javabegin.micro.planner.todo.repo;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Priority;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.search.TaskCursor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+// условия поиска задач в виде Specification - нужны там, где запрос строится динамически (например, постраничность по курсору)
+// условия фильтрации совпадают с запросом TaskRepository.findByParams
+public final class TaskSpecification {
+
+    private TaskSpecification() {
+    }
+
+    // искать по всем переданным параметрам (пустые параметры учитываться не будут)
+    public static Specification<Task> byParams(String title, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo) {
+        return (root, query, cb) -> {
+
+            List<Predicate> predicates = new ArrayList<>();
+
+            predicates.add(cb.equal(root.get("userId"), userId)); // показывать задачи только определенного пользователя, а не все
+
+            if (title != null && !title.isEmpty()) {
+                predicates.add(cb.like(cb.lower(root.<String>get("title")), "%" + title.toLowerCase() + "%"));
+            }
+
+            if (completed != null) {
+                predicates.add(cb.equal(root.get("completed"), completed));
+            }
+
+            if (priorityId != null) {
+                predicates.add(cb.equal(root.get("priority").get("id"), priorityId));
+            }
+
+            if (categoryId != null) {
+                predicates.add(cb.equal(root.get("category").get("id"), categoryId));
+            }
+
+            if (dateFrom != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.<Date>get("taskDate"), dateFrom));
+            }
+
+            if (dateTo != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.<Date>get("taskDate"), dateTo));
+            }
+
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    /* Задачи, которые идут после курсора при сортировке (sortColumn, id) в направлении direction.
+
+        PostgreSQL при сортировке ASC ставит null в конец, а при DESC - в начало,
+        поэтому записи с пустым значением столбца сортировки обрабатываются отдельно.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static Specification<Task> after(TaskCursor cursor, Sort.Direction direction) {
+        return (root, query, cb) -> {
+
+            Path column = root.get(cursor.getSortColumn());
+
+            // при сортировке по связанной сущности сравниваем ее id
+            Class<?> type = column.getJavaType();
+            if (Priority.class.equals(type) || Category.class.equals(type)) {
+                column = column.get("id");
+            }
+
+            Path<Long> id = root.get("id");
+            Comparable value = (Comparable) cursor.getValue();
+            boolean asc = direction.isAscending();
+
+            Predicate sameValueNextId = asc ? cb.greaterThan(id, cursor.getId()) : cb.lessThan(id, cursor.getId());
+
+            if (value == null) {
+                if (asc) { // null в конце - дальше идут только оставшиеся null
+                    return cb.and(cb.isNull(column), sameValueNextId);
+                }
+                // null в начале - дальше оставшиеся null и все заполненные значения
+                return cb.or(cb.and(cb.isNull(column), sameValueNextId), cb.isNotNull(column));
+            }
+
+            Predicate nextValue = asc ? cb.greaterThan(column, value) : cb.lessThan(column, value);
+            Predicate sameValue = cb.and(cb.equal(column, value), sameValueNextId);
+
+            if (asc) { // после всех заполненных значений идут null
+                return cb.or(nextValue, sameValue, cb.isNull(column));
+            }
+
+            return cb.or(nextValue, sameValue);
+        };
+    }
+
+}
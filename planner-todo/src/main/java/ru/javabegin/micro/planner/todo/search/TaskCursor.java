@@ -0,0 +1,119 @@
+package ru.javabegin.micro.planner.todo.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Priority;
+import ru.javabegin.micro.planner.entity.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+// позиция в выборке для постраничности по курсору (keyset/seek) - последняя пара (значение столбца сортировки, id)
+// на frontend передается в виде непрозрачной строки (token), которую нужно просто вернуть для получения следующей страницы
+public class TaskCursor {
+
+    public static final String ID_COLUMN = "id"; // второе поле сортировки, которое делает порядок строгим
+    private static final String SEPARATOR = "|";
+
+    private String sortColumn; // по какому столбцу была сортировка (токен нельзя использовать с другой сортировкой)
+    private Object value; // значение столбца сортировки у последней задачи страницы (может быть null)
+    private Long id; // id последней задачи страницы (второе поле сортировки)
+
+    // курсор по последней задаче страницы
+    public static TaskCursor of(Task task, String sortColumn) {
+
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(task);
+        Object value = wrapper.getPropertyValue(sortColumn);
+
+        // при сортировке по связанной сущности сортировка идет по ее id
+        if (value instanceof Priority priority) {
+            value = priority.getId();
+        } else if (value instanceof Category category) {
+            value = category.getId();
+        }
+
+        return new TaskCursor(sortColumn, value, task.getId());
+    }
+
+    // преобразовать в строку для передачи на frontend
+    public String encode() {
+
+        String typedValue;
+
+        // тип значения храним вместе с ним, чтобы при разборе получить тот же объект
+        if (value == null) {
+            typedValue = "N";
+        } else if (value instanceof Date date) {
+            // секунды и наносекунды - в БД дата хранится точнее миллисекунд (Timestamp), иначе задачи с той же миллисекундой пропускаются
+            long seconds = Math.floorDiv(date.getTime(), 1000);
+            int nanos = date instanceof Timestamp timestamp ? timestamp.getNanos() : (int) Math.floorMod(date.getTime(), 1000) * 1_000_000;
+            typedValue = "D" + seconds + "." + nanos;
+        } else if (value instanceof Boolean bool) {
+            typedValue = "B" + bool;
+        } else if (value instanceof Long number) {
+            typedValue = "L" + number;
+        } else {
+            typedValue = "S" + value;
+        }
+
+        // значение ставим последним, т.к. в строке может встретиться разделитель
+        String raw = sortColumn + SEPARATOR + id + SEPARATOR + typedValue;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // разобрать строку, полученную от frontend
+    public static TaskCursor decode(String token) {
+
+        String raw;
+
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid page token: " + token, e);
+        }
+
+        String[] parts = raw.split("\\" + SEPARATOR, 3);
+
+        if (parts.length != 3 || parts[2].isEmpty()) {
+            throw new IllegalArgumentException("invalid page token: " + token);
+        }
+
+        String typedValue = parts[2];
+        String valueText = typedValue.substring(1);
+
+        Object value = switch (typedValue.charAt(0)) {
+            case 'N' -> null;
+            case 'D' -> parseDate(valueText);
+            case 'B' -> Boolean.valueOf(valueText);
+            case 'L' -> Long.valueOf(valueText);
+            case 'S' -> valueText;
+            default -> throw new IllegalArgumentException("invalid page token: " + token);
+        };
+
+        return new TaskCursor(parts[0], value, Long.valueOf(parts[1]));
+    }
+
+    // "секунды.наносекунды" (токены до этого формата - миллисекунды)
+    private static Date parseDate(String text) {
+
+        int dot = text.indexOf('.');
+
+        if (dot < 0) {
+            return new Date(Long.parseLong(text));
+        }
+
+        Timestamp timestamp = new Timestamp(Long.parseLong(text.substring(0, dot)) * 1000);
+        timestamp.setNanos(Integer.parseInt(text.substring(dot + 1)));
+
+        return timestamp;
+    }
+
+}
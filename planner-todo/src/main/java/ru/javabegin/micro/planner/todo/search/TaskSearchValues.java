@@ -28,6 +28,15 @@ public class TaskSearchValues {
     private Integer pageNumber;
     private Integer pageSize;
 
+    // постраничность по курсору (keyset) - без OFFSET и без подсчета общего количества, pageNumber не учитывается
+    private Boolean keyset; // включить режим курсора (для первой страницы pageToken не передается)
+    private String pageToken; // nextPageToken из предыдущей страницы
+    private Boolean withTotal; // дополнительно посчитать общее количество задач (отдельный запрос count)
+
+    // компактный ответ (TaskListCompact): задачи с id приоритета и категории + сами приоритеты и категории отдельными списками
+    // (для постраничности по курсору не используется)
+    private Boolean compact;
+
     // сортировка
     private String sortColumn;
     private String sortDirection;
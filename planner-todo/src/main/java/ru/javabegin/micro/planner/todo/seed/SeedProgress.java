@@ -0,0 +1,56 @@
+package ru.javabegin.micro.planner.todo.seed;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ход заполнения тестовыми данными (возвращается в ответе /data/seed и /data/progress)
+@Getter
+public class SeedProgress {
+
+    private final String template;
+    private final long usersTotal;
+    private final long tasksTotal;
+    private final Instant startedAt = Instant.now();
+
+    private final AtomicLong usersDone = new AtomicLong();
+    private final AtomicLong tasksDone = new AtomicLong();
+
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public SeedProgress(String template, long usersTotal, long tasksTotal) {
+        this.template = template;
+        this.usersTotal = usersTotal;
+        this.tasksTotal = tasksTotal;
+    }
+
+    public void chunkDone(int users, long tasks) {
+        usersDone.addAndGet(users);
+        tasksDone.addAndGet(tasks);
+    }
+
+    public void finish(String error) {
+        this.error = error;
+        this.finishedAt = Instant.now();
+    }
+
+    public boolean isRunning() {
+        return finishedAt == null;
+    }
+
+    public long getTasksPerSecond() {
+        long millis = Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now()).toMillis();
+        return millis > 0 ? tasksDone.get() * 1000 / millis : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "seed " + template + ": users " + usersDone.get() + "/" + usersTotal +
+                ", tasks " + tasksDone.get() + "/" + tasksTotal + ", " + getTasksPerSecond() + " tasks/s" +
+                (error != null ? ", error: " + error : "");
+    }
+
+}
@@ -0,0 +1,90 @@
+package ru.javabegin.micro.planner.todo.seed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+
+шаблон данных, которые создаются для каждого пользователя (файлы resources/seed/*.json)
+
+tasks - конкретные задачи, generated - сколько и каких задач сгенерировать дополнительно (для нагрузочного тестирования)
+категории и приоритеты задач указываются по названию
+
+ */
+
+public record SeedTemplate(List<PriorityData> priorities, List<String> categories, List<TaskData> tasks, Generated generated) {
+
+    public record PriorityData(String title, String color) {
+    }
+
+    public record TaskData(String title, String category, String priority, boolean completed, Integer daysFromNow) {
+    }
+
+    // случайные задачи: название - из списка titles (с номером), категория и приоритет - любые из шаблона,
+    // доли ratio - от 0 до 1, дата - случайный день в диапазоне daysFrom..daysTo от текущей даты
+    public record Generated(int perUser, List<String> titles, double completedRatio,
+                            double withoutCategoryRatio, double withoutPriorityRatio, double withoutDateRatio,
+                            int daysFrom, int daysTo) {
+    }
+
+    // проверка шаблона при чтении - ошибки возвращаются клиенту (IllegalArgumentException -> 406)
+    public void validate() {
+
+        List<String> priorityTitles = new ArrayList<>();
+        if (priorities != null) {
+            for (PriorityData priority : priorities) {
+                if (priority == null || priority.title() == null || priority.title().isBlank()) {
+                    throw new IllegalArgumentException("wrong template: priority without title");
+                }
+                priorityTitles.add(priority.title());
+            }
+        }
+
+        if (categories != null && categories.stream().anyMatch(category -> category == null || category.isBlank())) {
+            throw new IllegalArgumentException("wrong template: empty category title");
+        }
+
+        if (tasks != null) {
+            for (TaskData task : tasks) {
+                if (task == null || task.title() == null || task.title().isBlank()) {
+                    throw new IllegalArgumentException("wrong template: task without title");
+                }
+                if (task.category() != null && (categories == null || !categories.contains(task.category()))) {
+                    throw new IllegalArgumentException("wrong template: unknown category " + task.category());
+                }
+                if (task.priority() != null && !priorityTitles.contains(task.priority())) {
+                    throw new IllegalArgumentException("wrong template: unknown priority " + task.priority());
+                }
+            }
+        }
+
+        if (generated == null) {
+            return;
+        }
+
+        if (generated.perUser() < 0) {
+            throw new IllegalArgumentException("wrong template: generated.perUser < 0");
+        }
+
+        if (generated.perUser() > 0 && (generated.titles() == null || generated.titles().isEmpty())) {
+            throw new IllegalArgumentException("wrong template: generated.titles is empty");
+        }
+
+        if (generated.daysTo() < generated.daysFrom()) {
+            throw new IllegalArgumentException("wrong template: generated.daysTo < daysFrom");
+        }
+
+        for (double ratio : new double[]{generated.completedRatio(), generated.withoutCategoryRatio(),
+                generated.withoutPriorityRatio(), generated.withoutDateRatio()}) {
+            if (ratio < 0 || ratio > 1) {
+                throw new IllegalArgumentException("wrong template: ratio must be from 0 to 1");
+            }
+        }
+    }
+
+    // сколько задач будет создано для одного пользователя
+    public int tasksPerUser() {
+        return (tasks != null ? tasks.size() : 0) + (generated != null ? generated.perUser() : 0);
+    }
+
+}
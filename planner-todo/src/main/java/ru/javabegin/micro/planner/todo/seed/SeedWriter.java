@@ -0,0 +1,281 @@
+package ru.javabegin.micro.planner.todo.seed;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.counter.TaskState;
+import ru.javabegin.micro.planner.todo.repo.TaskIdAllocator;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/*
+
+запись данных по шаблону SeedTemplate для группы пользователей (в текущей транзакции)
+
+приоритеты и категории - многострочные insert (id созданных строк возвращаются через returning),
+задачи - через COPY (быстрее всего для большого количества строк) или пачками JDBC (planner.seed.insert-mode=batch)
+
+ */
+
+@Component
+public class SeedWriter {
+
+    private static final int MAX_ROWS_PER_INSERT = 1000; // ограничение количества параметров в одном запросе
+    private static final int COPY_BUFFER_SIZE = 64 * 1024; // сколько данных накапливать перед отправкой в COPY
+    private static final int JDBC_BATCH_SIZE = 1000;
+
+    @Value("${planner.seed.insert-mode:copy}")
+    private String insertMode; // copy или batch
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final StatCounters statCounters;
+    private final UserCacheVersions userCacheVersions;
+    private final TaskIdAllocator taskIdAllocator;
+
+    public SeedWriter(JdbcTemplate jdbcTemplate, DataSource dataSource, StatCounters statCounters, UserCacheVersions userCacheVersions,
+                      TaskIdAllocator taskIdAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.statCounters = statCounters;
+        this.userCacheVersions = userCacheVersions;
+        this.taskIdAllocator = taskIdAllocator;
+    }
+
+    // строка задачи для записи
+    private record TaskRow(long id, String title, boolean completed, Timestamp taskDate, Long priorityId, Long categoryId, String userId) {
+    }
+
+    private interface RowValues {
+        Object[] values(String userId, int index);
+    }
+
+    // создать данные по шаблону для пользователей - возвращает количество созданных задач
+    public long write(List<String> users, SeedTemplate template) {
+
+        if (users.isEmpty()) {
+            return 0;
+        }
+
+        List<SeedTemplate.PriorityData> priorities = template.priorities() != null ? template.priorities() : List.of();
+        List<String> categories = template.categories() != null ? template.categories() : List.of();
+
+        // id созданных объектов по ключу "userId|title"
+        Map<String, Long> priorityIds = insertReturningIds(
+                "insert into todo.priority (title, color, user_id) values ", 3, users, priorities.size(),
+                (user, i) -> new Object[]{priorities.get(i).title(), priorities.get(i).color(), user});
+
+        Map<String, Long> categoryIds = insertReturningIds(
+                "insert into todo.category (title, completed_count, uncompleted_count, user_id) values ", 4, users, categories.size(),
+                (user, i) -> new Object[]{categories.get(i), 0, 0, user});
+
+        List<TaskRow> tasks = buildTasks(users, template, priorityIds, categoryIds);
+
+        if ("batch".equals(insertMode)) {
+            batchInsert(tasks);
+        } else {
+            copyInsert(tasks);
+        }
+
+        // триггеры отключены - счетчики статистики изменяет приложение (после commit)
+        List<TaskState> states = new ArrayList<>(tasks.size());
+        for (TaskRow task : tasks) {
+            states.add(new TaskState(task.userId(), task.categoryId(), task.completed()));
+        }
+        statCounters.tasksAdded(states);
+
+        users.forEach(userCacheVersions::evictUser);
+
+        return tasks.size();
+    }
+
+    private List<TaskRow> buildTasks(List<String> users, SeedTemplate template, Map<String, Long> priorityIds, Map<String, Long> categoryIds) {
+
+        List<Long> ids = taskIdAllocator.allocate(users.size() * template.tasksPerUser());
+        List<TaskRow> rows = new ArrayList<>(ids.size());
+
+        List<SeedTemplate.PriorityData> priorities = template.priorities() != null ? template.priorities() : List.of();
+        List<String> categories = template.categories() != null ? template.categories() : List.of();
+
+        Instant now = Instant.now();
+        int n = 0;
+
+        for (String user : users) {
+
+            if (template.tasks() != null) {
+                for (SeedTemplate.TaskData task : template.tasks()) {
+                    rows.add(new TaskRow(ids.get(n++), task.title(), task.completed(),
+                            task.daysFromNow() != null ? Timestamp.from(now.plus(Duration.ofDays(task.daysFromNow()))) : null,
+                            priorityIds.get(user + "|" + task.priority()),
+                            categoryIds.get(user + "|" + task.category()),
+                            user));
+                }
+            }
+
+            SeedTemplate.Generated generated = template.generated();
+
+            if (generated == null || generated.perUser() == 0) {
+                continue;
+            }
+
+            SplittableRandom random = new SplittableRandom(user.hashCode()); // для одного пользователя - всегда одни и те же данные
+
+            for (int i = 0; i < generated.perUser(); i++) {
+
+                String title = generated.titles().get(i % generated.titles().size()) + " " + (i + 1);
+
+                Long categoryId = null;
+                if (!categories.isEmpty() && random.nextDouble() >= generated.withoutCategoryRatio()) {
+                    categoryId = categoryIds.get(user + "|" + categories.get(random.nextInt(categories.size())));
+                }
+
+                Long priorityId = null;
+                if (!priorities.isEmpty() && random.nextDouble() >= generated.withoutPriorityRatio()) {
+                    priorityId = priorityIds.get(user + "|" + priorities.get(random.nextInt(priorities.size())).title());
+                }
+
+                Timestamp taskDate = null;
+                if (random.nextDouble() >= generated.withoutDateRatio()) {
+                    int days = generated.daysFrom() + random.nextInt(generated.daysTo() - generated.daysFrom() + 1);
+                    taskDate = Timestamp.from(now.plus(Duration.ofDays(days)));
+                }
+
+                rows.add(new TaskRow(ids.get(n++), title, random.nextDouble() < generated.completedRatio(), taskDate, priorityId, categoryId, user));
+            }
+        }
+
+        return rows;
+    }
+
+    // многострочный insert (частями по MAX_ROWS_PER_INSERT строк), id созданных строк возвращаются через returning
+    private Map<String, Long> insertReturningIds(String insert, int columns, List<String> users, int perUser, RowValues rowValues) {
+
+        Map<String, Long> ids = new HashMap<>();
+
+        List<Object> params = new ArrayList<>();
+        int rows = 0;
+
+        for (String user : users) {
+            for (int i = 0; i < perUser; i++) {
+
+                Collections.addAll(params, rowValues.values(user, i));
+                rows++;
+
+                if (rows == MAX_ROWS_PER_INSERT) {
+                    insertRows(insert, columns, rows, params, ids);
+                    params.clear();
+                    rows = 0;
+                }
+            }
+        }
+
+        if (rows > 0) {
+            insertRows(insert, columns, rows, params, ids);
+        }
+
+        return ids;
+    }
+
+    private void insertRows(String insert, int columns, int rows, List<Object> params, Map<String, Long> ids) {
+        jdbcTemplate.query(insert + rows(rows, columns) + " returning id, user_id, title",
+                rs -> {
+                    ids.put(rs.getString("user_id") + "|" + rs.getString("title"), rs.getLong("id"));
+                },
+                params.toArray());
+    }
+
+    private void batchInsert(List<TaskRow> tasks) {
+
+        List<Object[]> rows = new ArrayList<>(tasks.size());
+
+        for (TaskRow task : tasks) {
+            rows.add(new Object[]{task.id(), task.title(), task.completed() ? 1 : 0, task.taskDate(), task.priorityId(), task.categoryId(), task.userId()});
+        }
+
+        jdbcTemplate.batchUpdate("insert into todo.task (id, title, completed, task_date, priority_id, category_id, user_id) " +
+                "values (?, ?, ?, ?, ?, ?, ?)", rows, JDBC_BATCH_SIZE, (ps, row) -> {
+            for (int i = 0; i < row.length; i++) {
+                ps.setObject(i + 1, row[i]);
+            }
+        });
+    }
+
+    // COPY через соединение текущей транзакции (данные передаются в формате csv частями по COPY_BUFFER_SIZE)
+    private void copyInsert(List<TaskRow> tasks) {
+
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+
+        try {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "copy todo.task (id, title, completed, task_date, priority_id, category_id, user_id) from stdin with (format csv)");
+
+            try {
+                StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE + 1024);
+
+                for (TaskRow task : tasks) {
+                    buffer.append(task.id()).append(',')
+                            .append(csv(task.title())).append(',')
+                            .append(task.completed() ? 1 : 0).append(',')
+                            .append(task.taskDate() != null ? task.taskDate() : "").append(',') // пустое значение без кавычек - null
+                            .append(task.priorityId() != null ? task.priorityId() : "").append(',')
+                            .append(task.categoryId() != null ? task.categoryId() : "").append(',')
+                            .append(csv(task.userId())).append('\n');
+
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        write(copyIn, buffer);
+                    }
+                }
+
+                write(copyIn, buffer);
+                copyIn.endCopy();
+
+            } finally {
+                if (copyIn.isActive()) { // ошибка во время записи
+                    copyIn.cancelCopy();
+                }
+            }
+
+        } catch (SQLException e) {
+            throw new IllegalStateException("task copy failed: " + e.getMessage(), e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    // значение в кавычках (кавычки внутри удваиваются)
+    private static String csv(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // строка вида (?, ?), (?, ?) для многострочного insert
+    private static String rows(int rows, int columns) {
+
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+
+        return String.join(", ", Collections.nCopies(rows, row));
+    }
+
+}
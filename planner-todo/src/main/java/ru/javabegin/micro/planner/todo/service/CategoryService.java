@@ -4,7 +4,11 @@ import jakarta.transaction.Transactional;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.todo.cache.CacheConfig;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
 import ru.javabegin.micro.planner.todo.repo.CategoryRepository;
+import ru.javabegin.micro.planner.todo.repo.LikePattern;
 
 import java.util.List;
 
@@ -22,35 +26,51 @@ public class CategoryService {
     // работает встроенный механизм DI из Spring, который при старте приложения подставит в эту переменную нужные класс-реализацию
     private final CategoryRepository repository; // сервис имеет право обращаться к репозиторию (БД)
 
-    public CategoryService(CategoryRepository repository) {
+    private final UserCacheVersions userCacheVersions; // для сброса кеша пользователя при изменении данных
+
+    private final StatCounters statCounters; // изменения счетчиков категорий, которые еще не записаны в БД
+
+    public CategoryService(CategoryRepository repository, UserCacheVersions userCacheVersions, StatCounters statCounters) {
         this.repository = repository;
+        this.userCacheVersions = userCacheVersions;
+        this.statCounters = statCounters;
     }
 
-    @Cacheable(cacheNames = "categories")
+    // количество задач в категориях = значения из БД + еще не записанные изменения
+    @Cacheable(cacheNames = CacheConfig.CATEGORIES, key = "#userId")
     public List<Category> findAll(String userId) {
-        return repository.findByUserIdOrderByTitleAsc(userId);
+        return statCounters.read(() -> repository.findByUserIdOrderByTitleAsc(userId).stream().map(statCounters::withPending).toList());
     }
 
     public Category add(Category category) {
+        userCacheVersions.evictUser(category.getUserId());
         return repository.save(category); // метод save обновляет или создает новый объект, если его не было
     }
 
     public Category update(Category category) {
+        userCacheVersions.evictUser(category.getUserId(), Category.class, category.getId()); // задачи пользователя содержат этот объект - их кеш тоже сбрасывается
         return repository.save(category); // метод save обновляет или создает новый объект, если его не было
     }
 
     public void deleteById(Long id) {
+        // чтобы сбросить кеш, нужно знать владельца
+        repository.findById(id).ifPresent(category -> userCacheVersions.evictUser(category.getUserId(), Category.class, id));
         repository.deleteById(id);
     }
 
     // поиск категорий пользователя по названию
     public List<Category> findByTitle(String text, String userId) {
-        return repository.findByTitle(text, userId);
+        return statCounters.read(() -> repository.findByTitle(text, userId).stream().map(statCounters::withPending).toList());
+    }
+
+    // поиск по названию с ранжированием (начало названия, вхождение, похожие названия)
+    public List<Category> findByTitleRanked(String text, String userId, int limit) {
+        return repository.findByTitleRanked(text, LikePattern.escape(text), userId, limit);
     }
 
     // поиск категории по ID
     public Category findById(Long id) {
-        return repository.findById(id).get(); // т.к. возвращается Optional - можно получить объект методом get()
+        return statCounters.read(() -> statCounters.withPending(repository.findById(id).get())); // т.к. возвращается Optional - можно получить объект методом get()
     }
 
 
@@ -3,6 +3,8 @@ package ru.javabegin.micro.planner.todo.service;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 import ru.javabegin.micro.planner.entity.Priority;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.repo.LikePattern;
 import ru.javabegin.micro.planner.todo.repo.PriorityRepository;
 
 import java.util.List;
@@ -19,8 +21,11 @@ public class PriorityService {
 
     private final PriorityRepository repository; // сервис имеет право обращаться к репозиторию (БД)
 
-    public PriorityService(PriorityRepository repository) {
+    private final UserCacheVersions userCacheVersions; // для сброса кеша пользователя при изменении данных
+
+    public PriorityService(PriorityRepository repository, UserCacheVersions userCacheVersions) {
         this.repository = repository;
+        this.userCacheVersions = userCacheVersions;
     }
 
     public List<Priority> findAll(String userId) {
@@ -28,14 +33,18 @@ public class PriorityService {
     }
 
     public Priority add(Priority priority) {
+        userCacheVersions.evictUser(priority.getUserId());
         return repository.save(priority); // метод save обновляет или создает новый объект, если его не было
     }
 
     public Priority update(Priority priority) {
+        userCacheVersions.evictUser(priority.getUserId(), Priority.class, priority.getId()); // задачи пользователя содержат этот объект - их кеш тоже сбрасывается
         return repository.save(priority); // метод save обновляет или создает новый объект, если его не было
     }
 
     public void deleteById(Long id) {
+        // чтобы сбросить кеш, нужно знать владельца
+        repository.findById(id).ifPresent(priority -> userCacheVersions.evictUser(priority.getUserId(), Priority.class, id));
         repository.deleteById(id);
     }
 
@@ -47,4 +56,9 @@ public class PriorityService {
         return repository.findByTitle(title, userId);
     }
 
+    // поиск по названию с ранжированием (начало названия, вхождение, похожие названия)
+    public List<Priority> findByTitleRanked(String title, String userId, int limit) {
+        return repository.findByTitleRanked(title, LikePattern.escape(title), userId, limit);
+    }
+
 }
@@ -3,6 +3,7 @@ package ru.javabegin.micro.planner.todo.service;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 import ru.javabegin.micro.planner.entity.Stat;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
 import ru.javabegin.micro.planner.todo.repo.StatRepository;
 
 // всегда нужно создавать отдельный класс Service для доступа к данным, даже если кажется,
@@ -17,12 +18,16 @@ public class StatService {
 
     private final StatRepository repository; // сервис имеет право обращаться к репозиторию (БД)
 
-    public StatService(StatRepository repository) {
+    private final StatCounters statCounters; // изменения счетчиков, которые еще не записаны в БД
+
+    public StatService(StatRepository repository, StatCounters statCounters) {
         this.repository = repository;
+        this.statCounters = statCounters;
     }
 
+    // значения из БД + еще не записанные изменения
     public Stat findStat(String userId) {
-        return repository.findByUserId(userId);
+        return statCounters.read(() -> statCounters.withPending(repository.findByUserId(userId)));
     }
 
 }
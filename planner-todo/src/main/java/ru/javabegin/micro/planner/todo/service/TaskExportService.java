@@ -0,0 +1,129 @@
+package ru.javabegin.micro.planner.todo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Service;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/*
+
+выгрузка всех задач пользователя (NDJSON - по одному JSON объекту задачи в строке, или CSV)
+
+задачи читаются из БД курсором (TaskRepository.streamByUserId) и сразу пишутся в ответ,
+загруженные объекты периодически удаляются из persistence context - поэтому расход памяти не зависит от количества задач
+
+ */
+
+@Service
+@Transactional
+public class TaskExportService {
+
+    public static final String NDJSON = "ndjson";
+    public static final String CSV = "csv";
+
+    private static final String CSV_HEADER = "id,title,completed,taskDate,priorityId,priority,categoryId,category";
+
+    private final TaskRepository repository;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public TaskExportService(TaskRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    // записать все задачи пользователя в out (out не закрывается) - возвращает количество задач
+    public long export(String userId, String format, OutputStream out) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        // задачи в NDJSON разделяются переводом строки (без пробела-разделителя, который JsonGenerator ставит между объектами),
+        // SequenceWriter не закрывается - иначе закроется и ответ
+        SequenceWriter json = null;
+
+        if (CSV.equals(format)) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        } else {
+            json = objectMapper.writer()
+                    .withRootValueSeparator("\n")
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE) // ответ сбрасывается через буфер, а не после каждой задачи
+                    .writeValues(writer);
+        }
+
+        long count = 0;
+
+        try (Stream<Task> tasks = repository.streamByUserId(userId)) {
+
+            Iterator<Task> iterator = tasks.iterator();
+
+            while (iterator.hasNext()) {
+
+                Task task = iterator.next();
+
+                if (json == null) {
+                    writeCsv(writer, task);
+                } else {
+                    json.write(task);
+                }
+
+                // уже записанные задачи (и их приоритеты, категории) больше не нужны
+                if (++count % TaskRepository.EXPORT_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+
+        if (json != null) {
+            json.flush();
+            if (count > 0) {
+                writer.write('\n'); // после последней задачи (каждая строка NDJSON заканчивается переводом строки)
+            }
+        }
+
+        writer.flush();
+
+        return count;
+    }
+
+    private static void writeCsv(Writer writer, Task task) throws IOException {
+        writer.write(String.valueOf(task.getId()));
+        writer.write(',');
+        writer.write(csv(task.getTitle()));
+        writer.write(',');
+        writer.write(Boolean.TRUE.equals(task.getCompleted()) ? "1" : "0");
+        writer.write(',');
+        writer.write(task.getTaskDate() != null ? task.getTaskDate().toInstant().toString() : "");
+        writer.write(',');
+        writer.write(task.getPriority() != null ? String.valueOf(task.getPriority().getId()) : "");
+        writer.write(',');
+        writer.write(task.getPriority() != null ? csv(task.getPriority().getTitle()) : "");
+        writer.write(',');
+        writer.write(task.getCategory() != null ? String.valueOf(task.getCategory().getId()) : "");
+        writer.write(',');
+        writer.write(task.getCategory() != null ? csv(task.getCategory().getTitle()) : "");
+        writer.write('\n');
+    }
+
+    // значение в кавычках (кавычки внутри удваиваются)
+    private static String csv(String value) {
+        return value == null ? "" : "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+}
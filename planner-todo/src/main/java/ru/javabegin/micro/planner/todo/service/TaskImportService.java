@@ -0,0 +1,317 @@
+package ru.javabegin.micro.planner.todo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.counter.TaskState;
+import ru.javabegin.micro.planner.todo.dto.TaskImportResult;
+import ru.javabegin.micro.planner.todo.importer.CsvRowReader;
+import ru.javabegin.micro.planner.todo.importer.ImportRow;
+import ru.javabegin.micro.planner.todo.importer.ImportRowException;
+import ru.javabegin.micro.planner.todo.importer.NdjsonRowReader;
+import ru.javabegin.micro.planner.todo.importer.TaskRowReader;
+import ru.javabegin.micro.planner.todo.repo.TaskIdAllocator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+
+импорт задач пользователя (например, при переходе из другого планировщика) - NDJSON или CSV (форматы как у /task/export)
+
+- данные читаются из потока по одной строке, в памяти - только текущая пачка задач (planner.import.batch-size)
+- категории и приоритеты указываются по названию: id берутся из словаря пользователя в памяти,
+  недостающие создаются одним insert на всю пачку
+- каждая пачка задач записывается JDBC batch в своей транзакции
+- ошибка в строке не останавливает импорт: строка пропускается и попадает в список ошибок
+  (если пачка не записалась целиком - ее задачи записываются по одной, чтобы найти ошибочные;
+  так же создаются по одной категории и приоритеты, а строки с несозданными названиями пропускаются)
+
+ */
+
+@Service
+@Log
+public class TaskImportService {
+
+    private static final String DEFAULT_PRIORITY_COLOR = "#fff"; // цвет для приоритетов, созданных при импорте
+
+    @Value("${planner.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${planner.import.max-errors:1000}")
+    private int maxErrors; // сколько ошибок возвращать в ответе (остальные только учитываются в failed)
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskIdAllocator taskIdAllocator;
+    private final StatCounters statCounters;
+    private final UserCacheVersions userCacheVersions;
+    private final ObjectMapper objectMapper;
+
+    public TaskImportService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, TaskIdAllocator taskIdAllocator,
+                             StatCounters statCounters, UserCacheVersions userCacheVersions, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.taskIdAllocator = taskIdAllocator;
+        this.statCounters = statCounters;
+        this.userCacheVersions = userCacheVersions;
+        this.objectMapper = objectMapper;
+    }
+
+    // состояние одного импорта
+    private static class ImportContext {
+        final String userId;
+        final Map<String, Long> categories; // id категории пользователя по названию
+        final Map<String, Long> priorities; // id приоритета пользователя по названию
+        final TaskImportResult result = new TaskImportResult();
+
+        ImportContext(String userId, Map<String, Long> categories, Map<String, Long> priorities) {
+            this.userId = userId;
+            this.categories = categories;
+            this.priorities = priorities;
+        }
+    }
+
+    public TaskImportResult importTasks(String userId, String format, InputStream in) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+
+        TaskRowReader rows = TaskExportService.CSV.equals(format) ? new CsvRowReader(reader) : new NdjsonRowReader(reader, objectMapper);
+
+        ImportContext context = new ImportContext(userId,
+                titleIds("select id, title from todo.category where user_id=? order by id", userId),
+                titleIds("select id, title from todo.priority where user_id=? order by id", userId));
+
+        List<ImportRow> batch = new ArrayList<>(batchSize);
+
+        while (true) {
+
+            ImportRow row;
+
+            try {
+                row = rows.next();
+            } catch (ImportRowException e) {
+                error(context, rows.rowNumber(), e.getMessage());
+                continue;
+            }
+
+            if (row == null) {
+                break;
+            }
+
+            if (row.title() == null) {
+                error(context, row.number(), "missed param: title");
+                continue;
+            }
+
+            batch.add(row);
+
+            if (batch.size() == batchSize) {
+                writeBatch(context, batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeBatch(context, batch);
+        }
+
+        log.info("user " + userId + " imported " + context.result.getImported() + " tasks, failed " + context.result.getFailed());
+
+        return context.result;
+    }
+
+    private void writeBatch(ImportContext context, List<ImportRow> batch) {
+
+        // недостающие категории и приоритеты создаются в отдельной транзакции - даже если задачи не запишутся,
+        // словарь пользователя останется верным
+        Map<String, String> failedCategories = new HashMap<>(); // название -> ошибка БД
+        Map<String, String> failedPriorities = new HashMap<>();
+
+        context.result.setCategoriesCreated(context.result.getCategoriesCreated() +
+                createMissing(context, batch, ImportRow::category, context.categories,
+                        "insert into todo.category (title, completed_count, uncompleted_count, user_id) values ",
+                        title -> new Object[]{title, 0, 0, context.userId}, failedCategories));
+
+        context.result.setPrioritiesCreated(context.result.getPrioritiesCreated() +
+                createMissing(context, batch, ImportRow::priority, context.priorities,
+                        "insert into todo.priority (title, color, user_id) values ",
+                        title -> new Object[]{title, DEFAULT_PRIORITY_COLOR, context.userId}, failedPriorities));
+
+        // строки с категорией (приоритетом), которую не удалось создать, пропускаются - остальные задачи пачки записываются
+        if (!failedCategories.isEmpty() || !failedPriorities.isEmpty()) {
+
+            List<ImportRow> rows = new ArrayList<>(batch.size());
+
+            for (ImportRow row : batch) {
+                if (row.category() != null && failedCategories.containsKey(row.category())) {
+                    error(context, row.number(), "category '" + row.category() + "' not created: " + failedCategories.get(row.category()));
+                } else if (row.priority() != null && failedPriorities.containsKey(row.priority())) {
+                    error(context, row.number(), "priority '" + row.priority() + "' not created: " + failedPriorities.get(row.priority()));
+                } else {
+                    rows.add(row);
+                }
+            }
+
+            if (rows.isEmpty()) {
+                return;
+            }
+
+            batch = rows;
+        }
+
+        // id выделяются один раз на пачку - при записи по одной задаче используются те же id
+        List<Long> ids = taskIdAllocator.allocate(batch.size());
+
+        try {
+            insertTasks(context, batch, ids);
+            context.result.setImported(context.result.getImported() + batch.size());
+        } catch (DataAccessException e) {
+            // пачка откатилась целиком (ни один id не занят) - записываем задачи по одной, чтобы пропустить только ошибочные
+            for (int i = 0; i < batch.size(); i++) {
+                ImportRow row = batch.get(i);
+                try {
+                    insertTasks(context, List.of(row), List.of(ids.get(i)));
+                    context.result.setImported(context.result.getImported() + 1);
+                } catch (DataAccessException rowError) {
+                    error(context, row.number(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private void insertTasks(ImportContext context, List<ImportRow> rows, List<Long> ids) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+
+            List<Object[]> params = new ArrayList<>(rows.size());
+            List<TaskState> states = new ArrayList<>(rows.size());
+
+            for (int i = 0; i < rows.size(); i++) {
+                ImportRow row = rows.get(i);
+                Long categoryId = row.category() != null ? context.categories.get(row.category()) : null;
+                params.add(new Object[]{
+                        ids.get(i),
+                        row.title(),
+                        row.completed() ? 1 : 0, // в БД completed - число (1 = true, 0 = false)
+                        row.taskDate(),
+                        row.priority() != null ? context.priorities.get(row.priority()) : null,
+                        categoryId,
+                        context.userId});
+                states.add(new TaskState(context.userId, categoryId, row.completed()));
+            }
+
+            jdbcTemplate.batchUpdate("insert into todo.task (id, title, completed, task_date, priority_id, category_id, user_id) " +
+                    "values (?, ?, ?, ?, ?, ?, ?)", params);
+
+            // триггеры отключены - счетчики статистики изменяет приложение (после commit)
+            statCounters.tasksAdded(states);
+            userCacheVersions.evictUser(context.userId);
+        });
+    }
+
+    // создать категории (приоритеты) из пачки, которых еще нет у пользователя - возвращает количество созданных
+    // названия, которые не удалось создать, попадают в failed (название -> ошибка)
+    private int createMissing(ImportContext context, List<ImportRow> batch, Function<ImportRow, String> title, Map<String, Long> ids,
+                              String insert, Function<String, Object[]> values, Map<String, String> failed) {
+
+        Set<String> missing = new LinkedHashSet<>();
+
+        for (ImportRow row : batch) {
+            String value = title.apply(row);
+            if (value != null && !ids.containsKey(value)) {
+                missing.add(value);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return 0;
+        }
+
+        int created;
+
+        try {
+            created = insertTitles(List.copyOf(missing), ids, insert, values);
+        } catch (DataAccessException e) {
+            // insert откатился целиком - создаем по одному, чтобы пропустить только ошибочные названия
+            created = 0;
+            for (String value : missing) {
+                try {
+                    created += insertTitles(List.of(value), ids, insert, values);
+                } catch (DataAccessException titleError) {
+                    failed.put(value, titleError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+
+        if (created > 0) {
+            userCacheVersions.evictUser(context.userId);
+        }
+
+        return created;
+    }
+
+    // один insert на все названия, id созданных записей добавляются в ids только после commit
+    private int insertTitles(List<String> titles, Map<String, Long> ids, String insert, Function<String, Object[]> values) {
+
+        List<Object> params = new ArrayList<>();
+        for (String value : titles) {
+            Collections.addAll(params, values.apply(value));
+        }
+
+        int columns = params.size() / titles.size();
+        String row = "(" + String.join(", ", Collections.nCopies(columns, "?")) + ")";
+
+        Map<String, Long> created = new HashMap<>();
+
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.query(insert + String.join(", ", Collections.nCopies(titles.size(), row)) + " returning id, title",
+                        rs -> {
+                            created.put(rs.getString("title"), rs.getLong("id"));
+                        },
+                        params.toArray()));
+
+        ids.putAll(created);
+
+        return titles.size();
+    }
+
+    // id по названию (при одинаковых названиях - первый созданный)
+    private Map<String, Long> titleIds(String sql, String userId) {
+
+        Map<String, Long> ids = new HashMap<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            ids.putIfAbsent(rs.getString("title"), rs.getLong("id"));
+        }, userId);
+
+        return ids;
+    }
+
+    private void error(ImportContext context, long row, String message) {
+
+        context.result.setFailed(context.result.getFailed() + 1);
+
+        if (context.result.getErrors().size() < maxErrors) {
+            context.result.getErrors().add(new TaskImportResult.RowError(row, message));
+        }
+    }
+
+}
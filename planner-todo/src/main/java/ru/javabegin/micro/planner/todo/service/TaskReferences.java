@@ -0,0 +1,60 @@
+package ru.javabegin.micro.planner.todo.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.stereotype.Service;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Priority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/*
+
+приоритеты и категории для облегченных списков задач (TaskSlim) - по id
+
+объекты сначала ищутся в кеше 2 уровня hibernate, из БД одним запросом загружаются только отсутствующие в кеше
+
+ */
+
+@Service
+@Transactional
+public class TaskReferences {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public List<Priority> priorities(Collection<Long> ids) {
+        return load(Priority.class, ids);
+    }
+
+    public List<Category> categories(Collection<Long> ids) {
+        return load(Category.class, ids);
+    }
+
+    private <T> List<T> load(Class<T> entityClass, Collection<Long> ids) {
+
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.removeIf(Objects::isNull);
+
+        if (distinct.isEmpty()) {
+            return List.of();
+        }
+
+        List<T> entities = new ArrayList<>(entityManager.unwrap(Session.class)
+                .byMultipleIds(entityClass)
+                .with(CacheMode.NORMAL) // без явного режима multiLoad не проверяет кеш 2 уровня
+                .multiLoad(distinct));
+
+        entities.removeIf(Objects::isNull); // уже удаленные объекты
+
+        return entities;
+    }
+
+}
@@ -4,12 +4,28 @@ import jakarta.transaction.Transactional;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.cache.CacheConfig;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.counter.TaskState;
+import ru.javabegin.micro.planner.todo.dto.TaskBatchResult;
+import ru.javabegin.micro.planner.todo.dto.TaskListCompact;
+import ru.javabegin.micro.planner.todo.dto.TaskSlice;
+import ru.javabegin.micro.planner.todo.dto.TaskSlim;
+import ru.javabegin.micro.planner.todo.repo.LikePattern;
 import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.planner.todo.repo.TaskSpecification;
+import ru.javabegin.micro.planner.todo.search.TaskCursor;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 // всегда нужно создавать отдельный класс Service для доступа к данным, даже если кажется,
 // что мало методов или это все можно реализовать сразу в контроллере
@@ -23,32 +39,221 @@ public class TaskService {
 
     private final TaskRepository repository; // сервис имеет право обращаться к репозиторию (БД)
 
-    public TaskService(TaskRepository repository) {
+    private final UserCacheVersions userCacheVersions; // для сброса кеша пользователя при изменении данных
+
+    private final StatCounters statCounters; // счетчики статистики (общей и по категориям)
+
+    private final TaskReferences taskReferences; // приоритеты и категории для компактных списков (из кеша 2 уровня)
+
+    public TaskService(TaskRepository repository, UserCacheVersions userCacheVersions, StatCounters statCounters, TaskReferences taskReferences) {
         this.repository = repository;
+        this.userCacheVersions = userCacheVersions;
+        this.statCounters = statCounters;
+        this.taskReferences = taskReferences;
     }
 
-    @Cacheable(cacheNames = "tasks")
+    @Cacheable(cacheNames = CacheConfig.TASKS, key = "#userId")
     public List<Task> findAll(String userId) {
         return repository.findByUserIdOrderByTitleAsc(userId);
     }
 
+    // облегченный список задач пользователя (без вложенных приоритетов и категорий)
+    public List<TaskSlim> findAllSlim(String userId) {
+        return repository.findSlimByUserId(userId);
+    }
+
+    // все задачи пользователя в компактном формате (приоритеты и категории - отдельными списками без повторов)
+    @Cacheable(cacheNames = CacheConfig.TASKS_COMPACT, key = "#userId")
+    public TaskListCompact findAllCompact(String userId) {
+        return compact(repository.findSlimByUserId(userId));
+    }
+
+    // при изменении задачи меняется и статистика категорий (триггеры), поэтому сбрасываются все кеши пользователя
     public Task add(Task task) {
-        return repository.save(task); // метод save обновляет или создает новый объект, если его не было
+        userCacheVersions.evictUser(task.getUserId());
+        Task saved = repository.save(task); // метод save обновляет или создает новый объект, если его не было
+        statCounters.taskChanged(null, TaskState.of(saved));
+        return saved;
     }
 
     public Task update(Task task) {
-        return repository.save(task); // метод save обновляет или создает новый объект, если его не было
+        // для статистики нужно состояние задачи до изменения
+        Task current = repository.findById(task.getId()).orElse(null);
+        TaskState before = TaskState.of(current);
+        // владелец - из БД, а не из запроса (userId в запросе может быть пустым или чужим)
+        if (current != null) {
+            userCacheVersions.evictUser(current.getUserId(), Task.class, task.getId());
+        }
+        if (task.getUserId() != null && (current == null || !task.getUserId().equals(current.getUserId()))) {
+            userCacheVersions.evictUser(task.getUserId(), Task.class, task.getId()); // задача переходит к другому пользователю
+        }
+        Task saved = repository.save(task); // метод save обновляет или создает новый объект, если его не было
+        statCounters.taskChanged(before, TaskState.of(saved));
+        return saved;
     }
 
     public void deleteById(Long id) {
+        // чтобы сбросить кеш и изменить статистику, нужно знать владельца задачи
+        repository.findById(id).ifPresent(task -> {
+            userCacheVersions.evictUser(task.getUserId(), Task.class, id);
+            statCounters.taskChanged(TaskState.of(task), null);
+        });
         repository.deleteById(id);
     }
 
-    @Cacheable(cacheNames = "tasks")
+    // пакетное изменение задач пользователя в одной транзакции
+    // insert и update отправляются в БД пачками (hibernate.jdbc.batch_size), а удаление выполняется одним запросом
+    public TaskBatchResult applyBatch(String userId, List<Task> creates, List<Task> updates, List<Long> deletes) {
+
+        creates.forEach(task -> task.setUserId(userId));
+        List<Task> created = repository.saveAll(creates);
+        created.forEach(task -> statCounters.taskChanged(null, TaskState.of(task)));
+
+        int updated = 0;
+
+        if (!updates.isEmpty()) {
+            // загружаем все изменяемые задачи одним запросом (только задачи этого пользователя)
+            Map<Long, Task> existing = repository.findByUserIdAndIdIn(userId, updates.stream().map(Task::getId).toList())
+                    .stream().collect(Collectors.toMap(Task::getId, Function.identity()));
+
+            for (Task task : updates) {
+                Task current = existing.get(task.getId());
+                if (current == null) {
+                    continue; // задача не найдена или принадлежит другому пользователю
+                }
+                TaskState before = TaskState.of(current);
+                // изменения сохранятся автоматически при завершении транзакции
+                current.setTitle(task.getTitle());
+                current.setCompleted(task.getCompleted());
+                current.setTaskDate(task.getTaskDate());
+                current.setPriority(task.getPriority());
+                current.setCategory(task.getCategory());
+                statCounters.taskChanged(before, TaskState.of(current));
+                updated++;
+                userCacheVersions.evictUser(userId, Task.class, current.getId());
+            }
+        }
+
+        int deleted = 0;
+
+        if (!deletes.isEmpty()) {
+            // для статистики нужно состояние удаляемых задач
+            repository.findByUserIdAndIdIn(userId, deletes).forEach(task -> statCounters.taskChanged(TaskState.of(task), null));
+            deleted = repository.deleteByUserIdAndIdIn(userId, deletes);
+            deletes.forEach(id -> userCacheVersions.evictUser(userId, Task.class, id));
+        }
+
+        userCacheVersions.evictUser(userId);
+
+        return new TaskBatchResult(created, updated, deleted);
+    }
+
+    // ключ кеша строит UserCacheVersions - в него входят все параметры поиска и версия данных пользователя
+    @Cacheable(cacheNames = CacheConfig.TASK_SEARCH, keyGenerator = "userCacheVersions")
     public Page<Task> findByParams(String text, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo, PageRequest paging) {
         return repository.findByParams(text, completed, priorityId, categoryId, userId, dateFrom, dateTo, paging);
     }
 
+    // то же, что findByParams, но без вложенных приоритетов и категорий (TaskSlim)
+    public Page<TaskSlim> findSlimByParams(String text, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo, PageRequest paging) {
+        return repository.findSlimByParams(text, completed, priorityId, categoryId, userId, dateFrom, dateTo, paging);
+    }
+
+    // то же, что findByParams, в компактном формате
+    @Cacheable(cacheNames = CacheConfig.TASK_SEARCH_COMPACT, keyGenerator = "userCacheVersions")
+    public TaskListCompact findByParamsCompact(String text, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo, PageRequest paging) {
+
+        Page<TaskSlim> page = repository.findSlimByParams(text, completed, priorityId, categoryId, userId, dateFrom, dateTo, paging);
+
+        TaskListCompact result = compact(page.getContent());
+        result.setTotalElements(page.getTotalElements());
+        result.setTotalPages(page.getTotalPages());
+        result.setPageNumber(page.getNumber());
+        result.setPageSize(page.getSize());
+
+        return result;
+    }
+
+    // задачи + приоритеты и категории, которые в них используются (каждый объект - один раз)
+    private TaskListCompact compact(List<TaskSlim> tasks) {
+
+        List<TaskListCompact.PriorityRef> priorities = taskReferences.priorities(tasks.stream().map(TaskSlim::getPriorityId).toList())
+                .stream()
+                .map(priority -> new TaskListCompact.PriorityRef(priority.getId(), priority.getTitle(), priority.getColor()))
+                .toList();
+
+        List<TaskListCompact.CategoryRef> categories = taskReferences.categories(tasks.stream().map(TaskSlim::getCategoryId).toList())
+                .stream()
+                .map(category -> new TaskListCompact.CategoryRef(category.getId(), category.getTitle()))
+                .toList();
+
+        return new TaskListCompact(tasks, priorities, categories, null, null, null, null, null, null);
+    }
+
+    // постраничность по курсору: выбираем pageSize+1 записей после курсора, лишняя запись показывает, есть ли следующая страница
+    // в отличие от findByParams не используется OFFSET и не выполняется запрос count
+    public TaskSlice findByParamsAfter(String text, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo,
+                                       String sortColumn, Sort.Direction direction, int pageSize, String pageToken, boolean withTotal) {
+
+        if (pageSize < 1) { // курсор следующей страницы берется из последней записи страницы
+            throw new IllegalArgumentException("pageSize must be positive");
+        }
+
+        Specification<Task> filter = TaskSpecification.byParams(text, completed, priorityId, categoryId, userId, dateFrom, dateTo);
+        Specification<Task> spec = filter;
+
+        if (pageToken != null && !pageToken.isBlank()) {
+            TaskCursor cursor = TaskCursor.decode(pageToken);
+
+            if (!cursor.getSortColumn().equals(sortColumn)) {
+                throw new IllegalArgumentException("page token was created for sort column " + cursor.getSortColumn());
+            }
+
+            spec = filter.and(TaskSpecification.after(cursor, direction));
+        }
+
+        Sort sort = Sort.by(direction, sortColumn, TaskCursor.ID_COLUMN);
+
+        List<Task> rows = repository.findBy(spec, query -> query.sortBy(sort).limit(pageSize + 1).all());
+
+        boolean hasNext = rows.size() > pageSize;
+        List<Task> content = hasNext ? rows.subList(0, pageSize) : rows;
+
+        String nextPageToken = hasNext ? TaskCursor.of(content.get(content.size() - 1), sortColumn).encode() : null;
+
+        // общее количество считаем только по запросу
+        Long total = withTotal ? repository.count(filter) : null;
+
+        return new TaskSlice(content, hasNext, nextPageToken, total);
+    }
+
+    // то же, что findByParamsAfter, в компактном формате (totalElements - только при withTotal)
+    public TaskListCompact findByParamsAfterCompact(String text, Boolean completed, Long priorityId, Long categoryId, String userId, Date dateFrom, Date dateTo,
+                                                    String sortColumn, Sort.Direction direction, int pageSize, String pageToken, boolean withTotal) {
+
+        TaskSlice slice = findByParamsAfter(text, completed, priorityId, categoryId, userId, dateFrom, dateTo,
+                sortColumn, direction, pageSize, pageToken, withTotal);
+
+        List<TaskSlim> tasks = slice.getContent().stream()
+                .map(task -> new TaskSlim(task.getId(), task.getTitle(), task.getCompleted(), task.getTaskDate(),
+                        task.getPriority() != null ? task.getPriority().getId() : null,
+                        task.getCategory() != null ? task.getCategory().getId() : null))
+                .toList();
+
+        TaskListCompact result = compact(tasks);
+        result.setTotalElements(slice.getTotalElements());
+        result.setPageSize(pageSize);
+        result.setHasNext(slice.isHasNext());
+        result.setNextPageToken(slice.getNextPageToken());
+
+        return result;
+    }
+
+    // поиск по названию с ранжированием (начало названия, вхождение, похожие названия)
+    public List<Task> findByTitleRanked(String title, String userId, int limit) {
+        return repository.findByTitleRanked(title, LikePattern.escape(title), userId, limit);
+    }
+
     public Task findById(Long id) {
         return repository.findById(id).get(); // т.к. возвращается Optional - можно получить объект методом get()
     }
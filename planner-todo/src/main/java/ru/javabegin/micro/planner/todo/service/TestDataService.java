@@ -1,88 +1,274 @@
 package ru.javabegin.micro.planner.todo.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import ru.javabegin.micro.planner.entity.Category;
-import ru.javabegin.micro.planner.entity.Priority;
-import ru.javabegin.micro.planner.entity.Task;
-import ru.javabegin.micro.planner.utils.rest.webclient.UserWebClientBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javabegin.micro.planner.todo.dto.SeedRequest;
+import ru.javabegin.micro.planner.todo.seed.SeedProgress;
+import ru.javabegin.micro.planner.todo.seed.SeedTemplate;
+import ru.javabegin.micro.planner.todo.seed.SeedWriter;
 
-import java.util.Calendar;
-import java.util.Date;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+
+начальные данные для новых пользователей и заполнение БД тестовыми данными для нагрузочного тестирования
+
+что создается для пользователя - задается шаблоном (resources/seed/<name>.json, см. SeedTemplate)
+- для новых пользователей используется шаблон planner.seed.default-template (в той же транзакции, что и обработка сообщения)
+- startSeed заполняет данными сразу много пользователей в фоне: пользователи делятся на части по planner.seed.users-per-transaction,
+  каждая часть записывается в своей транзакции, части выполняются параллельно (planner.seed.parallelism)
+
+ */
 
 @Service
+@Log
 public class TestDataService {
 
-    private final TaskService taskService;
-    private final PriorityService priorityService;
-    private final CategoryService categoryService;
+    @Value("${planner.seed.default-template:default}")
+    private String defaultTemplate;
+
+    @Value("${planner.seed.users-per-transaction:20}")
+    private int usersPerTransaction;
+
+    @Value("${planner.seed.parallelism:4}")
+    private int parallelism;
+
+    @Value("${planner.seed.progress-interval:5s}")
+    private Duration progressInterval; // как часто выводить ход заполнения в лог
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SeedWriter seedWriter;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, SeedTemplate> templates = new ConcurrentHashMap<>(); // уже прочитанные шаблоны
+
+    private final AtomicReference<SeedProgress> currentSeed = new AtomicReference<>(); // последнее (или текущее) заполнение
+
+    private final ExecutorService seedExecutor = Executors.newSingleThreadExecutor(); // одновременно выполняется только одно заполнение
 
     // используем автоматическое внедрение экземпляра класса через конструктор
     // не используем @Autowired ля переменной класса, т.к. "Field injection is not recommended "
-    public TestDataService(TaskService taskService, PriorityService priorityService, CategoryService categoryService) {
-        this.taskService = taskService;
-        this.priorityService = priorityService;
-        this.categoryService = categoryService;
+    public TestDataService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, SeedWriter seedWriter, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.seedWriter = seedWriter;
+        this.objectMapper = objectMapper;
     }
 
-    public void initTestData(String userId){
-        Priority prior1 = new Priority();
-        prior1.setColor("#fff");
-        prior1.setTitle("Важный");
-        prior1.setUserId(userId);
-
-        Priority prior2 = new Priority();
-        prior2.setColor("#ffе");
-        prior2.setTitle("Неважный");
-        prior2.setUserId(userId);
-
-        priorityService.add(prior1);
-        priorityService.add(prior2);
-
-
-        Category cat1 = new Category();
-        cat1.setTitle("Работа");
-        cat1.setUserId(userId);
-
-        Category cat2 = new Category();
-        cat2.setTitle("Семья");
-        cat2.setUserId(userId);
-
-        categoryService.add(cat1);
-        categoryService.add(cat2);
-
-        // завтра
-        Date tomorrow = new Date();
-        Calendar c = Calendar.getInstance();
-        c.setTime(tomorrow);
-        c.add(Calendar.DATE, 1);
-        tomorrow = c.getTime();
-
-        // неделя
-        Date oneWeek = new Date();
-        Calendar c2 = Calendar.getInstance();
-        c2.setTime(oneWeek);
-        c2.add(Calendar.DATE, 7);
-        oneWeek = c2.getTime();
-
-        Task task1 = new Task();
-        task1.setTitle("Покушать");
-        task1.setCategory(cat1);
-        task1.setPriority(prior1);
-        task1.setCompleted(true);
-        task1.setTaskDate(tomorrow);
-        task1.setUserId(userId);
-
-        Task task2 = new Task();
-        task2.setTitle("Поспать");
-        task2.setCategory(cat2);
-        task2.setCompleted(false);
-        task2.setPriority(prior2);
-        task2.setTaskDate(oneWeek);
-        task2.setUserId(userId);
-
-
-        taskService.add(task1);
-        taskService.add(task2);
+    @PreDestroy
+    public void stop() {
+        seedExecutor.shutdownNow();
+    }
 
+    @Transactional
+    public void initTestData(String userId) {
+        initTestData(List.of(userId));
     }
+
+    // создать данные для пользователей, у которых их еще нет (повторное сообщение о том же пользователе ничего не создает)
+    // возвращает количество пользователей, для которых созданы данные
+    @Transactional
+    public int initTestData(Collection<String> userIds) {
+
+        List<String> users = markInitialized(userIds);
+
+        seedWriter.write(users, template(defaultTemplate));
+
+        return users.size();
+    }
+
+    // пачка сообщений о новых пользователях (newUserActionBatchConsume): сначала вся пачка в одной транзакции,
+    // если она не удалась - каждый пользователь в своей транзакции, чтобы один ошибочный пользователь
+    // не откатывал и не возвращал в очередь всю пачку (пользователи с ошибкой пропускаются, ошибка - в логе)
+    // если не удалось ни для одного пользователя (например, БД недоступна) - исключение, пачка будет доставлена повторно
+    public int initTestDataBatch(List<String> userIds) {
+
+        List<String> ids = userIds.stream().filter(id -> id != null && !id.isBlank()).toList();
+
+        try {
+            return initInTransaction(ids);
+        } catch (RuntimeException e) {
+            log.warning("test data batch of " + ids.size() + " users failed, retrying one by one: " + e.getMessage());
+        }
+
+        int created = 0;
+        RuntimeException lastError = null;
+
+        for (String userId : ids) {
+            try {
+                created += initInTransaction(List.of(userId));
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                log.warning("test data not created for user " + userId + ": " + e.getMessage());
+                lastError = e;
+            }
+        }
+
+        if (lastError != null && created == 0) {
+            throw lastError;
+        }
+
+        return created;
+    }
+
+    private int initInTransaction(List<String> userIds) {
+
+        Integer created = transactionTemplate.execute(status -> {
+            List<String> users = markInitialized(userIds);
+            seedWriter.write(users, template(defaultTemplate));
+            return users.size();
+        });
+
+        return created != null ? created : 0;
+    }
+
+    // запустить заполнение в фоне - возвращает null, если другое заполнение еще не закончилось
+    public SeedProgress startSeed(SeedRequest request) {
+
+        SeedTemplate template = template(request.getTemplate() != null ? request.getTemplate() : defaultTemplate);
+
+        List<String> userIds = new ArrayList<>(new LinkedHashSet<>(request.getUserIds()));
+
+        if (request.getUserCount() != null) {
+            for (int i = 1; i <= request.getUserCount(); i++) {
+                userIds.add(request.getUserPrefix() + i);
+            }
+        }
+
+        SeedProgress progress = new SeedProgress(request.getTemplate() != null ? request.getTemplate() : defaultTemplate,
+                userIds.size(), (long) userIds.size() * template.tasksPerUser());
+
+        SeedProgress previous = currentSeed.get();
+
+        if (previous != null && previous.isRunning() || !currentSeed.compareAndSet(previous, progress)) {
+            return null;
+        }
+
+        seedExecutor.execute(() -> seed(userIds, template, progress));
+
+        return progress;
+    }
+
+    // ход последнего заполнения (null - заполнение еще не запускалось)
+    public SeedProgress getProgress() {
+        return currentSeed.get();
+    }
+
+    private void seed(List<String> userIds, SeedTemplate template, SeedProgress progress) {
+
+        log.info("started " + progress);
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        ScheduledFuture<?> report = reporter.scheduleAtFixedRate(() -> log.info(progress.toString()),
+                progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        String error = null;
+
+        try {
+            List<Future<?>> chunks = new ArrayList<>();
+
+            for (int from = 0; from < userIds.size(); from += usersPerTransaction) {
+
+                List<String> chunk = userIds.subList(from, Math.min(from + usersPerTransaction, userIds.size()));
+
+                chunks.add(workers.submit(() -> {
+                    // пользователи, у которых данные уже есть, пропускаются (как и для новых пользователей)
+                    Long tasks = transactionTemplate.execute(status -> seedWriter.write(markInitialized(chunk), template));
+                    progress.chunkDone(chunk.size(), tasks != null ? tasks : 0);
+                }));
+            }
+
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "interrupted";
+        } catch (Exception e) {
+            e.printStackTrace();
+            error = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+        } finally {
+            workers.shutdownNow(); // при ошибке оставшиеся части не выполняются (уже записанные части остаются в БД)
+            report.cancel(false);
+            reporter.shutdown();
+            progress.finish(error);
+        }
+
+        log.info("finished " + progress);
+    }
+
+    // шаблон читается из resources/seed/<name>.json один раз
+    private SeedTemplate template(String name) {
+
+        if (!name.matches("[a-zA-Z0-9_-]+")) {
+            throw new IllegalArgumentException("wrong template name: " + name);
+        }
+
+        return templates.computeIfAbsent(name, key -> {
+
+            ClassPathResource resource = new ClassPathResource("seed/" + key + ".json");
+
+            if (!resource.exists()) {
+                throw new IllegalArgumentException("template not found: " + key);
+            }
+
+            try (InputStream in = resource.getInputStream()) {
+                SeedTemplate template = objectMapper.readValue(in, SeedTemplate.class);
+                template.validate();
+                return template;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // отметить пользователей как обработанных - возвращаются только те, кого еще не было
+    // (если то же сообщение одновременно обрабатывается в другой транзакции - insert дождется ее завершения)
+    private List<String> markInitialized(Collection<String> userIds) {
+
+        List<String> ids = new ArrayList<>(new LinkedHashSet<>(userIds));
+
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        return jdbcTemplate.queryForList(
+                "insert into todo.test_data_init (user_id) values " + rows(ids.size()) +
+                        " on conflict do nothing returning user_id",
+                String.class, ids.toArray());
+    }
+
+    // строка вида (?), (?) для многострочного insert
+    private static String rows(int rows) {
+        return String.join(", ", Collections.nCopies(rows, "(?)"));
+    }
+
 }
@@ -0,0 +1,31 @@
+-- счетчики статистики (stat, category) теперь изменяет приложение (StatCounters), а не триггеры
+-- выполняется один раз на БД planner_todo
+
+-- отключаем триггеры таблицы задач, которые пересчитывали stat и category (иначе изменения будут учтены дважды)
+-- только их, по имени: остальные триггеры todo.task продолжают работать
+-- триггеры счетчиков находятся по тексту функции (update/insert в todo.stat или todo.category)
+do
+$$
+    declare
+        counter_trigger record;
+    begin
+        for counter_trigger in
+            select t.tgname
+            from pg_trigger t
+                     join pg_proc p on p.oid = t.tgfoid
+            where t.tgrelid = 'todo.task'::regclass
+              and not t.tgisinternal
+              and p.prosrc ~* '\m(update|insert\s+into)\s+("?todo"?\.)?"?(stat|category)"?\M'
+            loop
+                execute format('alter table todo.task disable trigger %I', counter_trigger.tgname);
+                raise notice 'disabled trigger %', counter_trigger.tgname;
+            end loop;
+    end
+$$;
+
+-- журналы изменений счетчиков, которые уже записаны в БД (чтобы после падения приложения не применить их повторно)
+create table if not exists todo.stat_flush_log
+(
+    journal_id varchar(64) primary key,
+    flushed_at timestamp   not null default now()
+);
@@ -0,0 +1,4 @@
+-- id задач выдаются hibernate пачками по 50 (Task: @SequenceGenerator allocationSize = 50)
+-- шаг последовательности должен совпадать с allocationSize, иначе id будут повторяться
+-- выполняется один раз на БД planner_todo
+alter sequence todo.task_id_seq increment by 50;
@@ -0,0 +1,9 @@
+-- пользователи, для которых уже созданы начальные данные (TestDataService)
+-- при повторной доставке сообщения о новом пользователе данные не создаются второй раз
+-- выполняется один раз на БД planner_todo
+
+create table if not exists todo.test_data_init
+(
+    user_id    varchar(64) primary key,
+    created_at timestamp   not null default now()
+);
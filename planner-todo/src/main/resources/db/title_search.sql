@@ -0,0 +1,21 @@
+-- индексы для поиска по названию (задачи, категории, приоритеты)
+-- выполняется один раз на БД planner_todo (так же, как и триггеры для статистики)
+
+-- триграммы позволяют использовать индекс для условий like '%текст%' и нечеткого поиска (оператор %)
+create extension if not exists pg_trgm;
+
+-- индекс по (user_id, lower(title)) - поиск всегда идет внутри задач одного пользователя
+create extension if not exists btree_gin;
+
+create index if not exists task_user_title_trgm_idx
+    on todo.task using gin (user_id, lower(title) gin_trgm_ops);
+
+create index if not exists category_user_title_trgm_idx
+    on todo.category using gin (user_id, lower(title) gin_trgm_ops);
+
+create index if not exists priority_user_title_trgm_idx
+    on todo.priority using gin (user_id, lower(title) gin_trgm_ops);
+
+-- для поиска по началу названия (like 'текст%')
+create index if not exists task_user_title_prefix_idx
+    on todo.task (user_id, lower(title) text_pattern_ops);
@@ -0,0 +1,89 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+/*
+
+подключение к БД planner_todo для замеров производительности (gradle benchmark)
+
+нужна реальная БД PostgreSQL со схемой todo (db/*.sql) - адрес и пользователь задаются переменными окружения
+PLANNER_BENCHMARK_DB_URL, PLANNER_BENCHMARK_DB_USER, PLANNER_BENCHMARK_DB_PASSWORD
+все данные замеров создаются для пользователей с префиксом USER_PREFIX и удаляются после замера
+
+ */
+
+public class BenchmarkDatabase {
+
+    public static final String URL_VARIABLE = "PLANNER_BENCHMARK_DB_URL";
+
+    public static final String USER_PREFIX = "benchmark-user-";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public BenchmarkDatabase() {
+        dataSource = new DriverManagerDataSource(System.getenv(URL_VARIABLE),
+                System.getenv("PLANNER_BENCHMARK_DB_USER"), System.getenv("PLANNER_BENCHMARK_DB_PASSWORD"));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    public JdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    // задачи пользователя для замеров запросов: 5 приоритетов, 10 категорий и count задач (одним запросом insert ... select)
+    public void insertTasks(String userId, int count) {
+
+        jdbcTemplate.update("insert into todo.priority (title, color, user_id) select 'priority ' || g, '#ffffff', ? from generate_series(1, 5) g", userId);
+        jdbcTemplate.update("insert into todo.category (title, completed_count, uncompleted_count, user_id) select 'category ' || g, 0, 0, ? from generate_series(1, 10) g", userId);
+
+        jdbcTemplate.update("with p as (select array_agg(id order by id) ids from todo.priority where user_id = ?), " +
+                "c as (select array_agg(id order by id) ids from todo.category where user_id = ?) " +
+                "insert into todo.task (id, title, completed, task_date, priority_id, category_id, user_id) " +
+                "select nextval('todo.task_id_seq'), 'task ' || lpad(g::text, 7, '0'), g % 2, now() - g * interval '1 minute', " +
+                "p.ids[1 + g % 5], c.ids[1 + g % 10], ? from generate_series(1, ?) g, p, c",
+                userId, userId, userId, count);
+
+        jdbcTemplate.execute("analyze todo.task");
+    }
+
+    // удалить все данные пользователей замеров
+    public void cleanup() {
+        String prefix = USER_PREFIX + "%";
+        jdbcTemplate.update("delete from todo.task where user_id like ?", prefix);
+        jdbcTemplate.update("delete from todo.category where user_id like ?", prefix);
+        jdbcTemplate.update("delete from todo.priority where user_id like ?", prefix);
+        jdbcTemplate.update("delete from todo.test_data_init where user_id like ?", prefix);
+    }
+
+    // время выполнения в мс (среднее по repeat запускам после warmup прогревочных)
+    public static double measure(int warmup, int repeat, Runnable action) {
+
+        for (int i = 0; i < warmup; i++) {
+            action.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            action.run();
+        }
+
+        return (System.nanoTime() - start) / 1_000_000.0 / repeat;
+    }
+
+}
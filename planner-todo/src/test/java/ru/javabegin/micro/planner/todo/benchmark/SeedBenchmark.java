@@ -0,0 +1,119 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.dto.SeedRequest;
+import ru.javabegin.micro.planner.todo.repo.TaskIdAllocator;
+import ru.javabegin.micro.planner.todo.seed.SeedProgress;
+import ru.javabegin.micro.planner.todo.seed.SeedWriter;
+import ru.javabegin.micro.planner.todo.service.TestDataService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+// заполнение 1 млн задач (200 пользователей по шаблону load - 5000 задач) должно занимать минуты, а не часы;
+// данные новых пользователей (шаблон default): пачка сообщений (initTestDataBatch) и каждое сообщение отдельно - пользователей в секунду
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = BenchmarkDatabase.URL_VARIABLE, matches = ".+")
+class SeedBenchmark {
+
+    private static final int USERS = 200;
+    private static final Duration MAX_DURATION = Duration.ofMinutes(5);
+    private static final int NEW_USERS = 1000;
+    private static final int MESSAGE_BATCH = 100; // как spring.cloud.stream.rabbit...consumer.batch-size
+
+    private BenchmarkDatabase database;
+    private TestDataService testDataService;
+
+    @BeforeEach
+    void setUp() {
+        database = new BenchmarkDatabase();
+        database.cleanup();
+
+        SeedWriter seedWriter = new SeedWriter(database.getJdbcTemplate(), database.getDataSource(),
+                mock(StatCounters.class), mock(UserCacheVersions.class), new TaskIdAllocator(database.getJdbcTemplate()));
+        ReflectionTestUtils.setField(seedWriter, "insertMode", System.getProperty("planner.seed.insert-mode", "copy"));
+
+        testDataService = new TestDataService(database.getJdbcTemplate(), database.getTransactionTemplate(), seedWriter, new ObjectMapper());
+        ReflectionTestUtils.setField(testDataService, "defaultTemplate", "default");
+        ReflectionTestUtils.setField(testDataService, "usersPerTransaction", 20);
+        ReflectionTestUtils.setField(testDataService, "parallelism", 4);
+        ReflectionTestUtils.setField(testDataService, "progressInterval", Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        testDataService.stop();
+        database.cleanup();
+    }
+
+    @Test
+    void seedMillionTasks() throws InterruptedException {
+
+        SeedRequest request = new SeedRequest();
+        request.setTemplate("load");
+        request.setUserCount(USERS);
+        request.setUserPrefix(BenchmarkDatabase.USER_PREFIX);
+
+        SeedProgress progress = testDataService.startSeed(request);
+
+        while (progress.isRunning()) {
+            Thread.sleep(500);
+        }
+
+        Duration duration = Duration.between(progress.getStartedAt(), progress.getFinishedAt());
+        System.out.println("seed benchmark: " + progress + ", " + duration.toMillis() + " ms");
+
+        assertNull(progress.getError());
+        assertEquals(1_000_000, progress.getTasksDone().get());
+        assertEquals(1_000_000L, database.getJdbcTemplate().queryForObject(
+                "select count(*) from todo.task where user_id like ?", Long.class, BenchmarkDatabase.USER_PREFIX + "%"));
+        assertTrue(duration.compareTo(MAX_DURATION) < 0, "seed took " + duration);
+    }
+
+    @Test
+    void batchedVersusPerMessage() {
+
+        List<String> users = new ArrayList<>(NEW_USERS);
+        for (int i = 0; i < NEW_USERS; i++) {
+            users.add(BenchmarkDatabase.USER_PREFIX + "message-" + i);
+        }
+
+        long start = System.nanoTime();
+        for (String userId : users) {
+            assertEquals(1, testDataService.initTestDataBatch(List.of(userId)));
+        }
+        double perMessageMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        database.cleanup();
+
+        start = System.nanoTime();
+        for (int i = 0; i < NEW_USERS; i += MESSAGE_BATCH) {
+            assertEquals(MESSAGE_BATCH, testDataService.initTestDataBatch(users.subList(i, i + MESSAGE_BATCH)));
+        }
+        double batchedMs = (System.nanoTime() - start) / 1_000_000.0;
+
+        double perMessageUsers = NEW_USERS * 1000 / perMessageMs;
+        double batchedUsers = NEW_USERS * 1000 / batchedMs;
+
+        System.out.printf("new user seed benchmark (%d users): batched by %d %.0f users/s (%.0f ms), per message %.0f users/s (%.0f ms)%n",
+                NEW_USERS, MESSAGE_BATCH, batchedUsers, batchedMs, perMessageUsers, perMessageMs);
+
+        // одна транзакция и одна запись задач на пачку вместо транзакции на каждого пользователя
+        assertTrue(batchedUsers > perMessageUsers, "batched " + batchedUsers + " users/s, per message " + perMessageUsers + " users/s");
+    }
+
+}
@@ -0,0 +1,131 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.dto.TaskBatchResult;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.planner.todo.service.TaskService;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// пакетное изменение задач (POST /task/batch, TaskService.applyBatch) и те же изменения отдельными вызовами add/update/deleteById -
+// строк в секунду; в каждой итерации ROWS новых задач, ROWS изменений и удаление задач, созданных в прошлой итерации
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = BenchmarkDatabase.URL_VARIABLE, matches = ".+")
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=${PLANNER_BENCHMARK_DB_URL}",
+        "spring.datasource.username=${PLANNER_BENCHMARK_DB_USER:}",
+        "spring.datasource.password=${PLANNER_BENCHMARK_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Import(TaskService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // транзакции открывает сам TaskService (пакет) или репозиторий (каждый вызов)
+class TaskBatchBenchmark {
+
+    private static final String USER_ID = BenchmarkDatabase.USER_PREFIX + "batch";
+    private static final int TASKS = 10_000;
+    private static final int ROWS = 100;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @MockBean
+    private UserCacheVersions userCacheVersions;
+
+    @MockBean
+    private StatCounters statCounters;
+
+    private BenchmarkDatabase database;
+    private List<Task> toUpdate;
+
+    @BeforeEach
+    void setUp() {
+        database = new BenchmarkDatabase();
+        database.cleanup();
+        database.insertTasks(USER_ID, TASKS);
+
+        toUpdate = taskRepository.findByUserIdOrderByTitleAsc(USER_ID).subList(0, ROWS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.cleanup();
+    }
+
+    @Test
+    void batchVersusPerRow() {
+
+        List<Long> created = new ArrayList<>(); // задачи прошлой итерации - удаляются в следующей
+        int[] iteration = {0};
+
+        double batchMs = BenchmarkDatabase.measure(5, 50, () -> {
+            TaskBatchResult result = taskService.applyBatch(USER_ID, newTasks(), updates(iteration[0]++), List.copyOf(created));
+            assertEquals(ROWS, result.getUpdated());
+            created.clear();
+            result.getCreated().forEach(task -> created.add(task.getId()));
+        });
+
+        double perRowMs = BenchmarkDatabase.measure(5, 50, () -> {
+            List<Long> deletes = List.copyOf(created);
+            created.clear();
+            newTasks().forEach(task -> created.add(taskService.add(task).getId()));
+            updates(iteration[0]++).forEach(taskService::update);
+            deletes.forEach(taskService::deleteById);
+        });
+
+        double batchRows = 3 * ROWS * 1000 / batchMs;
+        double perRowRows = 3 * ROWS * 1000 / perRowMs;
+
+        System.out.printf("task batch benchmark (%d creates + %d updates + %d deletes): batch %.0f rows/s (%.2f ms), per row %.0f rows/s (%.2f ms)%n",
+                ROWS, ROWS, ROWS, batchRows, batchMs, perRowRows, perRowMs);
+
+        // одна транзакция и пачки insert/update вместо транзакции и нескольких запросов на каждую строку
+        assertTrue(batchRows > perRowRows, "batch " + batchRows + " rows/s, per row " + perRowRows + " rows/s");
+    }
+
+    private static List<Task> newTasks() {
+
+        List<Task> tasks = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            tasks.add(new Task(null, "new " + i, false, new Date(), null, null, USER_ID));
+        }
+        return tasks;
+    }
+
+    // в каждой итерации completed меняется, чтобы update действительно изменял строки
+    private List<Task> updates(int iteration) {
+
+        List<Task> tasks = new ArrayList<>(ROWS);
+        for (Task task : toUpdate) {
+            tasks.add(new Task(task.getId(), task.getTitle(), iteration % 2 == 0, task.getTaskDate(), null, null, USER_ID));
+        }
+        return tasks;
+    }
+
+}
@@ -0,0 +1,108 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.todo.dto.TaskSlim;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.planner.todo.service.TaskReferences;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// страница задач: полные объекты Task (findByParams) и облегченные TaskSlim + приоритеты и категории из кеша 2 уровня
+// на 100 000 задач пользователя - время и количество SQL запросов на страницу
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = BenchmarkDatabase.URL_VARIABLE, matches = ".+")
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=${PLANNER_BENCHMARK_DB_URL}",
+        "spring.datasource.username=${PLANNER_BENCHMARK_DB_USER:}",
+        "spring.datasource.password=${PLANNER_BENCHMARK_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TaskPageBenchmark {
+
+    private static final String USER_ID = BenchmarkDatabase.USER_PREFIX + "pages";
+    private static final int TASKS = 100_000;
+    private static final int PAGE_SIZE = 100;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private TaskReferences taskReferences;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private BenchmarkDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        database = new BenchmarkDatabase();
+        database.cleanup();
+        database.insertTasks(USER_ID, TASKS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.cleanup();
+    }
+
+    @Test
+    void entityVersusSlimPage() {
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // каждая итерация - следующая страница, чтобы не читать одни и те же строки
+        int[] page = {0};
+
+        statistics.clear();
+        double entityMs = BenchmarkDatabase.measure(20, 200, () -> {
+            Page<?> result = taskRepository.findByParams(null, null, null, null, USER_ID, null, null, nextPage(page));
+            assertEquals(PAGE_SIZE, result.getContent().size());
+        });
+        double entityStatements = statistics.getPrepareStatementCount() / 220.0;
+
+        page[0] = 0;
+        statistics.clear();
+        double slimMs = BenchmarkDatabase.measure(20, 200, () -> {
+            Page<TaskSlim> result = taskRepository.findSlimByParams(null, null, null, null, USER_ID, null, null, nextPage(page));
+            taskReferences.priorities(result.getContent().stream().map(TaskSlim::getPriorityId).toList());
+            taskReferences.categories(result.getContent().stream().map(TaskSlim::getCategoryId).toList());
+        });
+        double slimStatements = statistics.getPrepareStatementCount() / 220.0;
+
+        System.out.printf("task page benchmark (%d tasks, page %d): entity %.2f ms, %.2f statements; slim %.2f ms, %.2f statements%n",
+                TASKS, PAGE_SIZE, entityMs, entityStatements, slimMs, slimStatements);
+
+        // после прогрева приоритеты и категории берутся из кеша 2 уровня - на страницу только задачи и count
+        assertTrue(slimStatements <= 2.1, "slim statements per page: " + slimStatements);
+        assertTrue(entityStatements <= 4, "entity statements per page: " + entityStatements);
+    }
+
+    private static PageRequest nextPage(int[] page) {
+        return PageRequest.of(page[0]++ % (TASKS / PAGE_SIZE), PAGE_SIZE, Sort.by("title"));
+    }
+
+}
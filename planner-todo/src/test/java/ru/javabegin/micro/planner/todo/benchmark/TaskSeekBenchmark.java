@@ -0,0 +1,106 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.planner.todo.repo.TaskSpecification;
+import ru.javabegin.micro.planner.todo.search.TaskCursor;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// страница 500 (по 100 задач) из 100 000 задач пользователя: OFFSET (findByParams) и курсор (как TaskService.findByParamsAfter)
+// обе выборки должны вернуть одни и те же задачи, курсор - без чтения 49 900 предыдущих строк и без count
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = BenchmarkDatabase.URL_VARIABLE, matches = ".+")
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=${PLANNER_BENCHMARK_DB_URL}",
+        "spring.datasource.username=${PLANNER_BENCHMARK_DB_USER:}",
+        "spring.datasource.password=${PLANNER_BENCHMARK_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TaskSeekBenchmark {
+
+    private static final String USER_ID = BenchmarkDatabase.USER_PREFIX + "seek";
+    private static final int TASKS = 100_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE = 500; // номер страницы с 1
+
+    private static final String SORT_COLUMN = "taskDate";
+    private static final Sort SORT = Sort.by(Sort.Direction.ASC, SORT_COLUMN, TaskCursor.ID_COLUMN);
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    private BenchmarkDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        database = new BenchmarkDatabase();
+        database.cleanup();
+        database.insertTasks(USER_ID, TASKS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.cleanup();
+    }
+
+    @Test
+    void offsetVersusSeekPage() {
+
+        PageRequest offsetPage = PageRequest.of(PAGE - 1, PAGE_SIZE, SORT);
+
+        // курсор - последняя задача предыдущей страницы (frontend получает его в nextPageToken)
+        Task previousLast = taskRepository.findByParams(null, null, null, null, USER_ID, null, null,
+                PageRequest.of(PAGE - 2, PAGE_SIZE, SORT)).getContent().get(PAGE_SIZE - 1);
+        TaskCursor cursor = TaskCursor.decode(TaskCursor.of(previousLast, SORT_COLUMN).encode());
+
+        Specification<Task> seek = TaskSpecification.byParams(null, null, null, null, USER_ID, null, null)
+                .and(TaskSpecification.after(cursor, Sort.Direction.ASC));
+
+        List<Long> offsetIds = taskRepository.findByParams(null, null, null, null, USER_ID, null, null, offsetPage)
+                .getContent().stream().map(Task::getId).toList();
+        List<Long> seekIds = taskRepository.findBy(seek, query -> query.sortBy(SORT).limit(PAGE_SIZE + 1).all())
+                .stream().limit(PAGE_SIZE).map(Task::getId).toList();
+
+        assertEquals(offsetIds, seekIds);
+
+        double offsetMs = BenchmarkDatabase.measure(10, 50, () -> {
+            Page<Task> result = taskRepository.findByParams(null, null, null, null, USER_ID, null, null, offsetPage);
+            assertEquals(PAGE_SIZE, result.getContent().size());
+        });
+
+        double seekMs = BenchmarkDatabase.measure(10, 50, () -> {
+            List<Task> result = taskRepository.findBy(seek, query -> query.sortBy(SORT).limit(PAGE_SIZE + 1).all());
+            assertEquals(PAGE_SIZE + 1, result.size());
+        });
+
+        System.out.printf("task seek benchmark (%d tasks, page %d of %d): offset %.2f ms, seek %.2f ms%n",
+                TASKS, PAGE, PAGE_SIZE, offsetMs, seekMs);
+
+        assertTrue(seekMs < offsetMs, "seek " + seekMs + " ms, offset " + offsetMs + " ms");
+    }
+
+}
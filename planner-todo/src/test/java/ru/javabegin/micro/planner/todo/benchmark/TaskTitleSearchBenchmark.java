@@ -0,0 +1,103 @@
+package ru.javabegin.micro.planner.todo.benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.repo.LikePattern;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// поиск по названию с ранжированием (TaskRepository.findByTitleRanked) среди 1 000 000 задач пользователя:
+// начало названия, вхождение и название с опечаткой - среднее время запроса
+// нужны индексы из db/title_search.sql
+@Tag("benchmark")
+@EnabledIfEnvironmentVariable(named = BenchmarkDatabase.URL_VARIABLE, matches = ".+")
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=${PLANNER_BENCHMARK_DB_URL}",
+        "spring.datasource.username=${PLANNER_BENCHMARK_DB_USER:}",
+        "spring.datasource.password=${PLANNER_BENCHMARK_DB_PASSWORD:}",
+        "spring.jpa.hibernate.ddl-auto=none"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TaskTitleSearchBenchmark {
+
+    private static final String USER_ID = BenchmarkDatabase.USER_PREFIX + "title";
+    private static final int TASKS = 1_000_000;
+    private static final int LIMIT = 20;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    private BenchmarkDatabase database;
+
+    @BeforeEach
+    void setUp() {
+
+        database = new BenchmarkDatabase();
+        database.cleanup();
+
+        // названия из разных слов (а не "task N"), чтобы начало названия совпадало только у части задач
+        database.getJdbcTemplate().update("insert into todo.task (id, title, completed, task_date, user_id) " +
+                "select nextval('todo.task_id_seq'), " +
+                "(array['купить', 'позвонить', 'написать', 'отправить', 'проверить', 'заказать', 'оплатить'])[1 + g % 7] || ' ' || " +
+                "(array['отчет', 'письмо', 'документы', 'билеты', 'счет', 'подарок', 'продукты', 'договор', 'презентацию', 'план'])[1 + g % 10] || ' ' || g, " +
+                "g % 2, now() - g * interval '1 minute', ? from generate_series(1, ?) g", USER_ID, TASKS);
+
+        database.getJdbcTemplate().execute("analyze todo.task");
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.cleanup();
+    }
+
+    @Test
+    void rankedTitleSearch() {
+
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("prefix", "оплатить договор 99");
+        queries.put("contains", "договор 12347");
+        queries.put("typo", "атправить билеты 773");
+
+        StringBuilder report = new StringBuilder();
+
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+
+            List<Task> found = search(query.getValue());
+            assertFalse(found.isEmpty(), query.getKey());
+
+            double ms = BenchmarkDatabase.measure(5, 20, () -> search(query.getValue()));
+
+            report.append(String.format(" %s %.2f ms;", query.getKey(), ms));
+        }
+
+        System.out.println("task title search benchmark (" + TASKS + " tasks, limit " + LIMIT + "):" + report);
+
+        // совпадения с начала названия - первыми
+        assertTrue(search("оплатить договор 99").get(0).getTitle().startsWith("оплатить договор 99"));
+    }
+
+    private List<Task> search(String title) {
+        return taskRepository.findByTitleRanked(title, LikePattern.escape(title), USER_ID, LIMIT);
+    }
+
+}
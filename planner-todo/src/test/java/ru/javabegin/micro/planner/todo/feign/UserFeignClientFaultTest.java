@@ -0,0 +1,217 @@
+package ru.javabegin.micro.planner.todo.feign;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.springboot3.bulkhead.autoconfigure.BulkheadAutoConfiguration;
+import io.github.resilience4j.springboot3.circuitbreaker.autoconfigure.CircuitBreakerAutoConfiguration;
+import io.github.resilience4j.springboot3.timelimiter.autoconfigure.TimeLimiterAutoConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.circuitbreaker.resilience4j.Resilience4JAutoConfiguration;
+import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.cloud.openfeign.FeignAutoConfiguration;
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.javabegin.micro.planner.entity.User;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// вызовы UserFeignClient при ошибках и задержках сервиса пользователей (заглушка MockWebServer):
+// circuit breaker, time limiter, повтор при временной ошибке и повторный (hedged) запрос - с настройками из application.properties, кроме заданных ниже
+@SpringBootTest(classes = UserFeignClientFaultTest.Config.class, webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.cloud.config.enabled=false",
+        "resilience4j.circuitbreaker.instances.UserFeignClientfindUserByIdLong.sliding-window-size=10",
+        "resilience4j.circuitbreaker.instances.UserFeignClientfindUserByIdLong.minimum-number-of-calls=5",
+        "resilience4j.circuitbreaker.instances.UserFeignClientfindUserByIdLong.wait-duration-in-open-state=1m",
+        "resilience4j.timelimiter.instances.UserFeignClientfindUserByIdLong.timeout-duration=1s",
+        "planner.feign.hedging.methods.UserFeignClientfindUserByIdLong.percentile=0.5",
+        "planner.feign.hedging.methods.UserFeignClientfindUserByIdLong.min-samples=20"
+})
+class UserFeignClientFaultTest {
+
+    private static final String METHOD = "UserFeignClientfindUserByIdLong";
+
+    private static final MockWebServer server = new MockWebServer();
+
+    // номер запроса к заглушке (с 1) -> ответ
+    private static volatile IntFunction<MockResponse> responses;
+    private static final AtomicInteger requests = new AtomicInteger();
+
+    // без @Configuration: класс задан в @SpringBootTest явно, а сканирование пакетов приложения
+    // (@SpringBootTest PlannerTodoApplicationTests) не должно находить его и регистрировать клиентов второй раз
+    @ImportAutoConfiguration({JacksonAutoConfiguration.class, HttpMessageConvertersAutoConfiguration.class,
+            CircuitBreakerAutoConfiguration.class, TimeLimiterAutoConfiguration.class, BulkheadAutoConfiguration.class,
+            Resilience4JAutoConfiguration.class, FeignAutoConfiguration.class})
+    @EnableFeignClients(clients = {UserFeignClient.class, UserFeignClientFaultTest.InitClient.class})
+    @Import({UserFeignClientFallback.class, FeignExceptionHandler.class, FeignRetryConfig.class, FeignHedgingCapability.class})
+    static class Config {
+
+        @Bean
+        public MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    // метод, который изменяет данные (не повторяется), без fallback
+    @FeignClient(name = "planner-users", contextId = "planner-users-init")
+    interface InitClient {
+
+        @PostMapping("/data/init")
+        ResponseEntity<Boolean> init(@RequestBody String userId);
+    }
+
+    @DynamicPropertySource
+    static void serviceUrl(DynamicPropertyRegistry registry) throws IOException {
+
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return responses.apply(requests.incrementAndGet());
+            }
+        });
+        server.start();
+
+        registry.add("spring.cloud.openfeign.client.config.planner-users.url", () -> server.url("/").toString());
+        registry.add("spring.cloud.openfeign.client.config.planner-users-init.url", () -> server.url("/").toString());
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Autowired
+    private UserFeignClient userFeignClient;
+
+    @Autowired
+    private InitClient initClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry.circuitBreaker(METHOD).reset();
+        requests.set(0);
+        responses = n -> user();
+    }
+
+    @Test
+    void openBreakerDoesNotCallService() {
+
+        responses = n -> new MockResponse().setResponseCode(500).setBody("error");
+
+        for (int i = 0; i < 5; i++) {
+            assertNull(userFeignClient.findUserById(1L)); // fallback
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreakerRegistry.circuitBreaker(METHOD).getState());
+        assertEquals(5, requests.get());
+
+        // пока breaker открыт - сразу fallback, без запросов к сервису
+        for (int i = 0; i < 5; i++) {
+            assertNull(userFeignClient.findUserById(1L));
+        }
+        assertEquals(5, requests.get());
+    }
+
+    @Test
+    void temporaryErrorRetriedOnlyForSafeMethods() {
+
+        responses = n -> n < 3 ? new MockResponse().setResponseCode(503) : user();
+
+        // findUserById только читает данные (planner.feign.retry.safe-methods) - третья попытка успешна
+        assertNotNull(userFeignClient.findUserById(1L));
+        assertEquals(3, requests.get());
+
+        requests.set(0);
+        responses = n -> new MockResponse().setResponseCode(503);
+
+        // POST /data/init не повторяется - ошибка после первой попытки
+        assertThrows(RuntimeException.class, () -> initClient.init("user"));
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void slowServiceReturnsFallbackAfterTimeLimit() {
+
+        responses = n -> user().setHeadersDelay(3, TimeUnit.SECONDS);
+
+        long start = System.nanoTime();
+        ResponseEntity<User> result = userFeignClient.findUserById(1L);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNull(result);
+        assertTrue(elapsedMs < 2500, "fallback after " + elapsedMs + " ms");
+    }
+
+    @Test
+    void slowAttemptIsHedged() throws InterruptedException {
+
+        // первый вызов может не уложиться в time limiter (создание клиента, загрузка классов) - результат не проверяется
+        userFeignClient.findUserById(1L);
+        circuitBreakerRegistry.circuitBreaker(METHOD).reset();
+
+        // замеров задержки меньше min-samples - медленный запрос не повторяется
+        int slow = requests.get() + 1;
+        responses = n -> n == slow ? user().setHeadersDelay(200, TimeUnit.MILLISECONDS) : user();
+        assertNotNull(userFeignClient.findUserById(1L));
+        assertEquals(slow, requests.get());
+
+        for (int i = 0; i < 20; i++) {
+            assertNotNull(userFeignClient.findUserById(1L));
+        }
+        Thread.sleep(1100); // задержка повторного запроса пересчитывается раз в секунду
+
+        // первая попытка ответит позже time limiter - ответ приходит от повторного запроса
+        int next = requests.get() + 1;
+        responses = n -> n == next ? user().setHeadersDelay(3, TimeUnit.SECONDS) : user();
+
+        long start = System.nanoTime();
+        ResponseEntity<User> result = userFeignClient.findUserById(1L);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNotNull(result); // не fallback
+        assertEquals("user", result.getBody().getUsername());
+        assertTrue(elapsedMs < 1000, "hedged response after " + elapsedMs + " ms");
+        assertEquals(1.0, meterRegistry.get("planner.feign.hedged").tag("method", METHOD).tag("result", "sent").counter().count());
+        assertEquals(1.0, meterRegistry.get("planner.feign.hedged").tag("method", METHOD).tag("result", "won").counter().count());
+    }
+
+    private static MockResponse user() {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"id\":1,\"email\":\"user@mail.ru\",\"username\":\"user\"}");
+    }
+
+}
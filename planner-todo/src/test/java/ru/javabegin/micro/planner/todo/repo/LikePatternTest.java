@@ -0,0 +1,23 @@
+package ru.javabegin.micro.planner.todo.repo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LikePatternTest {
+
+    @Test
+    void wildcardsAndEscapeCharEscaped() {
+        assertEquals("100\\% готово", LikePattern.escape("100% готово"));
+        assertEquals("my\\_task", LikePattern.escape("my_task"));
+        assertEquals("c:\\\\temp", LikePattern.escape("c:\\temp"));
+        assertEquals("\\%\\_\\\\", LikePattern.escape("%_\\"));
+    }
+
+    @Test
+    void plainTextUnchanged() {
+        assertEquals("оплатить договор 99", LikePattern.escape("оплатить договор 99"));
+        assertEquals("", LikePattern.escape(""));
+    }
+
+}
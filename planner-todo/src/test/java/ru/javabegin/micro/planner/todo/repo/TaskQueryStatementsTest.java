@@ -0,0 +1,149 @@
+package ru.javabegin.micro.planner.todo.repo;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.entity.Category;
+import ru.javabegin.micro.planner.entity.Priority;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.dto.TaskSlim;
+import ru.javabegin.micro.planner.todo.service.TaskReferences;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// количество SQL запросов на одну страницу задач не зависит от размера страницы (нет N+1),
+// приоритеты и категории при повторном чтении берутся из кеша 2 уровня
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:planner_todo;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;INIT=CREATE SCHEMA IF NOT EXISTS todo",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // каждый вызов репозитория - своя транзакция, как в приложении
+class TaskQueryStatementsTest {
+
+    private static final String USER_ID = "statements-user";
+    private static final int TASKS = 60;
+    private static final PageRequest PAGE = PageRequest.of(0, 20, Sort.by("title"));
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private PriorityRepository priorityRepository;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private TaskReferences taskReferences;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+
+        List<Priority> priorities = new ArrayList<>();
+        List<Category> categories = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            priorities.add(priorityRepository.save(new Priority(null, "priority " + i, "#fff", USER_ID)));
+            categories.add(categoryRepository.save(new Category(null, "category " + i, 0L, 0L, USER_ID)));
+        }
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            tasks.add(new Task(null, "task " + i, i % 2 == 0, new Date(), priorities.get(i % 5), categories.get(i % 5), USER_ID));
+        }
+        taskRepository.saveAll(tasks);
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll(); // начинаем с пустого кеша 2 уровня
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAllInBatch();
+        categoryRepository.deleteAllInBatch();
+        priorityRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void slimPageIsOneSelectPlusCount() {
+
+        statistics.clear();
+
+        Page<TaskSlim> page = findSlimPage();
+
+        assertEquals(20, page.getContent().size());
+        assertEquals(TASKS, page.getTotalElements());
+        assertEquals(2, statistics.getPrepareStatementCount()); // задачи + count, без запросов по каждой задаче
+    }
+
+    @Test
+    void slimPageReferencesComeFromSecondLevelCache() {
+
+        Page<TaskSlim> page = findSlimPage();
+
+        // первое чтение: по одному запросу на все приоритеты и на все категории страницы
+        statistics.clear();
+        resolveReferences(page);
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        // повторное чтение: только из кеша 2 уровня
+        statistics.clear();
+        resolveReferences(findSlimPage());
+        assertEquals(2, statistics.getPrepareStatementCount()); // только задачи + count
+        assertTrue(statistics.getSecondLevelCacheHitCount() >= 10);
+    }
+
+    @Test
+    void entityPageLoadsReferencesInBatches() {
+
+        statistics.clear();
+
+        Page<Task> page = taskRepository.findByParams(null, null, null, null, USER_ID, null, null, PAGE);
+
+        assertEquals(20, page.getContent().size());
+        // задачи + count + одна пачка приоритетов + одна пачка категорий (hibernate.default_batch_fetch_size)
+        assertTrue(statistics.getPrepareStatementCount() <= 4, "statements: " + statistics.getPrepareStatementCount());
+
+        // приоритеты и категории уже в кеше 2 уровня
+        statistics.clear();
+        taskRepository.findByParams(null, null, null, null, USER_ID, null, null, PAGE);
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    private Page<TaskSlim> findSlimPage() {
+        return taskRepository.findSlimByParams(null, null, null, null, USER_ID, null, null, PAGE);
+    }
+
+    private void resolveReferences(Page<TaskSlim> page) {
+        assertEquals(5, taskReferences.priorities(page.getContent().stream().map(TaskSlim::getPriorityId).toList()).size());
+        assertEquals(5, taskReferences.categories(page.getContent().stream().map(TaskSlim::getCategoryId).toList()).size());
+    }
+
+}
@@ -0,0 +1,49 @@
+package ru.javabegin.micro.planner.todo.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaskCursorTest {
+
+    @Test
+    void timestampKeepsNanos() {
+
+        Timestamp value = Timestamp.valueOf("2024-01-31 10:15:30.123456789");
+
+        TaskCursor cursor = TaskCursor.decode(new TaskCursor("taskDate", value, 7L).encode());
+
+        assertEquals(value, cursor.getValue()); // Timestamp.equals сравнивает и наносекунды
+        assertEquals(7L, cursor.getId());
+    }
+
+    @Test
+    void dateBeforeEpochKeepsMillis() {
+
+        Date value = new Date(-1_500); // 1969-12-31 23:59:58.500
+
+        TaskCursor cursor = TaskCursor.decode(new TaskCursor("taskDate", value, 1L).encode());
+
+        assertEquals(value.getTime(), ((Date) cursor.getValue()).getTime());
+    }
+
+    @Test
+    void millisecondTokenStillAccepted() {
+
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString("taskDate|3|D1706696130123".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(new Date(1706696130123L), TaskCursor.decode(token).getValue());
+    }
+
+    @Test
+    void wrongTokenRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TaskCursor.decode("not a token"));
+    }
+
+}
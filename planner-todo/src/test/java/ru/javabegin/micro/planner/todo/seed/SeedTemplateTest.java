@@ -0,0 +1,66 @@
+package ru.javabegin.micro.planner.todo.seed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SeedTemplateTest {
+
+    private static final List<SeedTemplate.PriorityData> PRIORITIES = List.of(new SeedTemplate.PriorityData("high", "#f88"));
+    private static final List<String> CATEGORIES = List.of("work");
+
+    @Test
+    void bundledTemplatesAreValid() throws IOException {
+        for (String name : List.of("default", "load")) {
+            try (InputStream in = new ClassPathResource("seed/" + name + ".json").getInputStream()) {
+                SeedTemplate template = new ObjectMapper().readValue(in, SeedTemplate.class);
+                assertDoesNotThrow(template::validate, name);
+            }
+        }
+    }
+
+    @Test
+    void emptyTitlesRejected() {
+        SeedTemplate template = new SeedTemplate(PRIORITIES, CATEGORIES, List.of(), generated(10, List.of(), 0, 10));
+        assertEquals("wrong template: generated.titles is empty", assertThrows(IllegalArgumentException.class, template::validate).getMessage());
+    }
+
+    @Test
+    void wrongDayRangeRejected() {
+        SeedTemplate template = new SeedTemplate(PRIORITIES, CATEGORIES, List.of(), generated(10, List.of("task"), 10, -10));
+        assertThrows(IllegalArgumentException.class, template::validate);
+    }
+
+    @Test
+    void unknownCategoryRejected() {
+        SeedTemplate template = new SeedTemplate(PRIORITIES, CATEGORIES,
+                List.of(new SeedTemplate.TaskData("task", "home", null, false, null)), null);
+        assertThrows(IllegalArgumentException.class, template::validate);
+    }
+
+    @Test
+    void wrongRatioRejected() {
+        SeedTemplate template = new SeedTemplate(PRIORITIES, CATEGORIES, List.of(),
+                new SeedTemplate.Generated(10, List.of("task"), 1.5, 0, 0, 0, 0, 10));
+        assertThrows(IllegalArgumentException.class, template::validate);
+    }
+
+    @Test
+    void noGeneratedTasksWithoutTitlesAllowed() {
+        SeedTemplate template = new SeedTemplate(PRIORITIES, CATEGORIES, List.of(), generated(0, List.of(), 0, 0));
+        assertDoesNotThrow(template::validate);
+    }
+
+    private static SeedTemplate.Generated generated(int perUser, List<String> titles, int daysFrom, int daysTo) {
+        return new SeedTemplate.Generated(perUser, titles, 0.5, 0.1, 0.1, 0.1, daysFrom, daysTo);
+    }
+
+}
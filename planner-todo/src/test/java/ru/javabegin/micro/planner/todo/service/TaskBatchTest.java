@@ -0,0 +1,157 @@
+package ru.javabegin.micro.planner.todo.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.cache.UserCacheVersions;
+import ru.javabegin.micro.planner.todo.counter.StatCounters;
+import ru.javabegin.micro.planner.todo.dto.TaskBatchResult;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.plannertest.todo.RepositoryTestConfiguration;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// пакетное изменение задач (TaskService.applyBatch, POST /task/batch): все изменения - в одной транзакции,
+// задачи других пользователей не меняются, insert/update отправляются в БД пачками, удаление - одним запросом
+@DataJpaTest(properties = {
+        "spring.cloud.config.enabled=false",
+        "spring.datasource.url=jdbc:h2:mem:planner_todo;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;INIT=CREATE SCHEMA IF NOT EXISTS todo",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = RepositoryTestConfiguration.class)
+@Import(TaskService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // транзакцию открывает сам TaskService
+class TaskBatchTest {
+
+    private static final String USER_ID = "batch-user";
+    private static final String OTHER_USER_ID = "other-user";
+    private static final int CREATES = 30;
+    private static final int UPDATES = 10;
+    private static final int DELETES = 10;
+
+    @Autowired
+    private TaskService taskService;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private UserCacheVersions userCacheVersions;
+
+    @MockBean
+    private StatCounters statCounters;
+
+    private List<Task> toUpdate;
+    private List<Task> toDelete;
+    private Task otherUserTask;
+
+    @BeforeEach
+    void setUp() {
+        toUpdate = taskRepository.saveAll(tasks(USER_ID, "update", UPDATES));
+        toDelete = taskRepository.saveAll(tasks(USER_ID, "delete", DELETES));
+        otherUserTask = taskRepository.save(tasks(OTHER_USER_ID, "other", 1).get(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void batchAppliedForOwnTasksOnly() {
+
+        List<Task> creates = tasks(OTHER_USER_ID, "new", CREATES); // владелец - из токена, а не из запроса
+
+        List<Task> updates = new ArrayList<>();
+        for (Task task : toUpdate) {
+            updates.add(new Task(task.getId(), task.getTitle() + " changed", true, task.getTaskDate(), null, null, USER_ID));
+        }
+        updates.add(new Task(otherUserTask.getId(), "stolen", true, null, null, null, USER_ID));
+
+        List<Long> deletes = new ArrayList<>(toDelete.stream().map(Task::getId).toList());
+        deletes.add(otherUserTask.getId());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        TaskBatchResult result = taskService.applyBatch(USER_ID, creates, updates, deletes);
+
+        // 51 изменение: пачка insert, пачка update, по одному select для изменяемых и удаляемых задач, один delete и sequence
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements <= 8, "statements: " + statements);
+
+        assertEquals(CREATES, result.getCreated().size());
+        result.getCreated().forEach(task -> assertNotNull(task.getId()));
+        assertEquals(UPDATES, result.getUpdated());
+        assertEquals(DELETES, result.getDeleted());
+
+        List<Task> userTasks = taskRepository.findByUserIdOrderByTitleAsc(USER_ID);
+        assertEquals(CREATES + UPDATES, userTasks.size());
+        assertEquals(UPDATES, userTasks.stream().filter(task -> task.getTitle().endsWith(" changed") && task.getCompleted()).count());
+
+        Task other = taskRepository.findById(otherUserTask.getId()).orElseThrow();
+        assertEquals(otherUserTask.getTitle(), other.getTitle());
+
+        verify(statCounters, times(CREATES + UPDATES + DELETES)).taskChanged(any(), any());
+        verify(userCacheVersions).evictUser(USER_ID);
+    }
+
+    @Test
+    void failedBatchRolledBack() {
+
+        // ошибка при удалении (последний шаг пакета)
+        doAnswer(invocation -> {
+            if (invocation.getArgument(1) == null) {
+                throw new IllegalStateException("stat update failed");
+            }
+            return null;
+        }).when(statCounters).taskChanged(any(), any());
+
+        List<Task> updates = List.of(new Task(toUpdate.get(0).getId(), "changed", true, null, null, null, USER_ID));
+
+        assertThrows(IllegalStateException.class, () -> taskService.applyBatch(USER_ID, tasks(USER_ID, "new", CREATES), updates,
+                toDelete.stream().map(Task::getId).toList()));
+
+        // ни добавления, ни изменения не сохранились
+        assertEquals(UPDATES + DELETES, taskRepository.findByUserIdOrderByTitleAsc(USER_ID).size());
+        assertEquals(toUpdate.get(0).getTitle(), taskRepository.findById(toUpdate.get(0).getId()).orElseThrow().getTitle());
+    }
+
+    private static List<Task> tasks(String userId, String prefix, int count) {
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new Task(null, prefix + " " + i, false, new Date(), null, null, userId));
+        }
+        return tasks;
+    }
+
+}
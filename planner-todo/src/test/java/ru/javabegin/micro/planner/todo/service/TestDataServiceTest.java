@@ -0,0 +1,132 @@
+package ru.javabegin.micro.planner.todo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javabegin.micro.planner.todo.seed.SeedTemplate;
+import ru.javabegin.micro.planner.todo.seed.SeedWriter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// пачка сообщений о новых пользователях: повторная доставка ничего не создает, ошибочный пользователь не откатывает всю пачку
+// вместо БД - todo.test_data_init в памяти (insert ... on conflict do nothing returning), изменения видны только после commit
+class TestDataServiceTest {
+
+    private final InitializedUsers database = new InitializedUsers();
+    private final SeedWriter seedWriter = mock(SeedWriter.class);
+
+    private final List<List<String>> written = new ArrayList<>(); // пользователи каждого успешного вызова SeedWriter.write
+
+    private TestDataService service;
+
+    @BeforeEach
+    void setUp() {
+
+        when(seedWriter.write(anyList(), any(SeedTemplate.class))).thenAnswer(invocation -> {
+            List<String> users = invocation.getArgument(0);
+            if (users.contains("bad-user")) {
+                throw new IllegalStateException("value too long for user_id");
+            }
+            written.add(List.copyOf(users));
+            return 0L;
+        });
+
+        service = new TestDataService(database, new TransactionTemplate(database.transactionManager()), seedWriter, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "defaultTemplate", "default");
+    }
+
+    @Test
+    void redeliveredBatchCreatesNothing() {
+
+        assertEquals(2, service.initTestDataBatch(List.of("user-1", "user-2")));
+
+        // та же пачка еще раз (например, после перезапуска до ack) и пачка с одним новым пользователем
+        assertEquals(0, service.initTestDataBatch(List.of("user-1", "user-2")));
+        assertEquals(1, service.initTestDataBatch(List.of("user-2", "user-3", "user-3")));
+
+        assertEquals(List.of(List.of("user-1", "user-2"), List.of(), List.of("user-3")), written);
+        assertEquals(Set.of("user-1", "user-2", "user-3"), database.committed);
+    }
+
+    @Test
+    void badUserDoesNotRollBackBatch() {
+
+        assertEquals(2, service.initTestDataBatch(List.of("user-1", "bad-user", "user-2", " ")));
+
+        // пачка откатилась целиком, затем пользователи записаны по одному - кроме ошибочного
+        assertEquals(List.of(List.of("user-1"), List.of("user-2")), written);
+        assertEquals(Set.of("user-1", "user-2"), database.committed);
+    }
+
+    @Test
+    void batchFailedForAllUsersIsRedelivered() {
+
+        assertThrows(IllegalStateException.class, () -> service.initTestDataBatch(List.of("bad-user")));
+
+        assertEquals(Set.of(), database.committed);
+    }
+
+    // todo.test_data_init: строки, добавленные в транзакции, видны другим только после commit
+    private static class InitializedUsers extends JdbcTemplate {
+
+        final Set<String> committed = new LinkedHashSet<>();
+        private final Set<String> pending = new LinkedHashSet<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+
+            List<T> inserted = new ArrayList<>();
+
+            for (Object userId : args) {
+                if (!committed.contains(userId) && pending.add((String) userId)) {
+                    inserted.add((T) userId);
+                }
+            }
+
+            return inserted;
+        }
+
+        AbstractPlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected void doBegin(Object transaction, TransactionDefinition definition) {
+                }
+
+                @Override
+                protected void doCommit(DefaultTransactionStatus status) {
+                    committed.addAll(pending);
+                    pending.clear();
+                }
+
+                @Override
+                protected void doRollback(DefaultTransactionStatus status) {
+                    pending.clear();
+                }
+            };
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package ru.javabegin.micro.plannertest.todo;
+
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import ru.javabegin.micro.planner.entity.Task;
+import ru.javabegin.micro.planner.todo.repo.TaskRepository;
+import ru.javabegin.micro.planner.todo.service.TaskReferences;
+
+/*
+
+контекст для тестов репозиториев (@DataJpaTest): только сущности, репозитории и TaskReferences
+
+PlannerTodoApplication сканирует все пакеты ru.javabegin.micro.planner (@ComponentScan) -
+с ним в тест попали бы все сервисы приложения (RabbitMQ, Feign, Keycloak)
+
+класс специально вне пакета ru.javabegin.micro.planner: иначе его находит сканирование приложения
+(PlannerTodoApplication, PlannerEntityApplication в @SpringBootTest) и репозитории регистрируются второй раз
+
+ */
+
+@Configuration
+@EntityScan(basePackageClasses = Task.class)
+@EnableJpaRepositories(basePackageClasses = TaskRepository.class)
+@Import(TaskReferences.class)
+public class RepositoryTestConfiguration {
+}
@@ -8,6 +8,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.javabegin.micro.planner.entity.User;
 import ru.javabegin.micro.planner.users.dto.UserDTO;
+import ru.javabegin.micro.planner.users.dto.UserImportResult;
 import ru.javabegin.micro.planner.users.keycloak.KeycloakUtils;
 import ru.javabegin.micro.planner.users.mq.func.MessageFuncActions;
 import ru.javabegin.micro.planner.users.service.UserService;
@@ -39,6 +40,8 @@ public class AdminController {
     private final UserService userService; // сервис для доступа к данным (напрямую к репозиториям не обращаемся)
     private static final int CONFLICT = 409; // если пользователь уже существует в KC и пытаемся создать такого же
     private static final String USER_ROLE_NAME = "user"; // название роли из KC
+    private static final int MAX_IDS = 500; // сколько пользователей можно запросить за 1 раз
+    private static final int MAX_IMPORT = 10000; // сколько пользователей можно импортировать за 1 раз
 
     private final KeycloakUtils keycloakUtils;
     // микросервисы для работы с пользователями
@@ -120,12 +123,58 @@ public class AdminController {
 
         keycloakUtils.addRoles(userId, defaultRoles);
 
+        messageFuncActions.sendNewUserMessage(userId); // сообщение для заполнения начальных данных пользователя (через outbox)
+
         return ResponseEntity.status(createdResponse.getStatus()).build();
 
 
     }
 
 
+    // импорт пользователей (пользователи создаются в KC параллельно, каждому добавляется роль user;
+    // если роль добавить не удалось - пользователь удаляется, см. KeycloakUtils.provisionUser)
+    // в ответе - результат по каждому пользователю в том же порядке
+    @PostMapping("/import")
+    public ResponseEntity<List<UserImportResult>> importUsers(@RequestBody List<UserDTO> users) {
+
+        // проверка на обязательные параметры
+        if (users == null || users.isEmpty()) {
+            return new ResponseEntity("missed param: users", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (users.size() > MAX_IMPORT) {
+            return new ResponseEntity("too many users: max " + MAX_IMPORT, HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        for (UserDTO userDTO : users) {
+
+            // если передали пустое значение
+            if (userDTO.getEmail() == null || userDTO.getEmail().trim().length() == 0) {
+                return new ResponseEntity("missed param: email (user " + userDTO.getUsername() + ")", HttpStatus.NOT_ACCEPTABLE);
+            }
+
+            if (userDTO.getPassword() == null || userDTO.getPassword().trim().length() == 0) {
+                return new ResponseEntity("missed param: password (user " + userDTO.getUsername() + ")", HttpStatus.NOT_ACCEPTABLE);
+            }
+
+            if (userDTO.getUsername() == null || userDTO.getUsername().trim().length() == 0) {
+                return new ResponseEntity("missed param: username (email " + userDTO.getEmail() + ")", HttpStatus.NOT_ACCEPTABLE);
+            }
+        }
+
+        List<UserImportResult> results = keycloakUtils.importUsers(users, List.of(USER_ROLE_NAME));
+
+        // сообщения для заполнения начальных данных созданных пользователей (через outbox, одной пачкой)
+        messageFuncActions.sendNewUserMessages(results.stream()
+                .map(UserImportResult::getUserId)
+                .filter(userId -> userId != null) // null - пользователь не создан
+                .toList());
+
+        return ResponseEntity.ok(results);
+
+    }
+
+
 //    // обновление
 //    @PutMapping("/update")
 //    public ResponseEntity<User> update(@RequestBody User user) {
@@ -247,6 +296,24 @@ public class AdminController {
 
     }
 
+    // какие пользователи из списка существуют (в ответе только id найденных пользователей, без их данных)
+    // вызывается микросервисами для проверки пользователей (UserExistenceResolver) с токеном service account
+    @PostMapping("/ids")
+    public ResponseEntity<List<String>> findByIds(@RequestBody List<String> userIds) {
+
+        // проверка на обязательные параметры
+        if (userIds == null || userIds.isEmpty()) {
+            return new ResponseEntity("missed param: ids", HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        if (userIds.size() > MAX_IDS) {
+            return new ResponseEntity("too many ids: max " + MAX_IDS, HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return ResponseEntity.ok(keycloakUtils.findUsersByIds(userIds).stream().map(UserRepresentation::getId).toList());
+
+    }
+
     // получение уникального объекта по email
     @PostMapping("/search")
     public ResponseEntity<List<UserRepresentation>> search(@RequestBody String email) { // строго соответствие email
@@ -0,0 +1,27 @@
+package ru.javabegin.micro.planner.users.dto;
+
+/*
+
+результат импорта одного пользователя (в том же порядке, что и пользователи в запросе)
+
+ */
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+
+@Setter
+@Getter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserImportResult {
+
+    private String username;
+    private String userId; // id созданного пользователя в KC (null - если не создан)
+    private int status;    // HTTP статус создания пользователя в KC (201 - создан, 409 - уже существует,
+                           // 207 - создан без ролей и не удален (userId заполнен), 500 - роли не добавлены и пользователь удален)
+    private String error;  // текст ошибки (null - если ошибки нет)
+
+}
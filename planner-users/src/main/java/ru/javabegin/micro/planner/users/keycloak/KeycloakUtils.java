@@ -1,29 +1,69 @@
 package ru.javabegin.micro.planner.users.keycloak;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.ws.rs.ForbiddenException;
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.core.Response;
+import lombok.extern.java.Log;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ManualClosingApacheHttpClient43Engine;
 import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.CreatedResponseUtil;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.AdminEventRepresentation;
 import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.javabegin.micro.planner.entity.User;
 import ru.javabegin.micro.planner.users.dto.UserDTO;
+import ru.javabegin.micro.planner.users.dto.UserImportResult;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
+@Log
 public class KeycloakUtils {
 
+    private static final int SYNC_PAGE_SIZE = 500; // сколько пользователей/событий получать из KC за 1 запрос
+    private static final int CREATED = 201; // пользователь создан в KC
+    private static final int CREATED_WITHOUT_ROLES = 207; // пользователь создан, но роли не добавлены и удалить его не удалось
+    private static final int NOT_CREATED = 500; // роли не добавлены - созданный пользователь удален
+
     // настройки из файла properties
     @Value("${keycloak.auth-server-url}")
     private String serverURL;
@@ -37,8 +77,51 @@ public class KeycloakUtils {
     private static Keycloak keycloak; // сылка на единственный экземпляр объекта KC
     private static RealmResource realmResource; // доступ к API realm
     private static UsersResource usersResource;   // доступ к API для работы с пользователями
-
-
+    private static PoolingHttpClientConnectionManager connectionManager; // пул соединений с KC
+
+    // настройки клиента KC
+    @Value("${planner.keycloak.pool-size:50}")
+    private int poolSize; // максимум одновременных соединений с KC (по умолчанию в RESTEasy - всего несколько)
+    @Value("${planner.keycloak.pool-timeout:5s}")
+    private Duration poolTimeout; // сколько ждать свободное соединение из пула
+    @Value("${planner.keycloak.connect-timeout:2s}")
+    private Duration connectTimeout;
+    @Value("${planner.keycloak.read-timeout:10s}")
+    private Duration readTimeout; // сколько ждать ответ на одну операцию
+    @Value("${planner.keycloak.connection-ttl:5m}")
+    private Duration connectionTtl; // сколько использовать одно соединение (потом открывается новое)
+    @Value("${planner.keycloak.token-min-validity:30s}")
+    private Duration tokenMinValidity; // токен обновляется заранее, если до его окончания осталось меньше этого времени
+
+    private final MeterRegistry meterRegistry;
+    private Counter tokenRefreshCounter;
+    private String lastToken;
+
+    @Value("${planner.users.cache.ttl:10m}")
+    private Duration cacheTtl; // страховка на случай, если событие об изменении пользователя не получено
+
+    @Value("${planner.users.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    // локальный кеш пользователей KC (чтобы не вызывать KC для каждого поиска по id)
+    // актуальность поддерживается событиями администрирования KC (syncUsers)
+    private Cache<String, UserRepresentation> userCache;
+
+    private long lastEventTime; // время последнего обработанного события KC (0 - кеш еще не заполнялся)
+    private boolean adminEventsAvailable = true; // false - если у клиента нет прав на чтение событий KC
+
+    // роли realm по названию - роли меняются редко, поэтому загружаются 1 раз и обновляются по расписанию (refreshRealmRoles)
+    private volatile Map<String, RoleRepresentation> realmRoles;
+
+    @Value("${planner.users.import.parallelism:8}")
+    private int importParallelism; // сколько пользователей одновременно создается в KC при импорте (общее ограничение для всех запросов)
+
+    private Semaphore importPermits;
+    private ExecutorService importExecutor;
+
+    public KeycloakUtils(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
 
     // создание объектов KC - будет выполняться после инициализации Spring бина
     @PostConstruct
@@ -51,15 +134,86 @@ public class KeycloakUtils {
                     .clientId(clientID)
                     .clientSecret(clientSecret)
                     .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
+                    .resteasyClient(createRestClient())
                     .build();
 
+            keycloak.tokenManager().setMinTokenValidity(tokenMinValidity.toSeconds());
+
             realmResource = keycloak.realm(realm);
 
             usersResource = realmResource.users();
 
         }
+
+        // метрики: заполненность пула соединений и количество обновлений токена
+        Gauge.builder("planner.keycloak.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                .description("connections to keycloak in use").register(meterRegistry);
+        Gauge.builder("planner.keycloak.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                .description("requests waiting for a free connection to keycloak").register(meterRegistry);
+        Gauge.builder("planner.keycloak.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                .description("idle connections to keycloak").register(meterRegistry);
+        Gauge.builder("planner.keycloak.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                .description("keycloak connection pool size").register(meterRegistry);
+        tokenRefreshCounter = Counter.builder("planner.keycloak.token.refresh")
+                .description("keycloak admin token refreshes").register(meterRegistry);
+
+        userCache = Caffeine.newBuilder().maximumSize(cacheMaxSize).expireAfterWrite(cacheTtl).build();
+
+        importPermits = new Semaphore(importParallelism);
+        importExecutor = Executors.newVirtualThreadPerTaskExecutor(); // потоки только ждут ответа KC, их количество ограничивает importPermits
+
         return keycloak;
     }
+
+    @PreDestroy
+    public void close() {
+        importExecutor.shutdown();
+    }
+
+    // http-клиент для KC с настраиваемым пулом соединений и таймаутами
+    // движок на Apache HttpClient 4 помечен в RESTEasy на удаление, но именно его использует клиент KC по умолчанию,
+    // а свой пул соединений нужен, чтобы видеть его заполненность в метриках
+    @SuppressWarnings("removal")
+    private ResteasyClient createRestClient() {
+
+        connectionManager = new PoolingHttpClientConnectionManager(connectionTtl.toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(poolSize);
+        connectionManager.setDefaultMaxPerRoute(poolSize); // все запросы идут на один адрес KC
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout((int) poolTimeout.toMillis())
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setSocketTimeout((int) readTimeout.toMillis())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(connectionTtl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+
+        return ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .httpEngine(new ManualClosingApacheHttpClient43Engine(httpClient, true))
+                .build();
+    }
+
+    // обновление токена заранее (в фоне), а не во время запроса пользователя, когда токен уже истек
+    // токен обновляется, только если до его окончания осталось меньше tokenMinValidity - поэтому проверять нужно чаще
+    @Scheduled(fixedDelayString = "${planner.keycloak.token-check-interval:10s}")
+    public void refreshToken() {
+        try {
+            String token = keycloak.tokenManager().getAccessTokenString();
+            if (!token.equals(lastToken)) {
+                if (lastToken != null) {
+                    tokenRefreshCounter.increment();
+                }
+                lastToken = token;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
     // создание пользователя для KC
     public Response createKeycloakUser(UserDTO userDTO) {
 
@@ -87,6 +241,7 @@ public class KeycloakUtils {
         // получаем пользователя
         UserResource uniqueUserResource = usersResource.get(userId);
         uniqueUserResource.remove();
+        userCache.invalidate(userId);
     }
 
     // обновление пользователя для KC
@@ -105,13 +260,133 @@ public class KeycloakUtils {
         // получаем пользователя
         UserResource uniqueUserResource = usersResource.get(userDTO.getId());
         uniqueUserResource.update(kcUser); // обновление
+        userCache.invalidate(userDTO.getId());
 
     }
 
-    // поиск уникального пользователя
+    // поиск уникального пользователя (сначала в локальном кеше)
     public UserRepresentation findUserById(String userId){
         // получаем пользователя
-        return usersResource.get(userId).toRepresentation();
+        return userCache.get(userId, id -> usersResource.get(id).toRepresentation());
+    }
+
+    // поиск нескольких пользователей по id - возвращаются только найденные (в порядке переданных id)
+    public List<UserRepresentation> findUsersByIds(Collection<String> userIds) {
+
+        Collection<String> ids = new LinkedHashSet<>(userIds); // без повторов
+
+        // в KC нет поиска сразу по нескольким id, поэтому из KC запрашиваются только те, кого нет в кеше
+        Map<String, UserRepresentation> cached = userCache.getAllPresent(ids);
+
+        List<UserRepresentation> result = new ArrayList<>();
+
+        for (String id : ids) {
+
+            UserRepresentation user = cached.get(id);
+
+            if (user == null) {
+                try {
+                    user = findUserById(id);
+                } catch (NotFoundException e) { // такого пользователя нет - просто не попадет в результат
+                    continue;
+                }
+            }
+
+            result.add(user);
+        }
+
+        return result;
+    }
+
+    // поддержка актуальности кеша пользователей:
+    // первый запуск - загрузка всех пользователей, далее - обработка событий администрирования KC с момента прошлого запуска
+    // (в realm должно быть включено сохранение admin events, а у клиента - роль view-events)
+    @Scheduled(fixedDelayString = "${planner.users.cache.sync-interval:10s}")
+    public void syncUsers() {
+
+        try {
+
+            if (lastEventTime == 0) {
+                lastEventTime = System.currentTimeMillis() - Duration.ofMinutes(1).toMillis(); // запас на разницу часов с KC
+                preloadUsers();
+                return;
+            }
+
+            if (adminEventsAvailable) {
+                applyAdminEvents();
+            }
+
+        } catch (ForbiddenException e) {
+            adminEventsAvailable = false; // дальше кеш обновляется только по времени жизни записей
+            log.warning("keycloak admin events are not accessible, user cache relies on ttl " + cacheTtl);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // загрузка пользователей постранично (не больше размера кеша)
+    private void preloadUsers() {
+
+        int first = 0;
+        List<UserRepresentation> page;
+
+        do {
+            page = usersResource.list(first, SYNC_PAGE_SIZE);
+            for (UserRepresentation user : page) {
+                userCache.put(user.getId(), user);
+            }
+            first += page.size();
+        } while (page.size() == SYNC_PAGE_SIZE && first < cacheMaxSize);
+
+        log.info("user cache preloaded: " + first + " users");
+    }
+
+    private void applyAdminEvents() {
+
+        // фильтр по дате в KC - только с точностью до дня, точнее фильтруем по времени события
+        String dateFrom = Instant.ofEpochMilli(lastEventTime).atZone(ZoneOffset.UTC).toLocalDate().toString();
+
+        // события отсортированы от новых к старым
+        List<AdminEventRepresentation> events = realmResource.getAdminEvents(
+                null, null, null, null, null, "users/*", dateFrom, null, 0, SYNC_PAGE_SIZE);
+
+        long maxTime = lastEventTime;
+        int newEvents = 0;
+
+        for (AdminEventRepresentation event : events) {
+
+            if (event.getTime() <= lastEventTime) {
+                continue;
+            }
+
+            newEvents++;
+            maxTime = Math.max(maxTime, event.getTime());
+
+            String[] path = event.getResourcePath().split("/"); // users/{id} или users/{id}/...
+            if (path.length < 2) {
+                continue;
+            }
+
+            String userId = path[1];
+
+            if (userCache.getIfPresent(userId) == null) {
+                continue; // пользователя нет в кеше - загрузится при первом поиске
+            }
+
+            try {
+                userCache.put(userId, usersResource.get(userId).toRepresentation());
+            } catch (NotFoundException e) { // пользователь удален
+                userCache.invalidate(userId);
+            }
+        }
+
+        // за время между запусками событий было больше, чем получили - надежнее сбросить весь кеш
+        if (newEvents == SYNC_PAGE_SIZE) {
+            log.warning("too many keycloak admin events since last sync, user cache cleared");
+            userCache.invalidateAll();
+        }
+
+        lastEventTime = maxTime;
     }
 
     // поиск пользователя по любым атрибутам (вхождение текста)
@@ -121,7 +396,7 @@ public class KeycloakUtils {
         return usersResource.searchByAttributes(text);
 
     }
-    // добавление роли пользователю
+    // добавление роли пользователю (все роли добавляются одним запросом)
     public void addRoles(String userId, List<String> roles) {
 
         // список доступных ролей в Realm
@@ -129,8 +404,7 @@ public class KeycloakUtils {
 
         // преобразуем тексты в спец. объекты RoleRepresentation, который понятен для KC
         for (String role : roles) {
-            RoleRepresentation roleRep = realmResource.roles().get(role).toRepresentation();
-            kcRoles.add(roleRep);
+            kcRoles.add(findRealmRole(role));
         }
 
         // получаем пользователя
@@ -141,6 +415,100 @@ public class KeycloakUtils {
 
     }
 
+    // роль realm из локального списка (если роль не найдена - список перечитывается, вдруг роль только что добавили)
+    private RoleRepresentation findRealmRole(String role) {
+
+        if (realmRoles == null || !realmRoles.containsKey(role)) {
+            refreshRealmRoles();
+        }
+
+        RoleRepresentation roleRep = realmRoles.get(role);
+
+        if (roleRep == null) {
+            throw new NotFoundException("realm role not found: " + role);
+        }
+
+        return roleRep;
+    }
+
+    // перечитать роли realm
+    @Scheduled(fixedDelayString = "${planner.users.roles.refresh-interval:5m}")
+    public void refreshRealmRoles() {
+        realmRoles = realmResource.roles().list().stream()
+                .collect(Collectors.toMap(RoleRepresentation::getName, Function.identity()));
+    }
+
+    // создание пользователя и добавление ему ролей
+    // если роли добавить не удалось - пользователь удаляется (импорт можно повторить),
+    // если не удалось и удалить - возвращается его id со статусом CREATED_WITHOUT_ROLES
+    public UserImportResult provisionUser(UserDTO userDTO, List<String> roles) {
+
+        try (Response createdResponse = createKeycloakUser(userDTO)) {
+
+            if (createdResponse.getStatus() != CREATED) {
+                return new UserImportResult(userDTO.getUsername(), null, createdResponse.getStatus(), createdResponse.getStatusInfo().getReasonPhrase());
+            }
+
+            // получаем его ID
+            String userId = CreatedResponseUtil.getCreatedId(createdResponse);
+
+            try {
+                addRoles(userId, roles);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                return removeWithoutRoles(userDTO, userId, e);
+            }
+
+            return new UserImportResult(userDTO.getUsername(), userId, CREATED, null);
+        }
+    }
+
+    // удалить пользователя, которому не удалось добавить роли (без ролей он не сможет работать с сервисами)
+    private UserImportResult removeWithoutRoles(UserDTO userDTO, String userId, RuntimeException rolesError) {
+
+        try {
+            deleteKeycloakUser(userId);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            return new UserImportResult(userDTO.getUsername(), userId, CREATED_WITHOUT_ROLES,
+                    "user created without roles (" + rolesError.getMessage() + "), delete failed: " + e.getMessage());
+        }
+
+        return new UserImportResult(userDTO.getUsername(), null, NOT_CREATED, "roles not added, user removed: " + rolesError.getMessage());
+    }
+
+    // импорт пользователей: одновременно создается не больше importParallelism пользователей,
+    // ошибка одного пользователя не останавливает импорт остальных
+    public List<UserImportResult> importUsers(List<UserDTO> users, List<String> roles) {
+
+        List<Future<UserImportResult>> futures = new ArrayList<>(users.size());
+
+        for (UserDTO userDTO : users) {
+            futures.add(importExecutor.submit(() -> {
+                importPermits.acquire();
+                try {
+                    return provisionUser(userDTO, roles);
+                } finally {
+                    importPermits.release();
+                }
+            }));
+        }
+
+        List<UserImportResult> results = new ArrayList<>(users.size());
+
+        for (int i = 0; i < users.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (Exception e) {
+                e.printStackTrace();
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                results.add(new UserImportResult(users.get(i).getUsername(), null, 0, cause.getMessage()));
+            }
+        }
+
+        return results;
+    }
+
     // данные о пароле
     private CredentialRepresentation createPasswordCredentials(String password) {
         CredentialRepresentation passwordCredentials = new CredentialRepresentation();
@@ -1,9 +1,9 @@
 package ru.javabegin.micro.planner.users.mq.func;
 
 import lombok.Getter;
-import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Sinks;
+
+import java.util.List;
 
 
 // работа с каналами
@@ -12,18 +12,23 @@ import reactor.core.publisher.Sinks;
 // помогает реализовать отправку сообщения с помощью функц. кода - по требованию (только после вызова соотв. метода)
 public class MessageFuncActions {
 
-    // каналы для обмена сообщениями
-    private MessageFunc messageFunc;
+    // очередь сообщений в БД, откуда они отправляются в канал (NewUserOutbox)
+    private NewUserOutbox newUserOutbox;
+
+    public MessageFuncActions(NewUserOutbox newUserOutbox) {
+        this.newUserOutbox = newUserOutbox;
+    }
 
-    public MessageFuncActions(MessageFunc streamFunctions) {
-        this.messageFunc = streamFunctions;
+    // отправка сообщения: сообщение сохраняется в БД и будет отправлено в канал, даже если сейчас канал недоступен
+    public void sendNewUserMessage(String userId) {
+        newUserOutbox.add(userId);
     }
 
-    // отправка сообщения
-    public void sendNewUserMessage(Long id) {
-        // добавляем в слушатель новое сообщение
-        messageFunc.getInnerBus().emitNext(MessageBuilder.withPayload(id).build(), Sinks.EmitFailureHandler.FAIL_FAST);
-        System.out.println("Message sent: " + id);
+    // сообщения о нескольких новых пользователях (например, после импорта)
+    public void sendNewUserMessages(List<String> userIds) {
+        if (!userIds.isEmpty()) {
+            newUserOutbox.addAll(userIds);
+        }
     }
 
 
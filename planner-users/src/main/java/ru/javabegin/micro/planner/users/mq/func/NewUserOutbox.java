@@ -0,0 +1,182 @@
+package ru.javabegin.micro.planner.users.mq.func;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.java.Log;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+
+надежная отправка сообщений о новых пользователях (outbox)
+
+сообщение сначала сохраняется в таблицу users.new_user_outbox (не теряется при всплеске регистраций или падении приложения),
+затем relay по расписанию отправляет сообщения пачками в канал newUserActionProduce и ждет подтверждения от RabbitMQ (publisher confirms):
+подтвержденные сообщения удаляются из таблицы, остальные отправляются повторно с увеличивающейся задержкой
+
+несколько экземпляров planner-users могут работать одновременно - строки блокируются (for update skip locked)
+сообщение может быть доставлено повторно (например, если подтверждение пришло после таймаута) - получатель должен это учитывать
+
+ */
+
+@Component
+@Log
+public class NewUserOutbox {
+
+    @Value("${planner.users.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${planner.users.outbox.confirm-timeout:5s}")
+    private Duration confirmTimeout; // сколько ждать подтверждения от RabbitMQ
+
+    @Value("${planner.users.outbox.backoff-initial:1s}")
+    private Duration backoffInitial;
+
+    @Value("${planner.users.outbox.backoff-max:5m}")
+    private Duration backoffMax;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageFunc messageFunc;
+
+    // метрики
+    private final AtomicLong depth = new AtomicLong(); // сколько сообщений ждет отправки (обновляется при каждом запуске relay)
+    private final Timer publishTimer; // время от отправки до подтверждения
+    private final Counter failedCounter;
+
+    public NewUserOutbox(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, MessageFunc messageFunc, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messageFunc = messageFunc;
+
+        Gauge.builder("planner.users.outbox.depth", depth, AtomicLong::get)
+                .description("new user messages waiting to be published").register(meterRegistry);
+        publishTimer = Timer.builder("planner.users.outbox.publish")
+                .description("time from publish to broker confirm").register(meterRegistry);
+        failedCounter = Counter.builder("planner.users.outbox.failed")
+                .description("new user messages that were not confirmed and will be retried").register(meterRegistry);
+    }
+
+    // сообщение из таблицы
+    private record OutboxMessage(long id, String userId, int attempts) {
+    }
+
+    // отправленное сообщение, которое ждет подтверждения
+    private record Sent(OutboxMessage message, CorrelationData correlation, long startTime) {
+    }
+
+    // сохранить сообщение для отправки (если вызывается внутри транзакции - сохранится вместе с ней)
+    public void add(String userId) {
+        jdbcTemplate.update("insert into users.new_user_outbox (user_id) values (?)", userId);
+    }
+
+    // сохранить сообщения для нескольких пользователей (одной пачкой insert)
+    public void addAll(List<String> userIds) {
+        jdbcTemplate.batchUpdate("insert into users.new_user_outbox (user_id) values (?)",
+                userIds.stream().map(userId -> new Object[]{userId}).toList());
+    }
+
+    @Scheduled(fixedDelayString = "${planner.users.outbox.poll-interval:500ms}")
+    public void relay() {
+        try {
+            Integer processed;
+            do { // пока есть сообщения - отправляем пачку за пачкой
+                processed = transactionTemplate.execute(status -> relayBatch());
+            } while (processed != null && processed == batchSize);
+
+            depth.set(jdbcTemplate.queryForObject("select count(*) from users.new_user_outbox", Long.class));
+        } catch (Exception e) { // например, БД недоступна - сообщения останутся в таблице до следующего запуска
+            log.warning("new user outbox relay failed: " + e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+
+        List<OutboxMessage> messages = jdbcTemplate.query(
+                "select id, user_id, attempts from users.new_user_outbox where next_attempt_at <= now() " +
+                        "order by id limit ? for update skip locked",
+                (rs, i) -> new OutboxMessage(rs.getLong("id"), rs.getString("user_id"), rs.getInt("attempts")),
+                batchSize);
+
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        // отправляем всю пачку, потом ждем подтверждений
+        List<Sent> sent = new ArrayList<>(messages.size());
+        List<Object[]> delivered = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+
+        for (OutboxMessage message : messages) {
+
+            CorrelationData correlation = new CorrelationData(String.valueOf(message.id()));
+
+            Message<String> amqpMessage = MessageBuilder.withPayload(message.userId())
+                    .setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlation)
+                    .build();
+
+            if (messageFunc.getInnerBus().tryEmitNext(amqpMessage) == Sinks.EmitResult.OK) {
+                sent.add(new Sent(message, correlation, System.nanoTime()));
+            } else {
+                failed.add(retryParams(message));
+            }
+        }
+
+        long deadline = System.nanoTime() + confirmTimeout.toNanos();
+
+        for (Sent s : sent) {
+            try {
+                long wait = Math.max(0, deadline - System.nanoTime());
+                CorrelationData.Confirm confirm = s.correlation().getFuture().get(wait, TimeUnit.NANOSECONDS);
+
+                if (confirm.isAck() && s.correlation().getReturned() == null) {
+                    publishTimer.record(System.nanoTime() - s.startTime(), TimeUnit.NANOSECONDS);
+                    delivered.add(new Object[]{s.message().id()});
+                    continue;
+                }
+
+                log.warning("new user message " + s.message().id() + " not confirmed: " + confirm.getReason());
+            } catch (Exception e) { // таймаут или ошибка отправки
+                log.warning("new user message " + s.message().id() + " not confirmed: " + e);
+            }
+
+            failed.add(retryParams(s.message()));
+        }
+
+        if (!delivered.isEmpty()) {
+            jdbcTemplate.batchUpdate("delete from users.new_user_outbox where id = ?", delivered);
+        }
+
+        if (!failed.isEmpty()) {
+            failedCounter.increment(failed.size());
+            jdbcTemplate.batchUpdate("update users.new_user_outbox set attempts = attempts + 1, " +
+                    "next_attempt_at = now() + make_interval(secs => ?) where id = ?", failed);
+        }
+
+        return messages.size();
+    }
+
+    // следующая попытка - через backoffInitial * 2^attempts, но не больше backoffMax
+    private Object[] retryParams(OutboxMessage message) {
+        long delay = backoffInitial.toMillis() << Math.min(message.attempts(), 20);
+        double seconds = Math.min(delay, backoffMax.toMillis()) / 1000.0;
+        return new Object[]{seconds, message.id()};
+    }
+
+}
@@ -7,7 +7,7 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
-import ru.javabegin.micro.planner.utils.converter.KCRoleConverter;
+import ru.javabegin.micro.planner.utils.security.JwtVerificationCache;
 
 @Configuration // данный класс будет считан как конфиг для spring контейнера
 @EnableWebSecurity // включает механизм защиты адресов, которые настраиваются в SecurityFilterChain
@@ -19,24 +19,26 @@ public class SpringSecurityConfig {
 
     // создается спец. бин, который отвечает за настройки запросов по http (метод вызывается автоматически) Spring контейнером
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtVerificationCache jwtVerificationCache) throws Exception {
 
         // конвертер для настройки spring security
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        // подключаем конвертер ролей
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(new KCRoleConverter());
+        // подключаем конвертер ролей (роли уже посчитаны при проверке токена и хранятся в кеше)
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwtVerificationCache::authorities);
 
 
         http.authorizeHttpRequests((requests) -> requests
 //                        .requestMatchers("*").permitAll()
-                        .requestMatchers("/admin/*").hasRole("admin")
+                        // "/**" - все вложенные адреса (например /admin/user/ids), "/*" - только один уровень после /admin
+                        .requestMatchers("/admin/**").hasRole("admin")
                         .requestMatchers("/auth/*").hasRole("user")
                         .anyRequest().authenticated())
 
                 .oauth2ResourceServer(
                         oauth2ResourceServer -> oauth2ResourceServer
                                 .jwt(jwt ->
-                                        jwt.jwtAuthenticationConverter(jwtAuthenticationConverter))
+                                        jwt.decoder(jwtVerificationCache) // проверка токена с кешированием результата
+                                                .jwtAuthenticationConverter(jwtAuthenticationConverter))
                 );
 
 
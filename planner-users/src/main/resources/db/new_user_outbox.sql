@@ -0,0 +1,13 @@
+-- очередь сообщений о новых пользователях (outbox): сообщение сначала сохраняется в БД, потом отправляется в канал (NewUserOutbox)
+-- выполняется один раз на БД planner_users
+
+create table if not exists users.new_user_outbox
+(
+    id              bigserial primary key,
+    user_id         varchar(64) not null,
+    created_at      timestamp   not null default now(),
+    attempts        integer     not null default 0,     -- сколько раз отправка не удалась
+    next_attempt_at timestamp   not null default now()  -- когда пробовать отправить (при ошибках - с увеличивающейся задержкой)
+);
+
+create index if not exists new_user_outbox_next_attempt_idx on users.new_user_outbox (next_attempt_at);
@@ -0,0 +1,157 @@
+package ru.javabegin.micro.planner.users.keycloak;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// получение токена администрирования KC при запросах пользователей, пока токен несколько раз истекает:
+// без фоновой проверки токен обновляется во время запроса пользователя (запрос ждет ответа KC),
+// с фоновой проверкой (refreshToken) - обычно заранее; выводится, сколько запросов ждали получения токена и максимальное время
+// TokenManager получает токен под своей блокировкой, поэтому запрос, пришедший во время фонового обновления, тоже ждет -
+// фоновая проверка помогает, пока ответ KC намного короче интервала между запросами
+// вместо KC - локальный HTTP сервер, который выдает токены с задержкой TOKEN_DELAY_MS
+@Tag("benchmark")
+class KeycloakTokenRefreshBenchmark {
+
+    private static final String REALM = "todoapp-realm";
+    private static final long TOKEN_DELAY_MS = 50; // сколько KC выдает токен
+    private static final long SLOW_MS = TOKEN_DELAY_MS / 2; // запрос дольше - ждал получения токена
+    private static final Duration RUN = Duration.ofSeconds(7); // около 3 обновлений токена
+    private static final long REQUEST_INTERVAL_MS = 500; // пауза между запросами пользователей
+    private static final long CHECK_INTERVAL_MS = 20; // фоновая проверка (planner.keycloak.token-check-interval)
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
+    private HttpServer keycloakServer;
+    private KeycloakUtils keycloakUtils;
+
+    // результат одного прогона
+    private record Run(int requests, int slow, long maxMs, int tokenRequests) {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        keycloakServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        keycloakServer.createContext("/realms/" + REALM + "/protocol/openid-connect/token", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(TOKEN_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // при min validity 30 секунд токен считается истекающим через 2 секунды
+            byte[] body = ("{\"access_token\":\"token-" + tokenRequests.incrementAndGet() + "\",\"expires_in\":32,\"token_type\":\"Bearer\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        keycloakServer.start();
+
+        keycloakUtils = new KeycloakUtils(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(KeycloakUtils.class, "keycloak", null); // объект KC создается 1 раз на JVM
+        ReflectionTestUtils.setField(keycloakUtils, "serverURL", "http://localhost:" + keycloakServer.getAddress().getPort());
+        ReflectionTestUtils.setField(keycloakUtils, "realm", REALM);
+        ReflectionTestUtils.setField(keycloakUtils, "clientID", "planner-users");
+        ReflectionTestUtils.setField(keycloakUtils, "clientSecret", "secret");
+        ReflectionTestUtils.setField(keycloakUtils, "poolSize", 5);
+        ReflectionTestUtils.setField(keycloakUtils, "poolTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(keycloakUtils, "connectTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(keycloakUtils, "readTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(keycloakUtils, "connectionTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(keycloakUtils, "tokenMinValidity", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(keycloakUtils, "cacheTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(keycloakUtils, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(keycloakUtils, "importParallelism", 1);
+        keycloakUtils.initKeycloak();
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloakUtils.close();
+        keycloak().close();
+        ReflectionTestUtils.setField(KeycloakUtils.class, "keycloak", null);
+        keycloakServer.stop(0);
+    }
+
+    @Test
+    void backgroundRefreshVersusRefreshOnRequest() throws InterruptedException {
+
+        Run onRequest = run(false);
+        Run background = run(true);
+
+        System.out.printf("keycloak token refresh benchmark (%d ms token response, request every %d ms): " +
+                        "on request - %d of %d requests waited, max %d ms, %d tokens; " +
+                        "background check every %d ms - %d of %d requests waited, max %d ms, %d tokens%n",
+                TOKEN_DELAY_MS, REQUEST_INTERVAL_MS,
+                onRequest.slow(), onRequest.requests(), onRequest.maxMs(), onRequest.tokenRequests(),
+                CHECK_INTERVAL_MS, background.slow(), background.requests(), background.maxMs(), background.tokenRequests());
+
+        // при каждом обновлении без фоновой проверки ждет первый запрос после истечения токена
+        assertTrue(onRequest.slow() > 0, "requests waited for token without background refresh: " + onRequest.slow());
+        assertTrue(background.slow() < onRequest.slow(), "background " + background.slow() + ", on request " + onRequest.slow());
+    }
+
+    private Run run(boolean backgroundRefresh) throws InterruptedException {
+
+        keycloak().tokenManager().grantToken(); // новый токен в начале прогона - одинаковое число обновлений
+        int tokensBefore = tokenRequests.get();
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        if (backgroundRefresh) {
+            scheduler.scheduleWithFixedDelay(keycloakUtils::refreshToken, CHECK_INTERVAL_MS, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        int requests = 0;
+        int slow = 0;
+        long maxMs = 0;
+
+        try {
+            long end = System.nanoTime() + RUN.toNanos();
+            while (System.nanoTime() < end) {
+
+                // токен, который получает каждый вызов API KC (например, поиск пользователя)
+                long start = System.nanoTime();
+                keycloak().tokenManager().getAccessTokenString();
+                long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                requests++;
+                maxMs = Math.max(maxMs, ms);
+                if (ms >= SLOW_MS) {
+                    slow++;
+                }
+
+                Thread.sleep(REQUEST_INTERVAL_MS);
+            }
+        } finally {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        }
+
+        return new Run(requests, slow, maxMs, tokenRequests.get() - tokensBefore);
+    }
+
+    private Keycloak keycloak() {
+        return (Keycloak) ReflectionTestUtils.getField(KeycloakUtils.class, "keycloak");
+    }
+
+}
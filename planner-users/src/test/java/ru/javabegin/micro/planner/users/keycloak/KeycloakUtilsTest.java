@@ -0,0 +1,126 @@
+package ru.javabegin.micro.planner.users.keycloak;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// обновление токена администрирования KC заранее: фоновая проверка (refreshToken) получает новый токен,
+// когда до окончания текущего осталось меньше token-min-validity, и запросы пользователей не ждут получения токена
+// вместо KC - локальный HTTP сервер, который выдает токены client_credentials
+class KeycloakUtilsTest {
+
+    private static final String REALM = "todoapp-realm";
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private volatile int tokenStatus = 200;
+    private volatile long expiresIn = 300; // сколько секунд действует выданный токен
+
+    private HttpServer keycloakServer;
+    private KeycloakUtils keycloakUtils;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        keycloakServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        keycloakServer.createContext("/realms/" + REALM + "/protocol/openid-connect/token", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = ("{\"access_token\":\"token-" + tokenRequests.incrementAndGet() + "\",\"expires_in\":" + expiresIn +
+                    ",\"token_type\":\"Bearer\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(tokenStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        keycloakServer.start();
+
+        keycloakUtils = new KeycloakUtils(meterRegistry);
+        ReflectionTestUtils.setField(KeycloakUtils.class, "keycloak", null); // объект KC создается 1 раз на JVM
+        ReflectionTestUtils.setField(keycloakUtils, "serverURL", "http://localhost:" + keycloakServer.getAddress().getPort());
+        ReflectionTestUtils.setField(keycloakUtils, "realm", REALM);
+        ReflectionTestUtils.setField(keycloakUtils, "clientID", "planner-users");
+        ReflectionTestUtils.setField(keycloakUtils, "clientSecret", "secret");
+        ReflectionTestUtils.setField(keycloakUtils, "poolSize", 5);
+        ReflectionTestUtils.setField(keycloakUtils, "poolTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(keycloakUtils, "connectTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(keycloakUtils, "readTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(keycloakUtils, "connectionTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(keycloakUtils, "tokenMinValidity", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(keycloakUtils, "cacheTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(keycloakUtils, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(keycloakUtils, "importParallelism", 1);
+        keycloakUtils.initKeycloak();
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloakUtils.close();
+        ((Keycloak) ReflectionTestUtils.getField(KeycloakUtils.class, "keycloak")).close();
+        ReflectionTestUtils.setField(KeycloakUtils.class, "keycloak", null);
+        keycloakServer.stop(0);
+    }
+
+    @Test
+    void tokenRefreshedAheadOfExpiry() throws InterruptedException {
+
+        // при min validity 30 секунд токен считается истекающим через 2 секунды
+        // (время в TokenManager - в секундах, запас в 1 секунду, чтобы соседние вызовы не попадали на разные стороны границы)
+        expiresIn = 32;
+
+        keycloakUtils.refreshToken(); // первый токен
+        keycloakUtils.refreshToken(); // токен еще действует дольше min validity - KC не вызывается
+
+        assertEquals(1, tokenRequests.get());
+        assertEquals(0, refreshCount());
+
+        Thread.sleep(3_100);
+
+        // до окончания токена еще ~29 секунд, но это меньше min validity - фоновая проверка получает новый токен
+        keycloakUtils.refreshToken();
+
+        assertEquals(2, tokenRequests.get());
+        assertEquals(1, refreshCount());
+
+        // запрос пользователя использует уже обновленный токен
+        assertEquals("token-2", keycloak().tokenManager().getAccessTokenString());
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    void failedRefreshDoesNotThrow() {
+
+        tokenStatus = 503;
+
+        assertDoesNotThrow(keycloakUtils::refreshToken); // ошибка только в логе - следующая проверка попробует снова
+
+        tokenStatus = 200;
+        keycloakUtils.refreshToken();
+
+        assertEquals("token-2", keycloak().tokenManager().getAccessTokenString());
+        assertEquals(0, refreshCount()); // первый полученный токен - не обновление
+    }
+
+    private double refreshCount() {
+        return meterRegistry.get("planner.keycloak.token.refresh").counter().count();
+    }
+
+    private Keycloak keycloak() {
+        return (Keycloak) ReflectionTestUtils.getField(KeycloakUtils.class, "keycloak");
+    }
+
+}
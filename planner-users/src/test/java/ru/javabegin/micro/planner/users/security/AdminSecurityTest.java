@@ -0,0 +1,102 @@
+package ru.javabegin.micro.planner.users.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.javabegin.micro.planner.users.controller.AdminController;
+import ru.javabegin.micro.planner.users.keycloak.KeycloakUtils;
+import ru.javabegin.micro.planner.users.mq.func.MessageFuncActions;
+import ru.javabegin.micro.planner.users.service.UserService;
+import ru.javabegin.micro.planner.utils.rest.webclient.UserWebClientBuilder;
+import ru.javabegin.micro.planner.utils.security.JwtVerificationCache;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// адреса /admin/** (в т.ч. вложенные /admin/user/...) доступны только роли admin
+// токен проверяет JwtVerificationCache (здесь - mock): "user-token" - роль user, "admin-token" - роль admin
+@WebMvcTest(properties = "spring.cloud.config.enabled=false")
+@ContextConfiguration(classes = {SpringSecurityConfig.class, AdminController.class})
+class AdminSecurityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private JwtVerificationCache jwtVerificationCache;
+
+    @MockBean
+    private KeycloakUtils keycloakUtils;
+
+    @MockBean
+    private MessageFuncActions messageFuncActions;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private UserWebClientBuilder userWebClientBuilder;
+
+    @BeforeEach
+    void setUp() {
+        token("user-token", "ROLE_user");
+        token("admin-token", "ROLE_admin");
+    }
+
+    @Test
+    void userTokenForbiddenOnNestedAdminPaths() throws Exception {
+
+        mockMvc.perform(post("/admin/user/ids").header(HttpHeaders.AUTHORIZATION, "Bearer user-token")
+                        .contentType(MediaType.APPLICATION_JSON).content("[\"id-1\"]"))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(post("/admin/user/import").header(HttpHeaders.AUTHORIZATION, "Bearer user-token")
+                        .contentType(MediaType.APPLICATION_JSON).content("[{\"username\":\"u\",\"email\":\"u@mail.ru\",\"password\":\"p\"}]"))
+                .andExpect(status().isForbidden());
+
+        verifyNoInteractions(keycloakUtils);
+    }
+
+    @Test
+    void adminGetsOnlyIds() throws Exception {
+
+        UserRepresentation user = new UserRepresentation();
+        user.setId("id-1");
+        user.setEmail("u@mail.ru");
+        user.setUsername("u");
+        when(keycloakUtils.findUsersByIds(anyCollection())).thenReturn(List.of(user));
+
+        // тот же запрос с токеном admin выполняется (403 для роли user - из правила /admin/**, а не из CSRF)
+        // в ответе только id - без email и других данных пользователя
+        mockMvc.perform(post("/admin/user/ids").header(HttpHeaders.AUTHORIZATION, "Bearer admin-token")
+                        .contentType(MediaType.APPLICATION_JSON).content("[\"id-1\",\"id-2\"]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[\"id-1\"]", true));
+    }
+
+    private void token(String value, String role) {
+
+        Jwt jwt = Jwt.withTokenValue(value).header("alg", "RS256").subject(value).build();
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(role));
+
+        when(jwtVerificationCache.decode(value)).thenReturn(jwt);
+        when(jwtVerificationCache.authorities(jwt)).thenReturn(authorities);
+    }
+
+}
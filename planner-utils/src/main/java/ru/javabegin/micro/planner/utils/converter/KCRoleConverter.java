@@ -9,10 +9,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 // класс конвертер из данных JWT в роли spring security
 public class KCRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
 
+    // для каждой роли создается только один объект GrantedAuthority (ролей немного, а запросов - много)
+    private static final Map<String, GrantedAuthority> AUTHORITIES = new ConcurrentHashMap<>();
+
     @Override
     public Collection<GrantedAuthority> convert(Jwt jwt) {
 
@@ -30,17 +34,23 @@ public class KCRoleConverter implements Converter<Jwt, Collection<GrantedAuthori
 //                .map(SimpleGrantedAuthority::new)
 //                .collect(Collectors.toList());
 
+        List<String> roles = (List<String>) realmAccess.get("roles");
+
         // для того, чтобы spring контейнер понимал роли из jwt -
         // нужно их преобразовать в коллекцию GrantedAuthority
-        Collection<GrantedAuthority> returnValue = new ArrayList<>();
+        Collection<GrantedAuthority> returnValue = new ArrayList<>(roles.size());
 
-        for (String roleName : (List<String>) realmAccess.get("roles") // проходим по всем значениям из JSON
+        for (String roleName : roles // проходим по всем значениям из JSON
         ) {
-            // создаем объект SimpleGrantedAuthority - это дефолтная реализация GrantedAuthority
-            returnValue.add(new SimpleGrantedAuthority("ROLE_" + roleName)); // префикс ROLE обязатален
+            returnValue.add(authorityOf(roleName));
         }
 
         return returnValue;
     }
 
+    private static GrantedAuthority authorityOf(String roleName) {
+        // SimpleGrantedAuthority - это дефолтная реализация GrantedAuthority
+        return AUTHORITIES.computeIfAbsent(roleName, name -> new SimpleGrantedAuthority("ROLE_" + name)); // префикс ROLE обязатален
+    }
+
 }
@@ -0,0 +1,105 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+
+статистика вызовов одного экземпляра сервиса (для LatencyAwareLoadBalancer)
+
+- задержка - peak EWMA: рост задержки учитывается сразу, снижение - постепенно (старые значения "забываются" за время decay)
+- inFlight - сколько запросов к экземпляру выполняется сейчас
+- после нескольких ошибок подряд экземпляр исключается из балансировки (ejection) на время, которое растет при повторных исключениях,
+  после возврата (и для нового экземпляра) нагрузка на него увеличивается постепенно в течение slowStart
+
+все время - в наносекундах (System.nanoTime)
+
+ */
+
+public class InstanceStats {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private double latency; // EWMA задержки
+    private long latencyUpdatedAt;
+    private boolean hasLatency;
+
+    private int consecutiveErrors;
+    private int ejections; // сколько раз подряд экземпляр исключался (увеличивает время исключения)
+    private volatile long ejectedUntil;
+    private volatile long warmingSince; // начало "разогрева" (slow start)
+
+    InstanceStats(long now) {
+        this.warmingSince = now;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    void requestFinished() {
+        inFlight.updateAndGet(value -> value > 0 ? value - 1 : 0);
+    }
+
+    synchronized void recordLatency(long rtt, long now, long decay) {
+
+        if (!hasLatency || rtt > latency) {
+            latency = rtt;
+        } else {
+            double weight = Math.exp(-(double) (now - latencyUpdatedAt) / decay);
+            latency = latency * weight + rtt * (1 - weight);
+        }
+
+        hasLatency = true;
+        latencyUpdatedAt = now;
+    }
+
+    public synchronized boolean hasLatency() {
+        return hasLatency;
+    }
+
+    public synchronized double getLatency() {
+        return latency;
+    }
+
+    // успешный ответ - счетчик ошибок подряд сбрасывается, после полного разогрева забываются и прошлые исключения
+    synchronized void recordSuccess(long now, long slowStart) {
+        consecutiveErrors = 0;
+        if (ejections > 0 && now - warmingSince >= slowStart) {
+            ejections = 0;
+        }
+    }
+
+    // ошибка - возвращает true, если набралось errorsToEject ошибок подряд и экземпляр можно исключить
+    synchronized boolean recordError(int errorsToEject) {
+        return ++consecutiveErrors >= errorsToEject;
+    }
+
+    // исключить экземпляр: время исключения - baseEjection * (номер исключения подряд), но не больше maxEjection
+    synchronized void eject(long now, long baseEjection, long maxEjection) {
+        ejections++;
+        consecutiveErrors = 0;
+        ejectedUntil = now + Math.min(baseEjection * ejections, maxEjection);
+        warmingSince = ejectedUntil; // после возврата - снова разогрев
+    }
+
+    public boolean isEjected(long now) {
+        return now < ejectedUntil;
+    }
+
+    // доля нагрузки при разогреве: от minWeight до 1 (линейно за время slowStart)
+    double weight(long now, long slowStart, double minWeight) {
+
+        long warming = now - warmingSince;
+
+        if (slowStart <= 0 || warming >= slowStart) {
+            return 1;
+        }
+
+        return Math.max(minWeight, (double) Math.max(warming, 0) / slowStart);
+    }
+
+}
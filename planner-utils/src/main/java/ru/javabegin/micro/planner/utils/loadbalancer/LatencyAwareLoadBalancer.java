@@ -0,0 +1,110 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+
+балансировщик с учетом задержки (вместо RoundRobinLoadBalancer)
+
+power of two choices: из доступных экземпляров случайно выбираются два, запрос уходит тому, у кого меньше "стоимость":
+задержка (EWMA) * (запросов в работе + 1) / доля нагрузки при разогреве
+- медленный экземпляр получает меньше запросов, но не перестает их получать совсем (иначе не будет видно, что он стал быстрее)
+- исключенные после ошибок экземпляры не выбираются, пока не истечет время исключения
+  (если исключены все - выбираются из всех, чтобы запросы не отклонялись полностью)
+
+ */
+
+@Log
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final String serviceId;
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final LoadBalancerStats stats;
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider, String serviceId,
+                                    LoadBalancerStats stats) {
+        this.serviceId = serviceId;
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.stats = stats;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+
+        return supplier.get(request).next().map(this::choose);
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+
+        if (instances.isEmpty()) {
+            log.warning("no servers available for service: " + serviceId);
+            return new EmptyResponse();
+        }
+
+        stats.retain(instances);
+
+        long now = System.nanoTime();
+        List<ServiceInstance> available = available(instances, now);
+
+        if (available.size() == 1) {
+            return new DefaultResponse(available.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++; // второй экземпляр - всегда не тот же, что первый
+        }
+
+        ServiceInstance a = available.get(first);
+        ServiceInstance b = available.get(second);
+
+        InstanceStats statsA = stats.stats(a);
+        InstanceStats statsB = stats.stats(b);
+
+        return new DefaultResponse(cost(statsA, statsB, now) <= cost(statsB, statsA, now) ? a : b);
+    }
+
+    private List<ServiceInstance> available(List<ServiceInstance> instances, long now) {
+
+        List<ServiceInstance> available = new ArrayList<>(instances.size());
+
+        for (ServiceInstance instance : instances) {
+            if (!stats.stats(instance).isEjected(now)) {
+                available.add(instance);
+            }
+        }
+
+        return available.isEmpty() ? instances : available;
+    }
+
+    // у экземпляра без замеров (новый) задержка считается такой же, как у второго кандидата
+    private double cost(InstanceStats instance, InstanceStats other, long now) {
+
+        double latency = instance.hasLatency() ? instance.getLatency() : other.hasLatency() ? other.getLatency() : 1;
+
+        LoadBalancerSettings settings = stats.getSettings();
+
+        return Math.max(latency, 1) * (instance.getInFlight() + 1) / instance.weight(now, settings.slowStart().toNanos(), settings.minWeight());
+    }
+
+}
@@ -0,0 +1,70 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+
+/*
+
+настройки Spring Cloud LoadBalancer для всех сервисов: LatencyAwareLoadBalancer вместо round robin
+
+подключается в приложении через @LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfiguration.class)
+бины создаются отдельно для каждого сервиса (в его контексте LoadBalancer), поэтому и статистика у каждого сервиса своя
+
+без @Configuration - класс не должен попасть в общий контекст приложения при сканировании пакетов
+
+настройки planner.loadbalancer.* (значения по умолчанию - ниже, в application.properties указываются только отличия)
+
+ */
+
+public class LatencyAwareLoadBalancerConfiguration {
+
+    @Value("${planner.loadbalancer.decay:10s}")
+    private Duration decay;
+
+    @Value("${planner.loadbalancer.outlier.consecutive-errors:5}")
+    private int errorsToEject;
+
+    @Value("${planner.loadbalancer.outlier.base-ejection:30s}")
+    private Duration baseEjection;
+
+    @Value("${planner.loadbalancer.outlier.max-ejection:5m}")
+    private Duration maxEjection;
+
+    @Value("${planner.loadbalancer.outlier.max-ejected-percent:50}")
+    private int maxEjectedPercent;
+
+    @Value("${planner.loadbalancer.slow-start:30s}")
+    private Duration slowStart;
+
+    @Value("${planner.loadbalancer.slow-start-min-weight:0.1}")
+    private double minWeight;
+
+    @Bean
+    public LoadBalancerStats loadBalancerStats(Environment environment) {
+        return new LoadBalancerStats(environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME),
+                new LoadBalancerSettings(decay, errorsToEject, baseEjection, maxEjection, maxEjectedPercent, slowStart, minWeight));
+    }
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(Environment environment,
+                                                                                   LoadBalancerClientFactory loadBalancerClientFactory,
+                                                                                   LoadBalancerStats loadBalancerStats) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        return new LatencyAwareLoadBalancer(
+                loadBalancerClientFactory.getLazyProvider(serviceId, ServiceInstanceListSupplier.class), serviceId, loadBalancerStats);
+    }
+
+    @Bean
+    public LoadBalancerLifecycle<Object, Object, ServiceInstance> latencyAwareLoadBalancerLifecycle(LoadBalancerStats loadBalancerStats) {
+        return new LatencyAwareLoadBalancerLifecycle(loadBalancerStats);
+    }
+
+}
@@ -0,0 +1,85 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.client.loadbalancer.TimedRequestContext;
+
+/*
+
+результаты вызовов для LoadBalancerStats
+
+вызывается самим Spring Cloud LoadBalancer после выбора экземпляра и после получения ответа -
+одинаково для Feign, RestTemplate/WebClient (через LoadBalancer) и маршрутов lb:// в gateway
+
+ */
+
+public class LatencyAwareLoadBalancerLifecycle implements LoadBalancerLifecycle<Object, Object, ServiceInstance> {
+
+    private final LoadBalancerStats stats;
+
+    public LatencyAwareLoadBalancerLifecycle(LoadBalancerStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<Object> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<Object> request, Response<ServiceInstance> lbResponse) {
+
+        if (request.getContext() instanceof TimedRequestContext context) {
+            context.setRequestStartTime(System.nanoTime());
+        }
+
+        if (lbResponse.hasServer()) {
+            stats.requestStarted(lbResponse.getServer());
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+
+        // DISCARD - экземпляр не был выбран (запрос не отправлялся)
+        if (completionContext.status() == CompletionContext.Status.DISCARD
+                || completionContext.getLoadBalancerResponse() == null
+                || !completionContext.getLoadBalancerResponse().hasServer()) {
+            return;
+        }
+
+        long rtt = 0;
+        if (completionContext.getLoadBalancerRequest() != null
+                && completionContext.getLoadBalancerRequest().getContext() instanceof TimedRequestContext context
+                && context.getRequestStartTime() > 0) {
+            rtt = System.nanoTime() - context.getRequestStartTime();
+        }
+
+        stats.requestFinished(completionContext.getLoadBalancerResponse().getServer(), rtt, isError(completionContext));
+    }
+
+    // ошибка экземпляра: нет соединения, таймаут или ответ 502/503/504
+    // (500 и 4xx - ошибка конкретного запроса, а не экземпляра - не учитываются)
+    private static boolean isError(CompletionContext<Object, ServiceInstance, Object> completionContext) {
+
+        if (completionContext.status() == CompletionContext.Status.FAILED) {
+            return true;
+        }
+
+        if (completionContext.getClientResponse() instanceof ResponseData response && response.getHttpStatus() != null) {
+            int status = response.getHttpStatus().value();
+            return status == 502 || status == 503 || status == 504;
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,15 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import java.time.Duration;
+
+// настройки LatencyAwareLoadBalancer (planner.loadbalancer.*, см. LatencyAwareLoadBalancerConfiguration)
+public record LoadBalancerSettings(
+        Duration decay, // за какое время "забываются" старые значения задержки
+        int errorsToEject, // сколько ошибок подряд - и экземпляр исключается из балансировки
+        Duration baseEjection, // время первого исключения (при повторных - кратно больше)
+        Duration maxEjection,
+        int maxEjectedPercent, // сколько экземпляров (в %) можно исключить одновременно
+        Duration slowStart, // за какое время нагрузка на новый (или вернувшийся) экземпляр растет до полной
+        double minWeight // доля нагрузки в начале разогрева
+) {
+}
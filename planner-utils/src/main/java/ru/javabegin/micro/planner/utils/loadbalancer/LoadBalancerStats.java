@@ -0,0 +1,106 @@
+package ru.javabegin.micro.planner.utils.loadbalancer;
+
+import lombok.extern.java.Log;
+import org.springframework.cloud.client.ServiceInstance;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+
+статистика всех экземпляров одного сервиса
+
+общая для балансировщика (выбор экземпляра) и LatencyAwareLoadBalancerLifecycle (результаты вызовов) -
+создается в контексте LoadBalancer для каждого сервиса отдельно
+
+ */
+
+@Log
+public class LoadBalancerStats {
+
+    private final String serviceId;
+    private final LoadBalancerSettings settings;
+
+    private final Map<String, InstanceStats> instances = new ConcurrentHashMap<>(); // ключ - host:port
+
+    public LoadBalancerStats(String serviceId, LoadBalancerSettings settings) {
+        this.serviceId = serviceId;
+        this.settings = settings;
+    }
+
+    public LoadBalancerSettings getSettings() {
+        return settings;
+    }
+
+    public InstanceStats stats(ServiceInstance instance) {
+        return instances.computeIfAbsent(key(instance), key -> new InstanceStats(System.nanoTime()));
+    }
+
+    // удалить статистику экземпляров, которых уже нет в списке (список приходит из Eureka)
+    // в том числе когда экземпляр заменен новым и количество не изменилось
+    public void retain(List<ServiceInstance> current) {
+
+        int known = 0;
+        for (ServiceInstance instance : current) {
+            if (instances.containsKey(key(instance))) {
+                known++;
+            }
+        }
+
+        if (known == instances.size()) { // вся статистика - по экземплярам из списка (без создания множества на каждый запрос)
+            return;
+        }
+
+        Set<String> keys = new HashSet<>();
+        for (ServiceInstance instance : current) {
+            keys.add(key(instance));
+        }
+
+        instances.keySet().retainAll(keys);
+    }
+
+    public void requestStarted(ServiceInstance instance) {
+        stats(instance).requestStarted();
+    }
+
+    // результат вызова: rtt - время выполнения (нс), error - ошибка соединения/таймаут или ответ 502-504
+    public void requestFinished(ServiceInstance instance, long rtt, boolean error) {
+
+        long now = System.nanoTime();
+        InstanceStats stats = stats(instance);
+
+        stats.requestFinished();
+
+        if (!error) {
+            stats.recordLatency(rtt, now, settings.decay().toNanos());
+            stats.recordSuccess(now, settings.slowStart().toNanos());
+            return;
+        }
+
+        if (stats.recordError(settings.errorsToEject()) && canEject(now)) {
+            stats.eject(now, settings.baseEjection().toNanos(), settings.maxEjection().toNanos());
+            log.warning(serviceId + ": instance " + key(instance) + " ejected after " + settings.errorsToEject() + " consecutive errors");
+        }
+    }
+
+    // нельзя исключать больше maxEjectedPercent экземпляров (иначе вся нагрузка уйдет на оставшиеся)
+    private boolean canEject(long now) {
+
+        int ejected = 0;
+        for (InstanceStats stats : instances.values()) {
+            if (stats.isEjected(now)) {
+                ejected++;
+            }
+        }
+
+        return (ejected + 1) * 100 <= instances.size() * settings.maxEjectedPercent();
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+}
@@ -0,0 +1,66 @@
+package ru.javabegin.micro.planner.utils.rest.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// адрес gateway для вызова микросервисов: берется из Eureka (список экземпляров кешируется клиентом Eureka локально),
+// а если gateway там не найден (или Eureka не подключена) - из настройки planner.gateway.url
+// если подключен Spring Cloud LoadBalancer - возвращается адрес с именем сервиса, а экземпляр gateway для каждого запроса
+// выбирает LoadBalancer (LatencyAwareLoadBalancer, см. HttpClientConfig)
+@Component
+public class GatewayUrlResolver {
+
+    @Value("${planner.gateway.service-id:planner-gateway}")
+    private String serviceId;
+
+    @Value("${planner.gateway.url:http://localhost:8765}")
+    private String defaultUrl;
+
+    private final ObjectProvider<DiscoveryClient> discoveryClient;
+    private final ObjectProvider<LoadBalancerClient> loadBalancerClient;
+    private final ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter;
+
+    public GatewayUrlResolver(ObjectProvider<DiscoveryClient> discoveryClient, ObjectProvider<LoadBalancerClient> loadBalancerClient,
+                              ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter) {
+        this.discoveryClient = discoveryClient;
+        this.loadBalancerClient = loadBalancerClient;
+        this.loadBalancerFilter = loadBalancerFilter;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    // можно ли вызывать gateway по имени сервиса (и RestTemplate, и WebClient)
+    public boolean isLoadBalanced() {
+        return loadBalancerClient.getIfAvailable() != null && loadBalancerFilter.getIfAvailable() != null;
+    }
+
+    // адрес вида http://host:port (без / в конце)
+    public String gatewayUrl() {
+
+        DiscoveryClient client = discoveryClient.getIfAvailable();
+
+        if (client != null) {
+            List<ServiceInstance> instances = client.getInstances(serviceId);
+            if (!instances.isEmpty()) {
+                if (isLoadBalanced()) {
+                    return "http://" + serviceId;
+                }
+                ServiceInstance instance = instances.get(ThreadLocalRandom.current().nextInt(instances.size()));
+                return instance.getUri().toString();
+            }
+        }
+
+        return defaultUrl;
+    }
+
+}
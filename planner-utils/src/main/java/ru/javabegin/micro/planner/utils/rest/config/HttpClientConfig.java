@@ -0,0 +1,120 @@
+package ru.javabegin.micro.planner.utils.rest.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerInterceptor;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ReactorNettyClientRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/*
+
+общие http-клиенты для вызова микросервисов (RestTemplate и WebClient)
+
+создаются один раз и используют один пул соединений (reactor netty), поэтому соединения с gateway переиспользуются,
+а не открываются заново при каждом вызове
+
+запросы к gateway по имени сервиса (http://planner-gateway/...) проходят через Spring Cloud LoadBalancer,
+запросы по обычному адресу (planner.gateway.url, если gateway нет в Eureka) - напрямую
+
+ */
+
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${planner.http.max-connections:200}")
+    private int maxConnections; // размер пула соединений
+
+    @Value("${planner.http.pending-acquire-timeout:5s}")
+    private Duration pendingAcquireTimeout; // сколько ждать свободное соединение, если пул занят
+
+    @Value("${planner.http.keep-alive:60s}")
+    private Duration keepAlive; // сколько держать неиспользуемое соединение открытым
+
+    @Value("${planner.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${planner.http.read-timeout:5s}")
+    private Duration readTimeout;
+
+    @Value("${planner.http.http2:false}")
+    private boolean http2; // HTTP/2 без TLS (h2c) - включать, только если gateway его поддерживает
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider plannerConnectionProvider() {
+        return ConnectionProvider.builder("planner")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .pendingAcquireMaxCount(-1) // очередь ограничена только временем ожидания (по умолчанию - 2 * maxConnections, остальные запросы сразу получают ошибку)
+                .maxIdleTime(keepAlive)
+                .evictInBackground(keepAlive)
+                .build();
+    }
+
+    @Bean
+    public HttpClient plannerHttpClient(ConnectionProvider plannerConnectionProvider) {
+
+        HttpClient httpClient = HttpClient.create(plannerConnectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(readTimeout);
+
+        if (http2) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return httpClient;
+    }
+
+    // RestTemplate поверх того же пула соединений
+    @Bean
+    public RestTemplate plannerRestTemplate(HttpClient plannerHttpClient, GatewayUrlResolver gatewayUrlResolver,
+                                            ObjectProvider<LoadBalancerClient> loadBalancerClient) {
+        ReactorNettyClientRequestFactory requestFactory = new ReactorNettyClientRequestFactory(plannerHttpClient);
+        requestFactory.setConnectTimeout(connectTimeout);
+        requestFactory.setReadTimeout(readTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+
+        LoadBalancerClient client = loadBalancerClient.getIfAvailable();
+        if (client != null) {
+            LoadBalancerInterceptor loadBalancer = new LoadBalancerInterceptor(client);
+            restTemplate.getInterceptors().add((request, body, execution) ->
+                    gatewayUrlResolver.getServiceId().equals(request.getURI().getHost())
+                            ? loadBalancer.intercept(request, body, execution)
+                            : execution.execute(request, body));
+        }
+
+        return restTemplate;
+    }
+
+    @Bean
+    public WebClient plannerWebClient(HttpClient plannerHttpClient, GatewayUrlResolver gatewayUrlResolver,
+                                      ObjectProvider<ReactorLoadBalancerExchangeFilterFunction> loadBalancerFilter) {
+
+        WebClient.Builder builder = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(plannerHttpClient));
+
+        ReactorLoadBalancerExchangeFilterFunction loadBalancer = loadBalancerFilter.getIfAvailable();
+        if (loadBalancer != null) {
+            builder.filter((request, next) ->
+                    gatewayUrlResolver.getServiceId().equals(request.url().getHost())
+                            ? loadBalancer.filter(request, next)
+                            : next.exchange(request));
+        }
+
+        return builder.build();
+    }
+
+}
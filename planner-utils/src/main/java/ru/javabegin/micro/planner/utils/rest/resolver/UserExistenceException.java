@@ -0,0 +1,10 @@
+package ru.javabegin.micro.planner.utils.rest.resolver;
+
+// не удалось проверить, существует ли пользователь (planner-users недоступен, ошибка вызова) - это не ответ "пользователя нет"
+public class UserExistenceException extends RuntimeException {
+
+    public UserExistenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
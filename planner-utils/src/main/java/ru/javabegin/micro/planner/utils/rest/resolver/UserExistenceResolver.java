@@ -0,0 +1,214 @@
+package ru.javabegin.micro.planner.utils.rest.resolver;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import ru.javabegin.micro.planner.utils.rest.config.GatewayUrlResolver;
+import ru.javabegin.micro.planner.utils.security.ServiceTokenProvider;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+
+проверка существования пользователя в planner-users без лишних удаленных вызовов
+
+- результат проверки кешируется на короткое время (отдельно для найденных и не найденных пользователей)
+- одновременные проверки одного и того же пользователя ждут один общий запрос (а не отправляют каждый свой)
+- все проверки, которые пришли за время window (или пока не наберется batchSize), отправляются одним запросом /admin/user/ids
+  (с токеном самого микросервиса - ServiceTokenProvider: /admin/user/ids доступен только роли admin, а не обычному пользователю)
+- ошибка вызова (planner-users недоступен, токен не принят) не кешируется и не считается ответом "пользователя нет" -
+  exists выбрасывает UserExistenceException
+
+ */
+
+@Component
+@Log
+public class UserExistenceResolver {
+
+    private static final String idsPath = "/planner-users/admin/user/ids";
+
+    @Value("${planner.users.exists.positive-ttl:60s}")
+    private Duration positiveTtl; // сколько помнить, что пользователь существует
+
+    @Value("${planner.users.exists.negative-ttl:5s}")
+    private Duration negativeTtl; // сколько помнить, что пользователя нет (меньше - чтобы быстро увидеть нового пользователя)
+
+    @Value("${planner.users.exists.max-size:10000}")
+    private long maxSize;
+
+    @Value("${planner.users.exists.batch-size:100}")
+    private int batchSize;
+
+    @Value("${planner.users.exists.window:10ms}")
+    private Duration window;
+
+    @Value("${planner.users.exists.concurrency:4}")
+    private int concurrency; // сколько пачек можно отправлять одновременно
+
+    @Value("${planner.users.exists.timeout:5s}")
+    private Duration timeout; // сколько ждать ответ при блокирующей проверке
+
+    private final WebClient webClient;
+    private final GatewayUrlResolver gatewayUrlResolver;
+    private final ServiceTokenProvider serviceTokenProvider;
+
+    private Cache<String, Boolean> found;
+    private Cache<String, Boolean> notFound;
+
+    // проверки, по которым уже отправлен (или ждет отправки) запрос
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    // очередь id для отправки пачками
+    private final Sinks.Many<String> queue = Sinks.many().unicast().onBackpressureBuffer();
+
+    private Disposable subscription;
+
+    public UserExistenceResolver(WebClient plannerWebClient, GatewayUrlResolver gatewayUrlResolver, ServiceTokenProvider serviceTokenProvider) {
+        this.webClient = plannerWebClient;
+        this.gatewayUrlResolver = gatewayUrlResolver;
+        this.serviceTokenProvider = serviceTokenProvider;
+    }
+
+    @PostConstruct
+    public void start() {
+        found = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(positiveTtl).build();
+        notFound = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(negativeTtl).build();
+
+        subscription = queue.asFlux()
+                .bufferTimeout(batchSize, window)
+                .filter(ids -> !ids.isEmpty())
+                .flatMap(ids -> resolveBatch(new HashSet<>(ids)), concurrency)
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    // проверка - существует ли пользователь (блокирует поток до получения ответа)
+    public boolean exists(String userId) {
+
+        Boolean exists;
+
+        try {
+            exists = existsAsync(userId).block(timeout);
+        } catch (Exception e) { // в т.ч. ответ не пришел за timeout
+            throw new UserExistenceException("user existence check failed: " + userId, e);
+        }
+
+        if (exists == null) {
+            throw new UserExistenceException("user existence check failed: " + userId, null);
+        }
+
+        return exists;
+    }
+
+    // проверка - существует ли пользователь (ошибка вызова - Mono.error)
+    public Mono<Boolean> existsAsync(String userId) {
+
+        if (found.getIfPresent(userId) != null) {
+            return Mono.just(true);
+        }
+
+        if (notFound.getIfPresent(userId) != null) {
+            return Mono.just(false);
+        }
+
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> future = inFlight.putIfAbsent(userId, created);
+
+        if (future == null) { // запроса по этому пользователю еще нет - добавляем в очередь
+            future = created;
+            if (!enqueue(userId)) {
+                inFlight.remove(userId, created);
+                created.completeExceptionally(new IllegalStateException("user existence check not queued"));
+            }
+        }
+
+        return Mono.fromFuture(future, true); // true - отмена одного подписчика не должна отменять общий запрос для остальных
+    }
+
+    // сбросить результат проверки (например, если пользователь удален)
+    public void evict(String userId) {
+        found.invalidate(userId);
+        notFound.invalidate(userId);
+    }
+
+    private boolean enqueue(String userId) {
+
+        Sinks.EmitResult result;
+
+        // метод вызывается из разных потоков - при одновременной записи повторяем попытку
+        do {
+            result = queue.tryEmitNext(userId);
+        } while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+
+        if (result.isFailure()) {
+            log.warning("user existence check not queued: " + result + ", user " + userId);
+            return false;
+        }
+
+        return true;
+    }
+
+    // один запрос на всю пачку: в ответе только id найденных пользователей
+    private Mono<Void> resolveBatch(Set<String> ids) {
+        return serviceTokenProvider.token()
+                .flatMap(token -> webClient
+                        .post()
+                        .uri(gatewayUrlResolver.gatewayUrl() + idsPath)
+                        .headers(headers -> headers.setBearerAuth(token))
+                        .bodyValue(ids)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<List<String>>() {}))
+                .defaultIfEmpty(List.of())
+                .doOnNext(foundIds -> {
+
+                    Set<String> existing = new HashSet<>(foundIds);
+
+                    for (String id : ids) {
+                        boolean exists = existing.contains(id);
+                        (exists ? found : notFound).put(id, true);
+                        complete(id, exists);
+                    }
+                })
+                .doOnError(e -> {
+                    // ошибку не кешируем - следующая проверка снова отправит запрос
+                    log.warning("user existence check failed for " + ids.size() + " users: " + e.getMessage());
+                    for (String id : ids) {
+                        CompletableFuture<Boolean> future = inFlight.remove(id);
+                        if (future != null) {
+                            future.completeExceptionally(e);
+                        }
+                    }
+                })
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void complete(String id, boolean exists) {
+        CompletableFuture<Boolean> future = inFlight.remove(id);
+        if (future != null) {
+            future.complete(exists);
+        }
+    }
+
+}
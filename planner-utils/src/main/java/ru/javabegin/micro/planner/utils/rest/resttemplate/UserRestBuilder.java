@@ -7,19 +7,28 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import ru.javabegin.micro.planner.entity.User;
+import ru.javabegin.micro.planner.utils.rest.config.GatewayUrlResolver;
 
 @Component
 
 // спец. класс для вызова микросервисов пользователей с помощью RestTemplate
 public class UserRestBuilder {
 
-    private static final String baseUrl = "http://localhost:8765/planner-users/user/";
+    private static final String usersPath = "/planner-users/user/";
+
+    // общий RestTemplate с пулом соединений (создается один раз в HttpClientConfig)
+    private final RestTemplate restTemplate;
+    private final GatewayUrlResolver gatewayUrlResolver;
+
+    public UserRestBuilder(RestTemplate plannerRestTemplate, GatewayUrlResolver gatewayUrlResolver) {
+        this.restTemplate = plannerRestTemplate;
+        this.gatewayUrlResolver = gatewayUrlResolver;
+    }
 
     // проверка - существует ли пользователь
     public boolean userExists(Long userId){
 
         // для примера - как использовать RestTemplate (но он уже deprecated)
-        RestTemplate restTemplate = new RestTemplate();
         HttpEntity<Long> request = new HttpEntity(userId);
 
         ResponseEntity<User> response = null;
@@ -29,7 +38,7 @@ public class UserRestBuilder {
         try {
 
             // вызов сервиса
-            response = restTemplate.exchange(baseUrl+"/id", HttpMethod.POST, request, User.class);
+            response = restTemplate.exchange(gatewayUrlResolver.gatewayUrl() + usersPath + "id", HttpMethod.POST, request, User.class);
 
             if (response.getStatusCode() == HttpStatus.OK) { // если статус был 200
                 return true;
@@ -4,27 +4,37 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
 import ru.javabegin.micro.planner.entity.User;
+import ru.javabegin.micro.planner.utils.rest.config.GatewayUrlResolver;
 
 @Component
 
 // спец. класс для вызова микросервисов пользователей с помощью WebClient
 public class UserWebClientBuilder {
 
-    private static final String baseUrl = "http://localhost:8765/planner-users/user/";
-    private static final String baseUrlData = "http://localhost:8765/planner-todo/data/";
+    private static final String usersPath = "/planner-users/user/";
+    private static final String dataPath = "/planner-todo/data/";
+
+    // общий WebClient с пулом соединений (создается один раз в HttpClientConfig)
+    private final WebClient webClient;
+    private final GatewayUrlResolver gatewayUrlResolver;
+
+    public UserWebClientBuilder(WebClient plannerWebClient, GatewayUrlResolver gatewayUrlResolver) {
+        this.webClient = plannerWebClient;
+        this.gatewayUrlResolver = gatewayUrlResolver;
+    }
 
     // проверка - существует ли пользователь
     public boolean userExists(Long userId) {
 
         try {
 
-            User user = WebClient.create(baseUrl)
+            User user = webClient
                     .post()
-                    .uri("id")
+                    .uri(gatewayUrlResolver.gatewayUrl() + usersPath + "id")
                     .bodyValue(userId)
                     .retrieve()
-                    .bodyToFlux(User.class)
-                    .blockFirst(); // блокирует поток до получения 1й записи
+                    .bodyToMono(User.class)
+                    .block(); // блокирует поток до получения ответа
 
             if (user != null) {
                 return true;
@@ -41,9 +51,9 @@ public class UserWebClientBuilder {
     // проверка - существует ли пользователь
     public Flux<User> userExistsAsync(Long userId) {
 
-        Flux<User> fluxUser = WebClient.create(baseUrl)
+        Flux<User> fluxUser = webClient
                 .post()
-                .uri("id")
+                .uri(gatewayUrlResolver.gatewayUrl() + usersPath + "id")
                 .bodyValue(userId)
                 .retrieve()
                 .bodyToFlux(User.class);
@@ -56,9 +66,9 @@ public class UserWebClientBuilder {
     // иниц. начальных данных
     public Flux<Boolean> initUserData(Long userId) {
 
-        Flux<Boolean> fluxUser = WebClient.create(baseUrlData)
+        Flux<Boolean> fluxUser = webClient
                 .post()
-                .uri("init")
+                .uri(gatewayUrlResolver.gatewayUrl() + dataPath + "init")
                 .bodyValue(userId)
                 .retrieve()
                 .bodyToFlux(Boolean.class);
@@ -67,4 +77,4 @@ public class UserWebClientBuilder {
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,183 @@
+package ru.javabegin.micro.planner.utils.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+import ru.javabegin.micro.planner.utils.converter.KCRoleConverter;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+
+/*
+
+проверка JWT с кешированием результата
+
+клиент отправляет один и тот же access token много раз, пока тот не истечет - поэтому токен проверяется (подпись, срок, issuer) только 1 раз,
+а проверенный Jwt вместе с ролями хранится в кеше до окончания срока действия токена (ключ - хеш токена)
+
+ключи KC (JWKS) загружаются при старте и обновляются в фоне заранее, до истечения срока их хранения - запрос пользователя не ждет загрузки ключей
+
+ */
+
+@Component
+@Log
+public class JwtVerificationCache implements JwtDecoder {
+
+    // настройки resource server (из config server)
+    @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}")
+    private String jwkSetUri;
+    @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:}")
+    private String issuerUri;
+
+    @Value("${planner.security.jwt-cache.max-size:10000}")
+    private long maxSize; // сколько проверенных токенов хранить
+
+    @Value("${planner.security.jwks.ttl:15m}")
+    private Duration jwksTtl; // сколько хранить загруженные ключи
+
+    @Value("${planner.security.jwks.refresh-ahead:1m}")
+    private Duration jwksRefreshAhead; // за сколько до окончания хранения ключей загружать их заново (в фоне)
+
+    private static final Duration DEFAULT_TOKEN_TTL = Duration.ofMinutes(5); // если в токене не указан срок действия
+
+    private final KCRoleConverter roleConverter = new KCRoleConverter();
+
+    private Cache<String, VerifiedJwt> cache;
+    private JWKSource<SecurityContext> jwkSource;
+    private NimbusJwtDecoder delegate;
+
+    // проверенный токен вместе с его ролями - decode возвращает этот объект,
+    // поэтому authorities получает роли из самого Jwt, без повторного вычисления хеша токена
+    private static class VerifiedJwt extends Jwt {
+
+        private final Collection<GrantedAuthority> authorities;
+
+        VerifiedJwt(Jwt jwt, Collection<GrantedAuthority> authorities) {
+            super(jwt.getTokenValue(), jwt.getIssuedAt(), jwt.getExpiresAt(), jwt.getHeaders(), jwt.getClaims());
+            this.authorities = authorities;
+        }
+    }
+
+    @PostConstruct
+    public void init() throws Exception {
+
+        // KC публикует ключи по стандартному адресу относительно issuer
+        String keysUri = !jwkSetUri.isBlank() ? jwkSetUri : issuerUri + "/protocol/openid-connect/certs";
+
+        if (keysUri.startsWith("/")) {
+            throw new IllegalStateException("spring.security.oauth2.resourceserver.jwt.jwk-set-uri or issuer-uri must be set");
+        }
+
+        jwkSource = JWKSourceBuilder.<SecurityContext>create(URI.create(keysUri).toURL())
+                .cache(jwksTtl.toMillis(), JWKSourceBuilder.DEFAULT_CACHE_REFRESH_TIMEOUT)
+                .refreshAheadCache(jwksRefreshAhead.toMillis(), true) // true - обновление по расписанию, а не во время запроса
+                .build();
+
+        DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {
+        }); // срок действия и issuer проверяют валидаторы spring security
+
+        delegate = new NimbusJwtDecoder(processor);
+        delegate.setJwtValidator(issuerUri.isBlank() ? JwtValidators.createDefault() : JwtValidators.createDefaultWithIssuer(issuerUri));
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, VerifiedJwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedJwt value, long currentTime) {
+                        Instant expiresAt = value.getExpiresAt();
+                        Duration ttl = expiresAt != null ? Duration.between(Instant.now(), expiresAt) : DEFAULT_TOKEN_TTL;
+                        return Math.max(0, ttl.toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedJwt value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+
+        prefetchKeys();
+    }
+
+    // первая загрузка ключей при старте (дальше ключи обновляются в фоне)
+    private void prefetchKeys() {
+        try {
+            int count = jwkSource.get(new JWKSelector(new JWKMatcher.Builder().build()), null).size();
+            log.info("jwks prefetched: " + count + " keys");
+        } catch (Exception e) {
+            // KC может быть еще не запущен - ключи загрузятся при первом запросе
+            log.warning("jwks prefetch failed: " + e.getMessage());
+        }
+    }
+
+    // хеш токена вычисляется один раз на запрос - здесь
+    @Override
+    public Jwt decode(String token) throws JwtException {
+
+        String key = hash(token);
+
+        VerifiedJwt verified = cache.getIfPresent(key);
+
+        if (verified != null && verified.getTokenValue().equals(token)) {
+            return verified;
+        }
+
+        Jwt jwt = delegate.decode(token); // полная проверка (ошибки не кешируются)
+
+        verified = new VerifiedJwt(jwt, roleConverter.convert(jwt));
+        cache.put(key, verified);
+
+        return verified;
+    }
+
+    // роли пользователя - для JwtAuthenticationConverter (уже вычислены в decode)
+    public Collection<GrantedAuthority> authorities(Jwt jwt) {
+
+        if (jwt instanceof VerifiedJwt verified) {
+            return verified.authorities;
+        }
+
+        return roleConverter.convert(jwt);
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 есть в любой JVM
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package ru.javabegin.micro.planner.utils.security;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/*
+
+access token самого микросервиса (client credentials) - для служебных вызовов других микросервисов,
+например проверки пользователей через /admin/user/ids (UserExistenceResolver)
+
+токен пользователя для таких вызовов не подходит: служебные адреса доступны только роли admin,
+поэтому в KC у клиента микросервиса должен быть включен service account с ролью admin
+
+токен хранится, пока до его окончания не останется меньше min-validity, все одновременные запросы ждут одно получение токена
+
+ */
+
+@Component
+@Log
+public class ServiceTokenProvider {
+
+    @Value("${planner.service-token.token-uri:}")
+    private String tokenUri; // адрес KC вида .../realms/<realm>/protocol/openid-connect/token
+
+    @Value("${planner.service-token.client-id:}")
+    private String clientId;
+
+    @Value("${planner.service-token.client-secret:}")
+    private String clientSecret;
+
+    @Value("${planner.service-token.min-validity:30s}")
+    private Duration minValidity; // токен получается заново, если до его окончания осталось меньше этого времени
+
+    private final WebClient webClient;
+
+    private Mono<String> token;
+
+    public ServiceTokenProvider(WebClient plannerWebClient) {
+        this.webClient = plannerWebClient;
+    }
+
+    @PostConstruct
+    public void init() {
+        token = requestToken()
+                .cache(response -> Duration.ofSeconds(response.expiresIn()).minus(minValidity),
+                        e -> Duration.ZERO, // ошибку не запоминаем - следующий вызов снова запросит токен
+                        () -> Duration.ZERO)
+                .map(TokenResponse::accessToken);
+    }
+
+    // текущий токен (Mono.error, если токен получить не удалось)
+    public Mono<String> token() {
+        return token;
+    }
+
+    private Mono<TokenResponse> requestToken() {
+        return Mono.defer(() -> {
+
+            if (tokenUri.isBlank()) {
+                return Mono.error(new IllegalStateException("planner.service-token.token-uri is not set"));
+            }
+
+            return webClient
+                    .post()
+                    .uri(tokenUri)
+                    .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                    .body(BodyInserters.fromFormData("grant_type", "client_credentials")
+                            .with("client_id", clientId)
+                            .with("client_secret", clientSecret))
+                    .retrieve()
+                    .bodyToMono(TokenResponse.class)
+                    .doOnError(e -> log.warning("service token request failed: " + e.getMessage()));
+        });
+    }
+
+    // из ответа KC нужны только токен и его срок действия (секунд)
+    private record TokenResponse(@JsonProperty("access_token") String accessToken, @JsonProperty("expires_in") long expiresIn) {
+    }
+
+}
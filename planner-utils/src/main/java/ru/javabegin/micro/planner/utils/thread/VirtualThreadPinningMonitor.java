@@ -0,0 +1,72 @@
+package ru.javabegin.micro.planner.utils.thread;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.java.Log;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+
+поиск мест, где виртуальный поток "прикрепляется" к потоку платформы (pinning) - например, блокирующий вызов внутри synchronized
+пока виртуальный поток прикреплен, поток платформы не может выполнять другие запросы - и выигрыш от виртуальных потоков пропадает
+
+работает только в режиме виртуальных потоков (spring.threads.virtual.enabled=true):
+события JFR jdk.VirtualThreadPinned дольше порога выводятся в лог вместе со стеком вызовов
+
+ */
+
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+@Log
+public class VirtualThreadPinningMonitor {
+
+    private static final int STACK_DEPTH = 10; // сколько строк стека выводить в лог
+
+    @Value("${planner.virtual-threads.pinned-threshold:20ms}")
+    private Duration threshold;
+
+    private RecordingStream stream;
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::report);
+        stream.startAsync();
+        log.info("virtual thread pinning monitor started, threshold " + threshold);
+    }
+
+    private void report(RecordedEvent event) {
+
+        StringBuilder message = new StringBuilder("virtual thread pinned for ")
+                .append(event.getDuration().toMillis()).append(" ms");
+
+        if (event.getStackTrace() != null) {
+            List<RecordedFrame> frames = event.getStackTrace().getFrames();
+            for (int i = 0; i < Math.min(STACK_DEPTH, frames.size()); i++) {
+                RecordedFrame frame = frames.get(i);
+                message.append("\n    at ").append(frame.getMethod().getType().getName())
+                        .append('.').append(frame.getMethod().getName())
+                        .append(':').append(frame.getLineNumber());
+            }
+        }
+
+        log.warning(message.toString());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+}
@@ -0,0 +1,129 @@
+package ru.javabegin.micro.planner.utils.rest.config;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import ru.javabegin.micro.planner.utils.rest.resttemplate.UserRestBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// вызовы сервиса пользователей через общий пул соединений (HttpClientConfig) и через новое соединение на каждый вызов -
+// вызовов в секунду последовательно и из нескольких потоков; вместо gateway - локальный HTTP сервер (reactor netty)
+@Tag("benchmark")
+class HttpClientConfigBenchmark {
+
+    private static final int MAX_CONNECTIONS = 50;
+    private static final int CALLS = 2000;
+    private static final int THREADS = 8;
+
+    private DisposableServer gatewayServer;
+    private HttpClientConfig config;
+    private GatewayUrlResolver gatewayUrlResolver;
+    private final List<ConnectionProvider> providers = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        gatewayServer = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.post("/planner-users/user/id", (request, response) -> request.receive().then()
+                        .then(response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just("{\"id\":1,\"username\":\"user\"}"))
+                                .then())))
+                .bindNow();
+
+        config = new HttpClientConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", MAX_CONNECTIONS);
+        ReflectionTestUtils.setField(config, "pendingAcquireTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        gatewayUrlResolver = new GatewayUrlResolver(beans.getBeanProvider(DiscoveryClient.class),
+                beans.getBeanProvider(LoadBalancerClient.class), beans.getBeanProvider(ReactorLoadBalancerExchangeFilterFunction.class));
+        ReflectionTestUtils.setField(gatewayUrlResolver, "serviceId", "planner-gateway");
+        ReflectionTestUtils.setField(gatewayUrlResolver, "defaultUrl", "http://localhost:" + gatewayServer.port());
+    }
+
+    @AfterEach
+    void tearDown() {
+        providers.forEach(ConnectionProvider::dispose);
+        gatewayServer.disposeNow();
+    }
+
+    @Test
+    void sharedPoolVersusNewConnections() throws Exception {
+
+        UserRestBuilder pooled = client(config.plannerConnectionProvider());
+        UserRestBuilder unpooled = client(ConnectionProvider.newConnection()); // соединение закрывается после каждого вызова
+
+        double pooledSequential = callsPerSecond(pooled, 1);
+        double unpooledSequential = callsPerSecond(unpooled, 1);
+        double pooledConcurrent = callsPerSecond(pooled, THREADS);
+        double unpooledConcurrent = callsPerSecond(unpooled, THREADS);
+
+        System.out.printf("http client benchmark (%d calls): shared pool %.0f calls/s, %d threads %.0f calls/s; " +
+                        "new connection per call %.0f calls/s, %d threads %.0f calls/s%n",
+                CALLS, pooledSequential, THREADS, pooledConcurrent, unpooledSequential, THREADS, unpooledConcurrent);
+
+        // одновременные вызовы (как запросы пользователей к сервису) переиспользуют соединения пула -
+        // нет установки TCP соединения на каждый вызов; последовательные вызовы только выводятся (зависят от числа CPU)
+        assertTrue(pooledConcurrent > unpooledConcurrent, "pooled " + pooledConcurrent + " calls/s, unpooled " + unpooledConcurrent + " calls/s");
+    }
+
+    private UserRestBuilder client(ConnectionProvider provider) {
+        providers.add(provider);
+        return new UserRestBuilder(config.plannerRestTemplate(config.plannerHttpClient(provider), gatewayUrlResolver,
+                new StaticListableBeanFactory().getBeanProvider(LoadBalancerClient.class)), gatewayUrlResolver);
+    }
+
+    // CALLS вызовов (после прогрева), поровну из threads потоков
+    private static double callsPerSecond(UserRestBuilder client, int threads) throws Exception {
+
+        for (long i = 0; i < CALLS / 10; i++) {
+            assertTrue(client.userExists(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (long i = 0; i < CALLS / threads; i++) {
+                        assertTrue(client.userExists(i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            return CALLS * 1_000_000_000.0 / (System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+package ru.javabegin.micro.planner.utils.rest.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.reactive.ReactorLoadBalancerExchangeFilterFunction;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import ru.javabegin.micro.planner.utils.rest.resttemplate.UserRestBuilder;
+import ru.javabegin.micro.planner.utils.rest.webclient.UserWebClientBuilder;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// общие http-клиенты: RestTemplate и WebClient используют один пул соединений - соединения с gateway переиспользуются,
+// а их количество не превышает planner.http.max-connections
+// вместо gateway - локальный HTTP сервер, который запоминает адреса (порты) подключившихся клиентов
+class HttpClientConfigTest {
+
+    private static final int MAX_CONNECTIONS = 2;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet(); // 1 порт - 1 соединение
+    private final AtomicInteger requests = new AtomicInteger();
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+
+    private volatile long responseDelayMs;
+
+    private HttpServer gatewayServer;
+    private ConnectionProvider connectionProvider;
+    private UserRestBuilder userRestBuilder;
+    private UserWebClientBuilder userWebClientBuilder;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        gatewayServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        gatewayServer.createContext("/planner-users/user/id", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"id\":1,\"username\":\"user\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        gatewayServer.setExecutor(serverExecutor);
+        gatewayServer.start();
+
+        HttpClientConfig config = new HttpClientConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", MAX_CONNECTIONS);
+        ReflectionTestUtils.setField(config, "pendingAcquireTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(config, "keepAlive", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(config, "readTimeout", Duration.ofSeconds(5));
+
+        GatewayUrlResolver gatewayUrlResolver = gatewayUrlResolver(new StaticListableBeanFactory());
+
+        connectionProvider = config.plannerConnectionProvider();
+        HttpClient httpClient = config.plannerHttpClient(connectionProvider);
+
+        StaticListableBeanFactory noLoadBalancer = new StaticListableBeanFactory();
+        RestTemplate restTemplate = config.plannerRestTemplate(httpClient, gatewayUrlResolver,
+                noLoadBalancer.getBeanProvider(LoadBalancerClient.class));
+        WebClient webClient = config.plannerWebClient(httpClient, gatewayUrlResolver,
+                noLoadBalancer.getBeanProvider(ReactorLoadBalancerExchangeFilterFunction.class));
+
+        userRestBuilder = new UserRestBuilder(restTemplate, gatewayUrlResolver);
+        userWebClientBuilder = new UserWebClientBuilder(webClient, gatewayUrlResolver);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.dispose();
+        gatewayServer.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void sequentialCallsReuseOneConnection() {
+
+        for (long i = 0; i < 20; i++) {
+            assertTrue(userRestBuilder.userExists(i));
+            assertTrue(userWebClientBuilder.userExists(i));
+        }
+
+        // RestTemplate и WebClient - через соединения общего пула, а не новое соединение на каждый вызов
+        // (RestTemplate возвращает соединение в пул асинхронно, поэтому следующий вызов иногда берет второе соединение)
+        assertEquals(40, requests.get());
+        assertTrue(clientPorts.size() <= MAX_CONNECTIONS, clientPorts.toString());
+    }
+
+    @Test
+    void concurrentCallsLimitedByPool() {
+
+        responseDelayMs = 100; // запросы выполняются одновременно и занимают соединения
+
+        // 10 запросов - больше, чем очередь ожидания по умолчанию (2 * MAX_CONNECTIONS)
+        List<Boolean> results = Flux.range(0, 10)
+                .flatMap(i -> userWebClientBuilder.userExistsAsync(i.longValue()).map(user -> true))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(10, results.size()); // остальные запросы дождались свободного соединения
+        assertEquals(MAX_CONNECTIONS, clientPorts.size());
+    }
+
+    @Test
+    void gatewayFromDiscoveryPreferredOverDefaultUrl() {
+
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        DiscoveryClient discoveryClient = new DiscoveryClient() {
+
+            @Override
+            public String description() {
+                return "test";
+            }
+
+            @Override
+            public List<org.springframework.cloud.client.ServiceInstance> getInstances(String serviceId) {
+                return "planner-gateway".equals(serviceId)
+                        ? List.of(new DefaultServiceInstance("gateway-1", serviceId, "gateway-host", 8765, false))
+                        : List.of();
+            }
+
+            @Override
+            public List<String> getServices() {
+                return List.of("planner-gateway");
+            }
+        };
+        beans.addBean("discoveryClient", discoveryClient);
+
+        // без LoadBalancer - адрес экземпляра gateway из Eureka
+        assertEquals("http://gateway-host:8765", gatewayUrlResolver(beans).gatewayUrl());
+
+        // gateway нет в Eureka - адрес из planner.gateway.url
+        assertEquals(defaultUrl(), gatewayUrlResolver(new StaticListableBeanFactory()).gatewayUrl());
+    }
+
+    private GatewayUrlResolver gatewayUrlResolver(StaticListableBeanFactory beans) {
+
+        GatewayUrlResolver resolver = new GatewayUrlResolver(beans.getBeanProvider(DiscoveryClient.class),
+                beans.getBeanProvider(LoadBalancerClient.class), beans.getBeanProvider(ReactorLoadBalancerExchangeFilterFunction.class));
+        ReflectionTestUtils.setField(resolver, "serviceId", "planner-gateway");
+        ReflectionTestUtils.setField(resolver, "defaultUrl", defaultUrl());
+
+        return resolver;
+    }
+
+    private String defaultUrl() {
+        return "http://localhost:" + gatewayServer.getAddress().getPort();
+    }
+
+}
@@ -0,0 +1,127 @@
+package ru.javabegin.micro.planner.utils.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// проверок токенов в секунду: повторные токены (из кеша JwtVerificationCache) и каждый раз новые токены (полная проверка подписи RS256)
+// ключи KC заменяет локальный HTTP сервер с JWKS
+@Tag("benchmark")
+class JwtVerificationCacheBenchmark {
+
+    private static final int CACHED_TOKENS = 100; // сколько разных пользователей повторяют свои токены
+    private static final int CACHED_DECODES = 200_000;
+    private static final int NEW_TOKENS = 2_000; // каждый проверяется 1 раз
+
+    private RSAKey key;
+    private HttpServer keyServer;
+    private JwtVerificationCache verificationCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        key = new RSAKeyGenerator(2048).keyID("test-key").generate();
+
+        byte[] jwks = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+
+        keyServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        keyServer.createContext("/certs", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, jwks.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(jwks);
+            }
+        });
+        keyServer.start();
+
+        verificationCache = new JwtVerificationCache();
+        ReflectionTestUtils.setField(verificationCache, "jwkSetUri", "http://localhost:" + keyServer.getAddress().getPort() + "/certs");
+        ReflectionTestUtils.setField(verificationCache, "issuerUri", "");
+        ReflectionTestUtils.setField(verificationCache, "maxSize", 10_000L); // все токены прогона помещаются в кеш
+        ReflectionTestUtils.setField(verificationCache, "jwksTtl", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(verificationCache, "jwksRefreshAhead", Duration.ofMinutes(1));
+        verificationCache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyServer.stop(0);
+    }
+
+    @Test
+    void cachedVersusFullVerification() throws JOSEException {
+
+        List<String> cachedTokens = tokens(CACHED_TOKENS);
+        List<String> newTokens = tokens(NEW_TOKENS);
+
+        // прогрев: полная проверка (первое обращение) и чтение из кеша
+        for (int i = 0; i < CACHED_DECODES / 10; i++) {
+            verificationCache.decode(cachedTokens.get(i % CACHED_TOKENS));
+        }
+        tokens(NEW_TOKENS / 10).forEach(verificationCache::decode);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CACHED_DECODES; i++) {
+            verificationCache.decode(cachedTokens.get(i % CACHED_TOKENS));
+        }
+        double cached = CACHED_DECODES * 1_000_000_000.0 / (System.nanoTime() - start);
+
+        start = System.nanoTime();
+        newTokens.forEach(verificationCache::decode);
+        double verified = NEW_TOKENS * 1_000_000_000.0 / (System.nanoTime() - start);
+
+        System.out.printf("jwt verification benchmark: cached %.0f verifications/s (%d tokens, %d decodes), " +
+                        "full verification %.0f verifications/s (%d new tokens)%n",
+                cached, CACHED_TOKENS, CACHED_DECODES, verified, NEW_TOKENS);
+
+        // из кеша - только SHA-256 токена и поиск, без разбора токена, проверки подписи RSA и валидаторов
+        assertTrue(cached > verified * 5, "cached " + cached + "/s, full verification " + verified + "/s");
+    }
+
+    // токены разных пользователей (подписываются заранее - подпись не входит в замер)
+    private List<String> tokens(int count) throws JOSEException {
+
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+
+            JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                    .subject("user-" + System.nanoTime() + "-" + i)
+                    .issueTime(new Date())
+                    .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                    .claim("realm_access", Map.of("roles", List.of("user")))
+                    .build();
+
+            SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+            jwt.sign(new RSASSASigner(key));
+
+            tokens.add(jwt.serialize());
+        }
+
+        return tokens;
+    }
+
+}
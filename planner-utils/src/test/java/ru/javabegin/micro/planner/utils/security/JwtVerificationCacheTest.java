@@ -0,0 +1,145 @@
+package ru.javabegin.micro.planner.utils.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// кеш проверенных токенов: повторный токен не проверяется заново, запись удаляется после окончания срока токена,
+// ключи загружаются заранее (запрос не ждет загрузки JWKS)
+// ключи KC заменяет локальный HTTP сервер с JWKS
+class JwtVerificationCacheTest {
+
+    private final AtomicInteger keyRequests = new AtomicInteger();
+
+    private RSAKey key;
+    private HttpServer keyServer;
+    private JwtVerificationCache verificationCache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+
+        key = new RSAKeyGenerator(2048).keyID("test-key").generate();
+
+        byte[] jwks = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+
+        keyServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        keyServer.createContext("/certs", exchange -> {
+            keyRequests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, jwks.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(jwks);
+            }
+        });
+        keyServer.start();
+
+        verificationCache = new JwtVerificationCache();
+        ReflectionTestUtils.setField(verificationCache, "jwkSetUri", "http://localhost:" + keyServer.getAddress().getPort() + "/certs");
+        ReflectionTestUtils.setField(verificationCache, "issuerUri", "");
+        ReflectionTestUtils.setField(verificationCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(verificationCache, "jwksTtl", Duration.ofMinutes(15));
+        ReflectionTestUtils.setField(verificationCache, "jwksRefreshAhead", Duration.ofMinutes(1));
+        verificationCache.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        keyServer.stop(0);
+    }
+
+    @Test
+    void keysArePrefetchedAtStartup() throws JOSEException {
+
+        assertEquals(1, keyRequests.get());
+
+        verificationCache.decode(token(Instant.now().plusSeconds(60)));
+
+        assertEquals(1, keyRequests.get()); // первый запрос не загружает ключи
+    }
+
+    @Test
+    void repeatedTokenReturnsCachedJwtAndAuthorities() throws JOSEException {
+
+        String token = token(Instant.now().plusSeconds(60));
+
+        Jwt first = verificationCache.decode(token);
+        Jwt second = verificationCache.decode(token);
+
+        assertSame(first, second);
+
+        Collection<GrantedAuthority> authorities = verificationCache.authorities(second);
+        assertSame(authorities, verificationCache.authorities(first)); // роли вычислены один раз при проверке
+        assertEquals(List.of("ROLE_user"), authorities.stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Test
+    void entryExpiresWithToken() throws Exception {
+
+        String token = token(Instant.now().plusSeconds(2));
+
+        Jwt cached = verificationCache.decode(token);
+        assertSame(cached, verificationCache.decode(token));
+
+        Thread.sleep(2_500);
+
+        // запись удалена вместе с окончанием срока токена - токен проверяется заново
+        // (сам токен еще принимается: JwtTimestampValidator допускает расхождение часов 60 секунд)
+        assertNotSame(cached, verificationCache.decode(token));
+    }
+
+    @Test
+    void invalidTokenIsNotCached() throws JOSEException {
+
+        String token = token(Instant.now().plusSeconds(60));
+        String tampered = token.substring(0, token.length() - 4) + (token.endsWith("AAAA") ? "BBBB" : "AAAA");
+
+        assertThrows(JwtException.class, () -> verificationCache.decode(tampered));
+        assertThrows(JwtException.class, () -> verificationCache.decode(tampered));
+    }
+
+    private String token(Instant expiresAt) throws JOSEException {
+
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("user-1")
+                .issueTime(new Date())
+                .expirationTime(Date.from(expiresAt))
+                .claim("realm_access", Map.of("roles", List.of("user")))
+                .build();
+
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+
+        return jwt.serialize();
+    }
+
+}
@@ -0,0 +1,148 @@
+package ru.javabegin.micro.planner.utils.thread;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// нагрузка из REQUESTS одновременных запросов, каждый из которых блокирующе вызывает другой сервис (ответ через CALL_DELAY_MS):
+// пул из PLATFORM_THREADS потоков платформы (как max-threads Tomcat по умолчанию) и виртуальный поток на каждый запрос
+// (spring.threads.virtual.enabled=true) - запросов в секунду; во время прогона на виртуальных потоках работает
+// VirtualThreadPinningMonitor и выводится число прикреплений; вместо сервиса - локальный HTTP сервер (reactor netty)
+@Tag("benchmark")
+class VirtualThreadLoadBenchmark {
+
+    private static final int REQUESTS = 2000;
+    private static final int PLATFORM_THREADS = 200;
+    private static final long CALL_DELAY_MS = 100;
+
+    private final Logger monitorLogger = Logger.getLogger(VirtualThreadPinningMonitor.class.getName());
+    private final AtomicInteger pinned = new AtomicInteger();
+
+    private final Handler pinnedCounter = new Handler() {
+
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getLevel() == Level.WARNING) {
+                pinned.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private DisposableServer server;
+    private HttpClient httpClient;
+    private URI uri;
+
+    @BeforeEach
+    void setUp() {
+
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/user/exists", (request, response) -> Mono.delay(Duration.ofMillis(CALL_DELAY_MS))
+                        .then(response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendString(Mono.just("true"))
+                                .then())))
+                .bindNow();
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor()) // ответы клиент обрабатывает на виртуальных потоках, а не в кешированном пуле потоков платформы
+                .build();
+        uri = URI.create("http://localhost:" + server.port() + "/user/exists");
+
+        monitorLogger.addHandler(pinnedCounter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitorLogger.removeHandler(pinnedCounter);
+        httpClient.close();
+        server.disposeNow();
+    }
+
+    @Test
+    void virtualThreadsVersusPlatformPool() throws Exception {
+
+        // монитор запускается до прогрева - запуск JFR не входит в замер (события бывают только у виртуальных потоков)
+        VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor();
+        ReflectionTestUtils.setField(monitor, "threshold", Duration.ofMillis(20));
+        monitor.start();
+
+        double platform;
+        double virtual;
+        try {
+            // прогрев: соединения с сервером (остаются в пуле HttpClient) и JIT
+            for (int i = 0; i < 2; i++) {
+                run(Executors.newFixedThreadPool(PLATFORM_THREADS));
+                run(Executors.newVirtualThreadPerTaskExecutor());
+            }
+
+            platform = run(Executors.newFixedThreadPool(PLATFORM_THREADS));
+            virtual = run(Executors.newVirtualThreadPerTaskExecutor());
+
+            Thread.sleep(2000); // события JFR приходят с задержкой (около 1 секунды)
+        } finally {
+            monitor.stop();
+        }
+
+        System.out.printf("virtual thread load benchmark (%d concurrent requests, %d ms blocking call): " +
+                        "%d platform threads %.0f requests/s, virtual threads %.0f requests/s, %d pinned%n",
+                REQUESTS, CALL_DELAY_MS, PLATFORM_THREADS, platform, virtual, pinned.get());
+
+        // потоков платформы не больше PLATFORM_THREADS - остальные запросы ждут в очереди, пока поток заблокирован вызовом;
+        // виртуальный поток при блокирующем вызове освобождает поток платформы - все вызовы идут одновременно
+        assertTrue(virtual > platform, "virtual " + virtual + " requests/s, platform " + platform + " requests/s");
+    }
+
+    // REQUESTS запросов одновременно, каждый - отдельная задача executor
+    private double run(ExecutorService executor) throws Exception {
+        try (executor) {
+            long start = System.nanoTime();
+
+            List<Future<String>> futures = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                futures.add(executor.submit(() -> httpClient.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofString()).body()));
+            }
+            for (Future<String> future : futures) {
+                assertEquals("true", future.get());
+            }
+
+            return REQUESTS * 1_000_000_000.0 / (System.nanoTime() - start);
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package ru.javabegin.micro.planner.utils.thread;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// прикрепление виртуального потока к потоку платформы: блокировка внутри synchronized выводится в лог со стеком,
+// ожидание на ReentrantLock - нет (поток платформы освобождается); монитор работает только в режиме виртуальных потоков
+class VirtualThreadPinningMonitorTest {
+
+    private static final Object MONITOR = new Object();
+    private static final ReentrantLock LOCK = new ReentrantLock();
+
+    private final Logger logger = Logger.getLogger(VirtualThreadPinningMonitor.class.getName());
+    private final List<String> warnings = new CopyOnWriteArrayList<>();
+
+    private final Handler handler = new Handler() {
+
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getLevel() == Level.WARNING) {
+                warnings.add(record.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        logger.addHandler(handler);
+
+        monitor = new VirtualThreadPinningMonitor();
+        ReflectionTestUtils.setField(monitor, "threshold", Duration.ofMillis(20));
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+        logger.removeHandler(handler);
+    }
+
+    @Test
+    void blockingInsideSynchronizedReported() throws Exception {
+
+        Thread.ofVirtual().start(VirtualThreadPinningMonitorTest::sleepWithLock).join();
+        Thread.ofVirtual().start(VirtualThreadPinningMonitorTest::sleepInsideSynchronized).join();
+
+        // события JFR приходят в поток RecordingStream с задержкой (около 1 секунды)
+        long deadline = System.nanoTime() + Duration.ofSeconds(15).toNanos();
+        while (warnings.stream().noneMatch(message -> message.contains("sleepInsideSynchronized")) && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+
+        assertTrue(warnings.stream().anyMatch(message -> message.startsWith("virtual thread pinned for")
+                && message.contains(VirtualThreadPinningMonitorTest.class.getName() + ".sleepInsideSynchronized")), warnings.toString());
+        assertFalse(warnings.stream().anyMatch(message -> message.contains("sleepWithLock")), warnings.toString());
+    }
+
+    @Test
+    void enabledOnlyWithVirtualThreads() {
+
+        ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+                .withInitializer(context -> context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance())) // "20ms" -> Duration, как в Spring Boot
+                .withUserConfiguration(VirtualThreadPinningMonitor.class);
+
+        contextRunner.run(context -> assertThat(context).doesNotHaveBean(VirtualThreadPinningMonitor.class));
+
+        contextRunner.withPropertyValues("spring.threads.virtual.enabled=true")
+                .run(context -> assertThat(context).hasSingleBean(VirtualThreadPinningMonitor.class));
+    }
+
+    private static void sleepInsideSynchronized() {
+        synchronized (MONITOR) {
+            sleep();
+        }
+    }
+
+    private static void sleepWithLock() {
+        LOCK.lock();
+        try {
+            sleep();
+        } finally {
+            LOCK.unlock();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}